@@ -0,0 +1,85 @@
+package com.huawei.imagesearch.benchmark;
+
+import com.alibaba.fastjson.JSONObject;
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.util.Base64FileEntity;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图像Base64编码耗时与内存分配：toBase64Str整体读入再编码，Base64FileEntity边读边编码写出。
+ * small为data/下的示例图片，large为由示例图片拼接出的约4MB文件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64Benchmark
+{
+    private static final long LARGE_IMAGE_BYTES = 4L * 1024 * 1024;
+
+    @Param({"small", "large"})
+    public String image;
+
+    private File file;
+    private File generated;
+    private JSONObject fields;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        File sample = BenchmarkData.sampleImage();
+        if ("small".equals(image)) {
+            file = sample;
+        } else {
+            byte[] bytes = FileUtils.readFileToByteArray(sample);
+            generated = File.createTempFile("image-search-benchmark", ".jpg");
+            for (long written = 0; written < LARGE_IMAGE_BYTES; written += bytes.length) {
+                FileUtils.writeByteArrayToFile(generated, bytes, true);
+            }
+            file = generated;
+        }
+        fields = new JSONObject();
+        fields.put("path", "https://bucket.obs.myhuaweicloud.com/image/test.jpg");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (null != generated) {
+            FileUtils.deleteQuietly(generated);
+        }
+    }
+
+    @Benchmark
+    public String toBase64Str() throws IOException
+    {
+        return ImageSearchService.toBase64Str(file.getPath());
+    }
+
+    @Benchmark
+    public long base64FileEntity() throws IOException
+    {
+        Base64FileEntity entity = new Base64FileEntity(fields, "file", file);
+        entity.writeTo(NullOutputStream.NULL_OUTPUT_STREAM);
+        return entity.getContentLength();
+    }
+}
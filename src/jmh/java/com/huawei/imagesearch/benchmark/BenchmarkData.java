@@ -0,0 +1,23 @@
+package com.huawei.imagesearch.benchmark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/**
+ * 基准测试使用的示例数据，默认从工作目录下的data/读取，可通过-Dbenchmark.data指定目录
+ */
+final class BenchmarkData
+{
+    private BenchmarkData()
+    {
+    }
+
+    static File sampleImage() throws FileNotFoundException
+    {
+        File file = new File(System.getProperty("benchmark.data", "data"), "is-demo-1.jpg");
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getAbsolutePath() + ", run from the project root or set -Dbenchmark.data");
+        }
+        return file;
+    }
+}
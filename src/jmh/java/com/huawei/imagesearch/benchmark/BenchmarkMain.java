@@ -0,0 +1,33 @@
+package com.huawei.imagesearch.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * 基准测试入口，参数与org.openjdk.jmh.Main相同，默认附加GC profiler，
+ * 输出每次调用的分配字节数(gc.alloc.rate.norm)以便发现内存分配的回退
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers()
+                || cmdOptions.shouldListResultFormats() || cmdOptions.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        for (ProfilerConfig profiler : cmdOptions.getProfilers()) {
+            if ("gc".equals(profiler.getKlass()) || GCProfiler.class.getName().equals(profiler.getKlass())) {
+                new Runner(cmdOptions).run();
+                return;
+            }
+        }
+        Options options = new OptionsBuilder().parent(cmdOptions).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.huawei.imagesearch.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.huawei.imagesearch.ImageSearchService;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用fastjson JSONObject构造请求body的耗时与内存分配，与ImageSearchService中各接口的构造方式一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyBenchmark
+{
+    private static final String PATH = "https://bucket.obs.myhuaweicloud.com/image/test.jpg";
+
+    private HashMap<String, String> tags;
+    private String base64Image;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        tags = new HashMap<String, String>();
+        tags.put("category", "shoes");
+        tags.put("brand", "benchmark");
+        base64Image = ImageSearchService.toBase64Str(BenchmarkData.sampleImage().getPath());
+    }
+
+    @Benchmark
+    public HttpEntity searchByUrl()
+    {
+        JSONObject json = new JSONObject();
+        json.put("path", PATH);
+        json.put("limit", 10);
+        json.put("offset", 0);
+        json.put("tags", tags);
+        return new ByteArrayEntity(JSON.toJSONBytes(json), ContentType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public HttpEntity updateTags()
+    {
+        JSONObject json = new JSONObject();
+        json.put("path", PATH);
+        json.put("tags", tags);
+        return new ByteArrayEntity(JSON.toJSONBytes(json), ContentType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public HttpEntity createIndexBase64()
+    {
+        JSONObject json = new JSONObject();
+        json.put("path", PATH);
+        json.put("file", base64Image);
+        json.put("tags", tags);
+        return new ByteArrayEntity(JSON.toJSONBytes(json), ContentType.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,101 @@
+package com.huawei.imagesearch.benchmark;
+
+import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.model.SearchResult;
+import com.huawei.imagesearch.util.AccessServiceUtil;
+import com.huawei.imagesearch.util.HttpClientUtils;
+import org.apache.http.Header;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对进程内{@link LocalImageSearchServer}的完整调用：请求构造、AK/SK签名、连接池复用、发送及返回解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RoundTripBenchmark
+{
+    private static final String PROJECT_ID = "benchmark-project";
+    private static final String INSTANCE = "benchmark-instance";
+    private static final String PATH = "https://bucket.obs.myhuaweicloud.com/image/test.jpg";
+
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private AccessServiceUtil accessServiceUtil;
+    private String searchUrl;
+    private Header[] headers;
+    private String searchBody;
+    private HashMap<String, String> tags;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService("image", "cn-north-4", "benchmark-ak", "benchmark-sk", server.getEndpoint());
+        accessServiceUtil = new AccessServiceUtil("benchmark-ak", "benchmark-sk", "image", "cn-north-4");
+        searchUrl = server.getEndpoint() + "/v1/" + PROJECT_ID + "/" + INSTANCE + "/image/search";
+        headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
+        searchBody = "{\"path\":\"" + PATH + "\",\"limit\":10,\"offset\":0}";
+        tags = new HashMap<String, String>();
+        tags.put("category", "shoes");
+        for (int i = 1; i <= 3; i++) {
+            server.addImage(PROJECT_ID, INSTANCE, "https://bucket.obs.myhuaweicloud.com/image/" + i + ".jpg", tags);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String executeWithAkSk() throws Exception
+    {
+        return accessServiceUtil.executeWithAkSk(HttpMethodName.POST, searchUrl, headers,
+                new StringEntity(searchBody, "utf-8"), HttpClientUtils.BODY_AS_STRING);
+    }
+
+    @Benchmark
+    public String requestSearchSimUrl()
+    {
+        return service.requestSearchSimUrl(PROJECT_ID, INSTANCE, PATH, 10, 0, tags);
+    }
+
+    @Benchmark
+    public SearchResult searchSimUrl()
+    {
+        return service.searchSimUrl(PROJECT_ID, INSTANCE, PATH, 10, 0, tags, 0);
+    }
+
+    @Benchmark
+    public SearchResult searchSimUrlAsync() throws Exception
+    {
+        return service.searchSimUrlAsync(PROJECT_ID, INSTANCE, PATH, 10, 0, tags, 0).get();
+    }
+}
@@ -0,0 +1,117 @@
+package com.huawei.imagesearch.benchmark;
+
+import com.cloud.sdk.DefaultRequest;
+import com.cloud.sdk.auth.credentials.BasicCredentials;
+import com.cloud.sdk.auth.signer.Signer;
+import com.cloud.sdk.auth.signer.SignerFactory;
+import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.imagesearch.util.AkSkSigner;
+import com.huawei.imagesearch.util.SignableUrl;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AK/SK签名耗时对比：legacy为改造前AccessServiceUtil每次请求的签名流程，signer为复用的AkSkSigner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignerBenchmark
+{
+    private static final String AK = "benchmark-ak";
+    private static final String SK = "benchmark-sk";
+
+    @Param({"https://imagesearch.cn-north-4.myhuaweicloud.com/v1/project/instance/image/search",
+            "https://imagesearch.cn-north-4.myhuaweicloud.com/v1/project/instance/image/search?limit=10&offset=0"})
+    public String url;
+
+    private Header[] headers;
+    private String body;
+    private Signer legacySigner;
+    private AkSkSigner akSkSigner;
+    private SignableUrl signableUrl;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
+        body = "{\"path\":\"https://bucket.obs.myhuaweicloud.com/image/test.jpg\",\"limit\":10,\"offset\":0}";
+        legacySigner = SignerFactory.getSigner("cn-north-4a", "cn-north-4");
+        akSkSigner = new AkSkSigner(AK, SK, "cn-north-4a", "cn-north-4");
+        signableUrl = SignableUrl.parse(url);
+    }
+
+    @Benchmark
+    public HttpRequestBase legacy() throws Exception
+    {
+        StringEntity entity = new StringEntity(body, "utf-8");
+        DefaultRequest<Object> request = new DefaultRequest<Object>();
+        long contentLength = entity.getContentLength();
+        request.setEndpoint(new URI(url));
+        request.setHttpMethod(HttpMethodName.POST);
+        HashMap<String, String> newHeaders = new HashMap<>();
+        for (Header header : headers) {
+            newHeaders.put(header.getName(), header.getValue());
+        }
+        request.setHeaders(newHeaders);
+        request.setContent(entity.getContent());
+        if (url.contains("?")) {
+            String parameters = url.substring(url.indexOf("?") + 1);
+            Map<String, String> parametersMap = new HashMap<String, String>();
+            if (!"".equals(parameters)) {
+                for (String p : parameters.split("&")) {
+                    parametersMap.put(p.split("=")[0], p.split("=")[1]);
+                }
+                request.setParameters(parametersMap);
+            }
+        }
+        legacySigner.sign(request, new BasicCredentials(AK, SK));
+        HttpPost post = new HttpPost(new URL(url).toString());
+        post.setEntity(new InputStreamEntity(request.getContent(), contentLength));
+        Map<String, String> requestHeaders = request.getHeaders();
+        for (String key : requestHeaders.keySet()) {
+            if (key.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                continue;
+            }
+            post.addHeader(key, requestHeaders.get(key));
+        }
+        return post;
+    }
+
+    @Benchmark
+    public HttpRequestBase signer() throws Exception
+    {
+        return akSkSigner.sign(HttpMethodName.POST, url, headers, new StringEntity(body, "utf-8"));
+    }
+
+    @Benchmark
+    public HttpRequestBase signerPreParsedUrl() throws Exception
+    {
+        return akSkSigner.sign(HttpMethodName.POST, signableUrl, headers, new StringEntity(body, "utf-8"));
+    }
+}
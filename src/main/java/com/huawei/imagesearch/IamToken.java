@@ -0,0 +1,32 @@
+package com.huawei.imagesearch;
+
+/**
+ * 从IAM获取的Token及其过期时间
+ */
+public class IamToken
+{
+    private final String token;
+    private final long expiresAt;
+
+    public IamToken(String token, long expiresAt)
+    {
+        this.token = token;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return X-Subject-Token的值
+     */
+    public String getToken()
+    {
+        return token;
+    }
+
+    /**
+     * @return 过期时间(毫秒时间戳)
+     */
+    public long getExpiresAt()
+    {
+        return expiresAt;
+    }
+}
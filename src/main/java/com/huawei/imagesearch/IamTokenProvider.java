@@ -0,0 +1,200 @@
+package com.huawei.imagesearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 使用用户名密码从IAM获取并缓存Token：在过期前由后台线程提前刷新，
+ * 并发的刷新请求合并为一次IAM调用；读取Token只是一次volatile读，不加锁
+ */
+public class IamTokenProvider implements TokenProvider, Closeable
+{
+    private static final long DEFAULT_REFRESH_AHEAD_MILLIS = 60L * 60 * 1000;
+    private static final long RETRY_DELAY_MILLIS = 30L * 1000;
+
+    private final String username;
+    private final String password;
+    private final String domainName;
+    private final String projectName;
+    private final String iamUrl;
+    private final long refreshAheadMillis;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<CompletableFuture<IamToken>> inflight = new AtomicReference<CompletableFuture<IamToken>>();
+    private volatile IamToken current;
+    private final Object timerLock = new Object();
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param username    用户名
+     * @param password    密码
+     * @param domainName  域名
+     * @param projectName 区域名，可以参考http://developer.huaweicloud.com/dev/endpoint
+     */
+    public IamTokenProvider(String username, String password, String domainName, String projectName)
+    {
+        this(username, password, domainName, projectName, TokenUtil.DEFAULT_IAM_URL, DEFAULT_REFRESH_AHEAD_MILLIS);
+    }
+
+    /**
+     * @param username    用户名
+     * @param password    密码
+     * @param domainName  域名
+     * @param projectName 区域名，可以参考http://developer.huaweicloud.com/dev/endpoint
+     * @param iamUrl      IAM获取Token的地址
+     * @param refreshAheadMillis 在过期前多久开始刷新(毫秒)，默认1小时
+     */
+    public IamTokenProvider(String username, String password, String domainName, String projectName,
+            String iamUrl, long refreshAheadMillis)
+    {
+        this.username = username;
+        this.password = password;
+        this.domainName = domainName;
+        this.projectName = projectName;
+        this.iamUrl = iamUrl;
+        this.refreshAheadMillis = refreshAheadMillis;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "iam-token-refresher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // 被替换的定时立即移出队列
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * 返回缓存的Token；已进入提前刷新窗口时触发后台刷新并立即返回旧Token，
+     * 仅在没有Token或Token已过期时等待刷新完成
+     */
+    @Override
+    public String getToken() throws IOException
+    {
+        IamToken token = this.current;
+        long now = System.currentTimeMillis();
+        if (null != token && now < token.getExpiresAt()) {
+            if (now >= token.getExpiresAt() - refreshAheadMillis) {
+                refresh();
+            }
+            return token.getToken();
+        }
+        try {
+            return refresh().get().getToken();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for token");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("get token failed", cause);
+        }
+    }
+
+    /**
+     * 发起一次刷新，已有刷新在进行时直接返回该次刷新的结果
+     * @return 刷新结果
+     */
+    public CompletableFuture<IamToken> refresh()
+    {
+        while (true) {
+            CompletableFuture<IamToken> running = inflight.get();
+            if (null != running) {
+                return running;
+            }
+            final CompletableFuture<IamToken> future = new CompletableFuture<IamToken>();
+            if (inflight.compareAndSet(null, future)) {
+                try {
+                    scheduler.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            doRefresh(future);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inflight.compareAndSet(future, null);
+                    future.completeExceptionally(e);
+                }
+                return future;
+            }
+        }
+    }
+
+    private void doRefresh(CompletableFuture<IamToken> future)
+    {
+        try {
+            IamToken token = TokenUtil.requestToken(username, password, domainName, projectName, iamUrl);
+            this.current = token;
+            inflight.compareAndSet(future, null);
+            future.complete(token);
+            long delay = token.getExpiresAt() - refreshAheadMillis - System.currentTimeMillis();
+            scheduleRefresh(Math.max(delay, RETRY_DELAY_MILLIS), true);
+        } catch (Throwable e) {
+            inflight.compareAndSet(future, null);
+            future.completeExceptionally(e);
+            IamToken token = this.current;
+            if (null != token && System.currentTimeMillis() < token.getExpiresAt()) {
+                scheduleRefresh(RETRY_DELAY_MILLIS, false);
+            }
+        }
+    }
+
+    /**
+     * 任何时刻最多只有一个定时刷新：刷新成功后按新Token的过期时间替换原有定时，
+     * 刷新失败时仅在没有待执行的定时时安排重试，刷新从哪里触发都不会增加定时
+     * @param replace 取消尚未执行的定时后重新安排
+     */
+    private void scheduleRefresh(long delayMillis, boolean replace)
+    {
+        synchronized (timerLock) {
+            if (null != timer && !timer.isDone()) {
+                if (!replace) {
+                    return;
+                }
+                timer.cancel(false);
+            }
+            try {
+                timer = scheduler.schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        refresh();
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // 已关闭
+            }
+        }
+    }
+
+    /**
+     * 停止后台刷新
+     */
+    @Override
+    public void close()
+    {
+        synchronized (timerLock) {
+            if (null != timer) {
+                timer.cancel(false);
+            }
+        }
+        scheduler.shutdownNow();
+    }
+}
@@ -1,34 +1,97 @@
 package com.huawei.imagesearch;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.imagesearch.bulk.IndexedDigestStore;
+import com.huawei.imagesearch.cache.ImageExistenceCache;
+import com.huawei.imagesearch.cache.SearchCacheKey;
+import com.huawei.imagesearch.cache.SearchResultCache;
+import com.huawei.imagesearch.hedge.HedgingExecutor;
+import com.huawei.imagesearch.model.ImageCheckResult;
+import com.huawei.imagesearch.model.ResponseParsers;
+import com.huawei.imagesearch.model.SearchResult;
+import com.huawei.imagesearch.model.ServiceInfo;
+import com.huawei.imagesearch.model.ServiceResponse;
+import com.huawei.imagesearch.pipeline.AkSkAuthenticator;
+import com.huawei.imagesearch.pipeline.ApiRequest;
+import com.huawei.imagesearch.pipeline.MetricsInterceptor;
+import com.huawei.imagesearch.pipeline.RequestAuthenticator;
+import com.huawei.imagesearch.pipeline.RequestInterceptor;
+import com.huawei.imagesearch.pipeline.RequestPipeline;
+import com.huawei.imagesearch.pipeline.RequestRoute;
+import com.huawei.imagesearch.pipeline.RetryInterceptor;
+import com.huawei.imagesearch.pipeline.ServiceUrls;
+import com.huawei.imagesearch.pipeline.TokenAuthenticator;
+import com.huawei.imagesearch.ratelimit.RateLimiter;
+import com.huawei.imagesearch.retry.RetryExecutor;
+import com.huawei.imagesearch.routing.EndpointRouter;
+import com.huawei.imagesearch.routing.RegionEndpoint;
 import com.huawei.imagesearch.util.AccessServiceUtil;
+import com.huawei.imagesearch.util.Base64FileEntity;
+import com.huawei.imagesearch.util.ConnectionLeakDetector;
+import com.huawei.imagesearch.util.ConnectionWarmer;
+import com.huawei.imagesearch.util.HttpAsyncClientBase;
+import com.huawei.imagesearch.util.HttpAsyncClientUtils;
+import com.huawei.imagesearch.util.HttpClientBase;
+import com.huawei.imagesearch.util.HttpClientConfig;
 import com.huawei.imagesearch.util.HttpClientUtils;
+import com.huawei.imagesearch.util.ImagePreprocessor;
+import com.huawei.imagesearch.util.ResponseUtils;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
-import org.apache.http.Header;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.message.BasicHeader;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 调用图像搜索的工具类，对相关参数和网络请求进行了封装
  */
-public class ImageSearchService
+public class ImageSearchService implements Closeable
 {
     private static Map<String,String> endpointMap = new HashMap<String, String>();
     private String token;
+    private volatile TokenProvider tokenProvider;
+    private volatile SearchResultCache searchCache;
+    private volatile ImageExistenceCache existenceCache;
+    private volatile IndexedDigestStore digestStore;
+    private volatile RetryExecutor retryExecutor;
+    private volatile RateLimiter rateLimiter;
+    private volatile ImagePreprocessor imagePreprocessor;
+    private volatile HedgingExecutor hedgingExecutor;
+    private volatile EndpointRouter endpointRouter;
     private String ak;
     private String sk;
     private boolean useToken = true;
     private AccessServiceUtil accessServiceUtil = null;
     private String endPointUrl;
+    private volatile CloseableHttpClient httpClient = null;
+    private volatile HttpClientConfig httpClientConfig = null;
+    private volatile CloseableHttpAsyncClient httpAsyncClient = null;
+    private final ServiceUrls urls;
+    private volatile RequestAuthenticator authenticator;
+    private final List<RequestInterceptor> interceptors = new CopyOnWriteArrayList<RequestInterceptor>();
+    private volatile RequestPipeline pipeline;
+
+    private static final RequestInterceptor METRICS_INTERCEPTOR = new MetricsInterceptor();
 
     static {
         /*  图像搜索服务的区域和终端节点信息可以从如下地址查询
@@ -46,6 +109,8 @@ public class ImageSearchService
     public ImageSearchService(String token){
         this.useToken = true;
         this.token = token;
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new TokenAuthenticator(this::currentToken);
     }
 
     /**
@@ -57,6 +122,35 @@ public class ImageSearchService
         this.useToken = true;
         this.token = token;
         this.endPointUrl = endpointMap.get(region);
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new TokenAuthenticator(this::currentToken);
+    }
+
+    /**
+     * 使用此构造函数，后续请求全都是用token方式鉴权，每次请求时从tokenProvider获取当前Token
+     * @param tokenProvider Token来源，如{@link IamTokenProvider}
+     * @param region 服务所在region信息
+     */
+    public ImageSearchService(TokenProvider tokenProvider, String region){
+        this.useToken = true;
+        this.tokenProvider = tokenProvider;
+        this.endPointUrl = endpointMap.get(region);
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new TokenAuthenticator(this::currentToken);
+    }
+
+    /**
+     * 使用此构造函数，后续请求全都是用token方式鉴权,指定endPoint地址
+     * @param tokenProvider Token来源，如{@link IamTokenProvider}
+     * @param region 服务所在region信息
+     * @param endPointUrl endPoint地址
+     */
+    public ImageSearchService(TokenProvider tokenProvider, String region, String endPointUrl){
+        this.useToken = true;
+        this.tokenProvider = tokenProvider;
+        this.endPointUrl = endPointUrl;
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new TokenAuthenticator(this::currentToken);
     }
 
     /**
@@ -73,6 +167,8 @@ public class ImageSearchService
         this.sk = sk;
         this.endPointUrl = endPointUrl;
         this.accessServiceUtil = new AccessServiceUtil(ak, sk, serviceName, region);
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new AkSkAuthenticator(this.accessServiceUtil);
     }
 
     /**
@@ -88,9 +184,10 @@ public class ImageSearchService
         this.sk = sk;
         this.endPointUrl = endpointMap.get(region);
         this.accessServiceUtil = new AccessServiceUtil(ak, sk, serviceName, region);
+        this.urls = new ServiceUrls(this.endPointUrl);
+        this.authenticator = new AkSkAuthenticator(this.accessServiceUtil);
     }
 
-    private static final String REGISTER_SERVICE_URL = "%s/v1/%s/service";
     /**
      * 指定用户名和模型创建实例，实例中会生成图片索引库，用来存放图片
      * @param projectId 项目projectID
@@ -103,7 +200,24 @@ public class ImageSearchService
      */
     public String requestCreateService(String projectId,
             String name, String model, String description, List<String> tags, Integer level){
-        String url = String.format(REGISTER_SERVICE_URL, this.endPointUrl, projectId);
+        String url = this.urls.service(projectId);
+        return execute(OperationType.SERVICE, HttpMethodName.POST, url,
+                createServiceEntity(name, model, description, tags, level));
+    }
+
+    /**
+     * {@link #requestCreateService}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestCreateServiceAsync(String projectId,
+            String name, String model, String description, List<String> tags, Integer level){
+        String url = this.urls.service(projectId);
+        return executeAsync(OperationType.SERVICE, HttpMethodName.POST, url,
+                createServiceEntity(name, model, description, tags, level));
+    }
+
+    private static HttpEntity createServiceEntity(String name, String model, String description,
+            List<String> tags, Integer level){
         //请求体
         JSONObject json = new JSONObject();
         json.put("name", name);
@@ -111,22 +225,9 @@ public class ImageSearchService
         json.put("description", description);
         json.put("tags", tags);
         json.put("level",level);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[] { new BasicHeader("X-Auth-Token", this.token),
-                    new BasicHeader("Content-Type", "application/json") };
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
-
+        return toEntity(json);
     }
 
-    private static final String CREATE_INDEX_URL = "%s/v1/%s/%s/image";
     /**
      * 创建图像索引,使用Base64编码后的文件方式，使用Token认证方式访问服务；</br>
      * 支持JPG/PNG/BMP格式
@@ -140,24 +241,64 @@ public class ImageSearchService
      */
     public String requestCreateIndexBase64(String projectId, String instanceName,
             String path, String file, HashMap<String, String> tags)throws IOException{
-        String url = String.format(CREATE_INDEX_URL, this.endPointUrl, projectId, instanceName);
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                execute(OperationType.CREATE_INDEX, HttpMethodName.POST, url,
+                        createIndexBase64Entity(path, file, tags)));
+    }
+
+    /**
+     * {@link #requestCreateIndexBase64}的异步版本
+     * @return 调用接口的返回值,文件读取失败或调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestCreateIndexBase64Async(String projectId, String instanceName,
+            String path, String file, HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        try {
+            return afterImageMutation(projectId, instanceName, path, true, tags,
+                    executeAsync(OperationType.CREATE_INDEX, HttpMethodName.POST, url,
+                            createIndexBase64Entity(path, file, tags)));
+        } catch (IOException e) {
+            return failedFuture(e);
+        }
+    }
+
+    /**
+     * 创建图像索引，使用内存中的图像数据，适用于调用方已自行读取文件的批量场景
+     * @param projectId 项目projectID
+     * @param instanceName 服务名称
+     * @param path 图片索引路径
+     * @param image 图像文件内容，支持JPG/PNG/BMP格式
+     * @param tags 图片标签
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestCreateIndexBase64Async(String projectId, String instanceName,
+            String path, byte[] image, HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                executeAsync(OperationType.CREATE_INDEX, HttpMethodName.POST, url,
+                        createIndexBase64Entity(path, image, tags)));
+    }
 
+    private HttpEntity createIndexBase64Entity(String path, String file, HashMap<String, String> tags)
+            throws IOException{
+        if (null != this.imagePreprocessor) {
+            return createIndexBase64Entity(path, FileUtils.readFileToByteArray(new File(file)), tags);
+        }
+        //请求体，图像在发送时才边读取边编码
+        JSONObject json = new JSONObject();
+        json.put("path", path);
+        json.put("tags", tags);
+        return new Base64FileEntity(json, "file", new File(file));
+    }
+
+    private HttpEntity createIndexBase64Entity(String path, byte[] image, HashMap<String, String> tags){
         //请求体
         JSONObject json = new JSONObject();
         json.put("path", path);
-        json.put("file", toBase64Str(file));
+        json.put("file", encodeImage(image));
         json.put("tags", tags);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
     /**
@@ -170,25 +311,30 @@ public class ImageSearchService
      */
     public String requestCreateIndexUrl(String projectId, String instanceName,
             String path , HashMap<String, String> tags){
-        String url = String.format(CREATE_INDEX_URL, this.endPointUrl, projectId, instanceName);
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                execute(OperationType.CREATE_INDEX, HttpMethodName.POST, url, pathTagsEntity(path, tags)));
+    }
+
+    /**
+     * {@link #requestCreateIndexUrl}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestCreateIndexUrlAsync(String projectId, String instanceName,
+            String path , HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                executeAsync(OperationType.CREATE_INDEX, HttpMethodName.POST, url, pathTagsEntity(path, tags)));
+    }
+
+    private static HttpEntity pathTagsEntity(String path, HashMap<String, String> tags){
         //请求体
         JSONObject json = new JSONObject();
         json.put("path", path);
         json.put("tags", tags);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
-    private static final String IMAGR_SEARCH_URL = "%s/v1/%s/%s/image/search";
     /**
      * 搜索相似图像，使用Base64编码后的文件方式，使用Token认证方式访问服务；</br>
      * 支持JPG/PNG/BMP格式
@@ -204,28 +350,75 @@ public class ImageSearchService
     public String requestSearchSimBase64(String projectId, String instanceName,
             String file, Integer limit, Integer offset, HashMap<String, String> tags)
             throws IOException{
-        String url = String.format(IMAGR_SEARCH_URL, this.endPointUrl, projectId, instanceName);
-        //请求体
+        String url = this.urls.imageSearch(projectId, instanceName);
+        SearchResultCache cache = this.searchCache;
+        if (null == cache) {
+            return execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                    searchSimBase64Entity(file, limit, offset, tags));
+        }
+        SearchCacheKey key = SearchCacheKey.forImage(projectId, instanceName,
+                SearchCacheKey.digest(new File(file)), limit, offset, tags);
+        String cached = cache.get(key);
+        if (null != cached) {
+            return cached;
+        }
+        long generation = cache.generation(projectId, instanceName);
+        return cacheResult(cache, key, generation,
+                execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                        searchSimBase64Entity(file, limit, offset, tags)));
+    }
+
+    /**
+     * {@link #requestSearchSimBase64}的异步版本
+     * @return 调用接口的返回值,文件读取失败或调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestSearchSimBase64Async(String projectId, String instanceName,
+            String file, Integer limit, Integer offset, HashMap<String, String> tags){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        try {
+            SearchResultCache cache = this.searchCache;
+            if (null == cache) {
+                return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                        searchSimBase64Entity(file, limit, offset, tags));
+            }
+            final SearchCacheKey key = SearchCacheKey.forImage(projectId, instanceName,
+                    SearchCacheKey.digest(new File(file)), limit, offset, tags);
+            String cached = cache.get(key);
+            if (null != cached) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            long generation = cache.generation(projectId, instanceName);
+            return cacheResult(cache, key, generation,
+                    executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                            searchSimBase64Entity(file, limit, offset, tags)));
+        } catch (IOException e) {
+            return failedFuture(e);
+        }
+    }
+
+    private HttpEntity searchSimBase64Entity(String file, Integer limit, Integer offset,
+            HashMap<String, String> tags) throws IOException{
+        //请求体，图像在发送时才边读取边编码
         JSONObject json = new JSONObject();
-        json.put("file", toBase64Str(file));
         json.put("limit", limit);
         json.put("offset", offset);
         if(null != tags && 0 != tags.size())
         {
             json.put("tags", tags);
         }
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-
-        if(this.useToken)
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
+        if (null != this.imagePreprocessor) {
+            json.put("file", encodeImage(FileUtils.readFileToByteArray(new File(file))));
+            return toEntity(json);
         }
+        return new Base64FileEntity(json, "file", new File(file));
+    }
+
+    /**
+     * Base64编码图像，开启预处理时先缩小并重新编码
+     */
+    private String encodeImage(byte[] image){
+        ImagePreprocessor preprocessor = this.imagePreprocessor;
+        return Base64.encodeBase64String(null != preprocessor ? preprocessor.process(image) : image);
     }
 
     /**
@@ -240,7 +433,47 @@ public class ImageSearchService
      */
     public String requestSearchSimUrl(String projectId, String instanceName,
             String path, Integer limit, Integer offset, HashMap<String, String> tags){
-        String url = String.format(IMAGR_SEARCH_URL, this.endPointUrl, projectId, instanceName);
+        String url = this.urls.imageSearch(projectId, instanceName);
+        SearchResultCache cache = this.searchCache;
+        if (null == cache) {
+            return execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                    searchSimUrlEntity(path, limit, offset, tags));
+        }
+        SearchCacheKey key = SearchCacheKey.forPath(projectId, instanceName, path, limit, offset, tags);
+        String cached = cache.get(key);
+        if (null != cached) {
+            return cached;
+        }
+        long generation = cache.generation(projectId, instanceName);
+        return cacheResult(cache, key, generation,
+                execute(OperationType.SEARCH, HttpMethodName.POST, url, searchSimUrlEntity(path, limit, offset, tags)));
+    }
+
+    /**
+     * {@link #requestSearchSimUrl}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestSearchSimUrlAsync(String projectId, String instanceName,
+            String path, Integer limit, Integer offset, HashMap<String, String> tags){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        SearchResultCache cache = this.searchCache;
+        if (null == cache) {
+            return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                    searchSimUrlEntity(path, limit, offset, tags));
+        }
+        SearchCacheKey key = SearchCacheKey.forPath(projectId, instanceName, path, limit, offset, tags);
+        String cached = cache.get(key);
+        if (null != cached) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long generation = cache.generation(projectId, instanceName);
+        return cacheResult(cache, key, generation,
+                executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                        searchSimUrlEntity(path, limit, offset, tags)));
+    }
+
+    private static HttpEntity searchSimUrlEntity(String path, Integer limit, Integer offset,
+            HashMap<String, String> tags){
         //请求体
         JSONObject json = new JSONObject();
         json.put("path",path);
@@ -250,17 +483,7 @@ public class ImageSearchService
         {
             json.put("tags", tags);
         }
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
     /**
@@ -274,28 +497,31 @@ public class ImageSearchService
      */
     public String requestSearchSimTags(String projectId, String instanceName,
             Integer limit, Integer offset, HashMap<String, String> tags){
-        String url = String.format(IMAGR_SEARCH_URL, this.endPointUrl, projectId, instanceName);
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return execute(OperationType.SEARCH, HttpMethodName.POST, url, searchSimTagsEntity(limit, offset, tags));
+    }
+
+    /**
+     * {@link #requestSearchSimTags}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestSearchSimTagsAsync(String projectId, String instanceName,
+            Integer limit, Integer offset, HashMap<String, String> tags){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url, searchSimTagsEntity(limit, offset, tags));
+    }
+
+    private static HttpEntity searchSimTagsEntity(Integer limit, Integer offset, HashMap<String, String> tags){
         //请求体
         JSONObject json = new JSONObject();
         json.put("limit", limit);
         json.put("offset", offset);
         json.put("tags", tags);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
 
 
-    private static final String CROSS_SEARCH_PATH = "%s/v1/%s/image/cross-search";
     /**
      * 给定源实例中多个图片路径，到目标实例中搜索相同或相似图片。目前仅图库模型支持该接口，其他模型暂不支持
      * @param projectId  项目ID
@@ -308,7 +534,24 @@ public class ImageSearchService
      */
     public String requestCrossSearch(String projectId, Integer limit, Integer offset, ArrayList<String> paths,
             String sourceInstance, String targetInstance){
-        String url = String.format(CROSS_SEARCH_PATH, this.endPointUrl, projectId);
+        String url = this.urls.crossSearch(projectId);
+        return execute(OperationType.CROSS_SEARCH, HttpMethodName.POST, url,
+                crossSearchEntity(limit, offset, paths, sourceInstance, targetInstance));
+    }
+
+    /**
+     * {@link #requestCrossSearch}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestCrossSearchAsync(String projectId, Integer limit, Integer offset,
+            ArrayList<String> paths, String sourceInstance, String targetInstance){
+        String url = this.urls.crossSearch(projectId);
+        return executeAsync(OperationType.CROSS_SEARCH, HttpMethodName.POST, url,
+                crossSearchEntity(limit, offset, paths, sourceInstance, targetInstance));
+    }
+
+    private static HttpEntity crossSearchEntity(Integer limit, Integer offset, ArrayList<String> paths,
+            String sourceInstance, String targetInstance){
         //请求体
         JSONObject json = new JSONObject();
         json.put("limit",limit);
@@ -316,20 +559,9 @@ public class ImageSearchService
         json.put("paths", paths);
         json.put("source_instance", sourceInstance);
         json.put("target_instance", targetInstance);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
-    private static final String IMAGR_CHECK_URL = "%s/v1/%s/%s/image/check";
     /**
      * 查询图像，使用图像URL，使用Token认证方式访问服务
      * @param projectId 项目ID
@@ -339,26 +571,53 @@ public class ImageSearchService
      */
     public String requestImageCheck(String projectId, String instanceName,
             String path){
-        String url = String.format(IMAGR_CHECK_URL, this.endPointUrl, projectId, instanceName);
+        String url = this.urls.imageCheck(projectId, instanceName);
+        ImageExistenceCache cache = this.existenceCache;
+        if (null == cache) {
+            return execute(OperationType.CHECK, HttpMethodName.POST, url, pathEntity(path));
+        }
+        String cached = cache.get(projectId, instanceName, path);
+        if (null != cached) {
+            return cached;
+        }
+        long version = cache.version();
+        String result = execute(OperationType.CHECK, HttpMethodName.POST, url, pathEntity(path));
+        if (null != result) {
+            cache.put(projectId, instanceName, path, result, version);
+        }
+        return result;
+    }
+
+    /**
+     * {@link #requestImageCheck}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestImageCheckAsync(String projectId, String instanceName,
+            String path){
+        String url = this.urls.imageCheck(projectId, instanceName);
+        final ImageExistenceCache cache = this.existenceCache;
+        if (null == cache) {
+            return executeAsync(OperationType.CHECK, HttpMethodName.POST, url, pathEntity(path));
+        }
+        String cached = cache.get(projectId, instanceName, path);
+        if (null != cached) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final long version = cache.version();
+        return executeAsync(OperationType.CHECK, HttpMethodName.POST, url, pathEntity(path)).thenApply(result -> {
+            cache.put(projectId, instanceName, path, result, version);
+            return result;
+        });
+    }
 
+    private static HttpEntity pathEntity(String path){
         //请求体
         JSONObject json = new JSONObject();
         json.put("path", path);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPostResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.POST, url, headers, stringEntity);
-        }
+        return toEntity(json);
     }
 
 
-    private static final String DELETE_INDEX_URL = "%s/v1/%s/%s/image";
     /**
      * 删除图像索引，使用图像URL，使用Token认证方式访问服务
      * @param projectId  项目ID
@@ -368,26 +627,23 @@ public class ImageSearchService
      */
     public String requestDeleteIndex(String projectId, String instanceName,
             String path){
-        String url = String.format(DELETE_INDEX_URL, this.endPointUrl, projectId, instanceName);
-        //请求体
-        JSONObject json = new JSONObject();
-        json.put("path", path);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, false, null,
+                execute(OperationType.DELETE_INDEX, HttpMethodName.DELETE, url, pathEntity(path)));
+    }
 
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpDeleteResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.DELETE, url, headers, stringEntity);
-        }
+    /**
+     * {@link #requestDeleteIndex}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestDeleteIndexAsync(String projectId, String instanceName,
+            String path){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, false, null,
+                executeAsync(OperationType.DELETE_INDEX, HttpMethodName.DELETE, url, pathEntity(path)));
     }
 
 
-    private static final String UPDATE_TAG_URL = "%s/v1/%s/%s/image";
     /**
      * 修改图像索引库中已存在的图片信息
      * @param projectId 项目projectID
@@ -398,26 +654,22 @@ public class ImageSearchService
      */
     public String requestUpdateTags(String projectId, String instanceName,
             String path, HashMap<String, String> tags){
-        String url = String.format(UPDATE_TAG_URL, this.endPointUrl, projectId, instanceName);
-        //请求体
-        JSONObject json = new JSONObject();
-        json.put("path", path);
-        json.put("tags", tags);
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                execute(OperationType.UPDATE_TAGS, HttpMethodName.PUT, url, pathTagsEntity(path, tags)));
+    }
 
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpPutResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.PUT, url, headers, stringEntity);
-        }
+    /**
+     * {@link #requestUpdateTags}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestUpdateTagsAsync(String projectId, String instanceName,
+            String path, HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                executeAsync(OperationType.UPDATE_TAGS, HttpMethodName.PUT, url, pathTagsEntity(path, tags)));
     }
 
-    private static final String DELETE_SERVICE_URL = "%s/v1/%s/service/%s";
     /**
      * 删除已存在的实例
      * @param projectId 项目ID
@@ -425,26 +677,27 @@ public class ImageSearchService
      * @return 调用接口的返回值,如果返回null，则说明调用失败
      */
     public String requestDeleteService(String projectId, String instanceName){
-        String url = String.format(DELETE_SERVICE_URL, this.endPointUrl, projectId, instanceName);
-        //请求体
-        JSONObject json = new JSONObject();
-        String requestBody = json.toJSONString();
-        StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
+        String url = this.urls.service(projectId, instanceName);
+        return afterInstanceDeleted(projectId, instanceName,
+                execute(OperationType.SERVICE, HttpMethodName.DELETE, url, deleteServiceEntity()));
+    }
 
+    /**
+     * {@link #requestDeleteService}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestDeleteServiceAsync(String projectId, String instanceName){
+        String url = this.urls.service(projectId, instanceName);
+        return afterInstanceDeleted(projectId, instanceName,
+                executeAsync(OperationType.SERVICE, HttpMethodName.DELETE, url, deleteServiceEntity()));
+    }
 
-        if(this.isUseToken())
-        {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpDeleteResult(url, headers, stringEntity);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.DELETE, url, headers, null);
-        }
+    private HttpEntity deleteServiceEntity(){
+        //AK/SK方式下删除实例不携带请求体
+        return this.isUseToken() ? toEntity(new JSONObject()) : null;
     }
 
 
-    private static final String GET_SERVICE_INFO_URL = "%s/v1/%s/service/%s";
     /**
      * 获取用户指定服务详细信息
      * @param projectId 项目ID
@@ -452,54 +705,1033 @@ public class ImageSearchService
      * @return 调用接口的返回值,如果返回null，则说明调用失败
      */
     public String requestGetServiceInfo(String projectId, String instanceName){
-        String url = String.format(GET_SERVICE_INFO_URL, this.endPointUrl, projectId, instanceName);
-        if(this.isUseToken())
+        String url = this.urls.service(projectId, instanceName);
+        return execute(OperationType.SERVICE, HttpMethodName.GET, url, null);
+    }
+
+    /**
+     * {@link #requestGetServiceInfo}的异步版本
+     * @return 调用接口的返回值,调用失败时future以异常方式完成
+     */
+    public CompletableFuture<String> requestGetServiceInfoAsync(String projectId, String instanceName){
+        String url = this.urls.service(projectId, instanceName);
+        return executeAsync(OperationType.SERVICE, HttpMethodName.GET, url, null);
+    }
+
+    /**
+     * 搜索相似图像并返回类型化结果，返回body直接从输入流解析，解析到maxHits条结果后停止
+     * @param projectId 项目ID
+     * @param instanceName 用户实例名称
+     * @param file 本地图像的路径
+     * @param limit 返回被检索图像的数量，默认10
+     * @param offset 偏移量，指定搜索结果返回起始位置，默认0
+     * @param tags 搜索标签,如果不需要标签，则传null
+     * @param maxHits 最多解析的结果数，小于等于0时不限制
+     * @return 搜索结果，服务返回的错误码见{@link SearchResult#getError()}；如果返回null，则说明调用失败
+     * @throws IOException 文件格式转化异常时，抛出此异常
+     */
+    public SearchResult searchSimBase64(String projectId, String instanceName,
+            String file, Integer limit, Integer offset, HashMap<String, String> tags, int maxHits)
+            throws IOException{
+        if (null != this.searchCache) {
+            return parseSearchResult(requestSearchSimBase64(projectId, instanceName, file, limit, offset, tags), maxHits);
+        }
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                searchSimBase64Entity(file, limit, offset, tags), ResponseParsers.searchResultHandler(maxHits));
+    }
+
+    /**
+     * {@link #searchSimBase64}的异步版本
+     */
+    public CompletableFuture<SearchResult> searchSimBase64Async(String projectId, String instanceName,
+            String file, Integer limit, Integer offset, HashMap<String, String> tags, final int maxHits){
+        if (null != this.searchCache) {
+            return requestSearchSimBase64Async(projectId, instanceName, file, limit, offset, tags)
+                    .thenApply(body -> parseSearchResult(body, maxHits));
+        }
+        String url = this.urls.imageSearch(projectId, instanceName);
+        try {
+            return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                    searchSimBase64Entity(file, limit, offset, tags),
+                    ResponseParsers.searchResultHandler(maxHits));
+        } catch (IOException e) {
+            return failedFuture(e);
+        }
+    }
+
+    /**
+     * 使用图像URL搜索相似图像并返回类型化结果，参数含义同{@link #requestSearchSimUrl}
+     * @param maxHits 最多解析的结果数，小于等于0时不限制
+     * @return 搜索结果，如果返回null，则说明调用失败
+     */
+    public SearchResult searchSimUrl(String projectId, String instanceName,
+            String path, Integer limit, Integer offset, HashMap<String, String> tags, int maxHits){
+        if (null != this.searchCache) {
+            return parseSearchResult(requestSearchSimUrl(projectId, instanceName, path, limit, offset, tags), maxHits);
+        }
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                searchSimUrlEntity(path, limit, offset, tags), ResponseParsers.searchResultHandler(maxHits));
+    }
+
+    /**
+     * {@link #searchSimUrl}的异步版本
+     */
+    public CompletableFuture<SearchResult> searchSimUrlAsync(String projectId, String instanceName,
+            String path, Integer limit, Integer offset, HashMap<String, String> tags, final int maxHits){
+        if (null != this.searchCache) {
+            return requestSearchSimUrlAsync(projectId, instanceName, path, limit, offset, tags)
+                    .thenApply(body -> parseSearchResult(body, maxHits));
+        }
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                searchSimUrlEntity(path, limit, offset, tags),
+                ResponseParsers.searchResultHandler(maxHits));
+    }
+
+    /**
+     * 使用图片标签搜索相似图像并返回类型化结果，参数含义同{@link #requestSearchSimTags}
+     * @param maxHits 最多解析的结果数，小于等于0时不限制
+     * @return 搜索结果，如果返回null，则说明调用失败
+     */
+    public SearchResult searchSimTags(String projectId, String instanceName,
+            Integer limit, Integer offset, HashMap<String, String> tags, int maxHits){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return execute(OperationType.SEARCH, HttpMethodName.POST, url,
+                searchSimTagsEntity(limit, offset, tags), ResponseParsers.searchResultHandler(maxHits));
+    }
+
+    /**
+     * {@link #searchSimTags}的异步版本
+     */
+    public CompletableFuture<SearchResult> searchSimTagsAsync(String projectId, String instanceName,
+            Integer limit, Integer offset, HashMap<String, String> tags, int maxHits){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url,
+                searchSimTagsEntity(limit, offset, tags), ResponseParsers.searchResultHandler(maxHits));
+    }
+
+    /**
+     * 使用Base64编码的图像分页搜索相似图像，图像只读取和编码一次，各页复用
+     * @param projectId 项目ID
+     * @param instanceName 用户实例名称
+     * @param file 本地图像的路径
+     * @param tags 搜索标签,如果不需要标签，则传null
+     * @param pageSize 每页请求的结果数
+     * @param minScore 相似度低于此值时停止，不需要时传0
+     * @param maxResults 最多返回的结果数，小于等于0时不限制
+     * @return 懒加载的结果迭代器，使用完毕或提前停止时应关闭
+     * @throws IOException 文件读取异常时，抛出此异常
+     */
+    public SearchIterator searchSimBase64Iterator(String projectId, String instanceName, String file,
+            HashMap<String, String> tags, int pageSize, double minScore, long maxResults) throws IOException{
+        JSONObject json = new JSONObject();
+        if(null != tags && 0 != tags.size())
         {
-            Header[] headers = new Header[]{new BasicHeader("X-Auth-Token", token),
-                    new BasicHeader("Content-Type", "application/json")};
-            return HttpClientUtils.getHttpGetResult(url, headers);
-        }else{
-            Header[] headers = new Header[]{new BasicHeader("Content-Type", "application/json")};
-            return accessServiceUtil.executeWithAkSkResultString(HttpMethodName.GET, url, headers, null);
+            json.put("tags", tags);
         }
+        json.put("file", encodeImage(FileUtils.readFileToByteArray(new File(file))));
+        return new SearchIterator(this, projectId, instanceName, json, pageSize, minScore, maxResults);
     }
 
+    /**
+     * 使用图像URL分页搜索相似图像，参数含义同{@link #searchSimBase64Iterator}
+     */
+    public SearchIterator searchSimUrlIterator(String projectId, String instanceName, String path,
+            HashMap<String, String> tags, int pageSize, double minScore, long maxResults){
+        JSONObject json = new JSONObject();
+        json.put("path", path);
+        if(null != tags && 0 != tags.size())
+        {
+            json.put("tags", tags);
+        }
+        return new SearchIterator(this, projectId, instanceName, json, pageSize, minScore, maxResults);
+    }
 
     /**
-     * 将二进制文件转为经Base64编码之后的对象
-     *
-     * @param file 文件名
-     * @return 被Base64编码之后的对象
-     * @throws IOException 文件格式转化异常时，抛出此异常
+     * 使用图片标签分页搜索，参数含义同{@link #searchSimBase64Iterator}
      */
-    public static String toBase64Str(String file) throws IOException {
-        byte[] fileData = FileUtils.readFileToByteArray(new File(file));
-        return Base64.encodeBase64String(fileData);
+    public SearchIterator searchSimTagsIterator(String projectId, String instanceName,
+            HashMap<String, String> tags, int pageSize, double minScore, long maxResults){
+        JSONObject json = new JSONObject();
+        json.put("tags", tags);
+        return new SearchIterator(this, projectId, instanceName, json, pageSize, minScore, maxResults);
     }
 
-    public String getToken()
-    {
-        return token;
+    /**
+     * 发送已构造好的分页搜索请求体，供{@link SearchIterator}使用
+     */
+    CompletableFuture<SearchResult> searchPageAsync(String projectId, String instanceName, HttpEntity entity){
+        String url = this.urls.imageSearch(projectId, instanceName);
+        return executeAsync(OperationType.SEARCH, HttpMethodName.POST, url, entity,
+                ResponseParsers.searchResultHandler(0));
     }
 
-    public void setToken(String token)
-    {
-        this.token = token;
+    /**
+     * 查询图像并返回类型化结果，参数含义同{@link #requestImageCheck}
+     * @return 查询结果，如果返回null，则说明调用失败
+     */
+    public ImageCheckResult imageCheck(String projectId, String instanceName, String path){
+        if (null != this.existenceCache) {
+            return parseImageCheck(requestImageCheck(projectId, instanceName, path));
+        }
+        String url = this.urls.imageCheck(projectId, instanceName);
+        return execute(OperationType.CHECK, HttpMethodName.POST, url,
+                pathEntity(path), ResponseParsers.IMAGE_CHECK_HANDLER);
     }
 
-    public String getAk()
-    {
-        return ak;
+    /**
+     * {@link #imageCheck}的异步版本
+     */
+    public CompletableFuture<ImageCheckResult> imageCheckAsync(String projectId, String instanceName, String path){
+        if (null != this.existenceCache) {
+            return requestImageCheckAsync(projectId, instanceName, path).thenApply(ImageSearchService::parseImageCheck);
+        }
+        String url = this.urls.imageCheck(projectId, instanceName);
+        return executeAsync(OperationType.CHECK, HttpMethodName.POST, url,
+                pathEntity(path), ResponseParsers.IMAGE_CHECK_HANDLER);
     }
 
-    public String getSk()
-    {
-        return sk;
+    /**
+     * 获取实例详细信息并返回类型化结果，参数含义同{@link #requestGetServiceInfo}
+     * @return 实例信息，如果返回null，则说明调用失败
+     */
+    public ServiceInfo getServiceInfo(String projectId, String instanceName){
+        String url = this.urls.service(projectId, instanceName);
+        return execute(OperationType.SERVICE, HttpMethodName.GET, url, null, ResponseParsers.SERVICE_INFO_HANDLER);
     }
 
-    public boolean isUseToken()
-    {
-        return useToken;
+    /**
+     * {@link #getServiceInfo}的异步版本
+     */
+    public CompletableFuture<ServiceInfo> getServiceInfoAsync(String projectId, String instanceName){
+        String url = this.urls.service(projectId, instanceName);
+        return executeAsync(OperationType.SERVICE, HttpMethodName.GET, url, null, ResponseParsers.SERVICE_INFO_HANDLER);
+    }
+
+    /**
+     * 通过URL添加图片并返回类型化结果，参数含义同{@link #requestCreateIndexUrl}
+     * @return 调用结果，如果返回null，则说明调用失败
+     */
+    public ServiceResponse createIndexUrl(String projectId, String instanceName, String path,
+            HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                execute(OperationType.CREATE_INDEX, HttpMethodName.POST, url,
+                        pathTagsEntity(path, tags), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * {@link #createIndexUrl}的异步版本
+     */
+    public CompletableFuture<ServiceResponse> createIndexUrlAsync(String projectId, String instanceName, String path,
+            HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                executeAsync(OperationType.CREATE_INDEX, HttpMethodName.POST, url,
+                        pathTagsEntity(path, tags), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * 删除图片并返回类型化结果，参数含义同{@link #requestDeleteIndex}
+     * @return 调用结果，如果返回null，则说明调用失败
+     */
+    public ServiceResponse deleteIndex(String projectId, String instanceName, String path){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, false, null,
+                execute(OperationType.DELETE_INDEX, HttpMethodName.DELETE, url,
+                        pathEntity(path), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * {@link #deleteIndex}的异步版本
+     */
+    public CompletableFuture<ServiceResponse> deleteIndexAsync(String projectId, String instanceName, String path){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, false, null,
+                executeAsync(OperationType.DELETE_INDEX, HttpMethodName.DELETE, url,
+                        pathEntity(path), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * 修改图片标签并返回类型化结果，参数含义同{@link #requestUpdateTags}
+     * @return 调用结果，如果返回null，则说明调用失败
+     */
+    public ServiceResponse updateTags(String projectId, String instanceName, String path,
+            HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                execute(OperationType.UPDATE_TAGS, HttpMethodName.PUT, url,
+                        pathTagsEntity(path, tags), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * {@link #updateTags}的异步版本
+     */
+    public CompletableFuture<ServiceResponse> updateTagsAsync(String projectId, String instanceName, String path,
+            HashMap<String, String> tags){
+        String url = this.urls.image(projectId, instanceName);
+        return afterImageMutation(projectId, instanceName, path, true, tags,
+                executeAsync(OperationType.UPDATE_TAGS, HttpMethodName.PUT, url,
+                        pathTagsEntity(path, tags), ResponseParsers.SERVICE_RESPONSE_HANDLER));
+    }
+
+    /**
+     * 解析缓存或同步接口返回的body，body为null或解析失败时返回null
+     */
+    private static SearchResult parseSearchResult(String body, int maxHits){
+        if (null == body) {
+            return null;
+        }
+        try {
+            return ResponseParsers.parseSearchResult(body, maxHits);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 解析缓存或同步接口返回的查询图像body，body为null或解析失败时返回null
+     */
+    private static ImageCheckResult parseImageCheck(String body){
+        if (null == body) {
+            return null;
+        }
+        try {
+            return ResponseParsers.parseImageCheck(body);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String cacheResult(SearchResultCache cache, SearchCacheKey key, long generation, String result){
+        if (ResponseUtils.isSuccess(result)) {
+            cache.put(key, result, generation);
+        }
+        return result;
+    }
+
+    private static CompletableFuture<String> cacheResult(final SearchResultCache cache, final SearchCacheKey key,
+            final long generation, CompletableFuture<String> future){
+        return future.thenApply(result -> cacheResult(cache, key, generation, result));
+    }
+
+    /**
+     * 实例内容变更后使该实例的搜索结果缓存失效
+     */
+    private <T> T afterMutation(String projectId, String instanceName, T result){
+        SearchResultCache cache = this.searchCache;
+        if (null != cache) {
+            cache.invalidate(projectId, instanceName);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> afterMutation(final String projectId, final String instanceName,
+            CompletableFuture<T> future){
+        if (null == this.searchCache) {
+            return future;
+        }
+        return future.whenComplete((result, error) -> afterMutation(projectId, instanceName, result));
+    }
+
+    /**
+     * 添加、删除图片或修改标签后更新图片存在性缓存：成功时记录图片是否存在，失败时结果未知，使该路径失效
+     */
+    private <T> T afterImageMutation(String projectId, String instanceName, String path, boolean exist,
+            Map<String, String> tags, T result){
+        ImageExistenceCache cache = this.existenceCache;
+        if (null != cache) {
+            if (!isSuccess(result)) {
+                cache.invalidate(projectId, instanceName, path);
+            } else if (exist) {
+                cache.recordPresent(projectId, instanceName, path, tags);
+            } else {
+                cache.recordAbsent(projectId, instanceName, path);
+            }
+        }
+        IndexedDigestStore store = this.digestStore;
+        if (null != store && !exist && isSuccess(result)) {
+            try {
+                store.remove(projectId, instanceName, path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return afterMutation(projectId, instanceName, result);
+    }
+
+    private <T> CompletableFuture<T> afterImageMutation(final String projectId, final String instanceName,
+            final String path, final boolean exist, final Map<String, String> tags, CompletableFuture<T> future){
+        if (null == this.existenceCache && (exist || null == this.digestStore)) {
+            return afterMutation(projectId, instanceName, future);
+        }
+        final Map<String, String> copy = null == tags ? null : new HashMap<String, String>(tags);
+        if (!exist && null != this.digestStore) {
+            // 摘要库写文件并fsync，不在I/O线程上执行
+            return future.whenCompleteAsync(
+                    (result, error) -> afterImageMutation(projectId, instanceName, path, exist, copy, result));
+        }
+        return future.whenComplete(
+                (result, error) -> afterImageMutation(projectId, instanceName, path, exist, copy, result));
+    }
+
+    private static boolean isSuccess(Object result){
+        if (result instanceof ServiceResponse) {
+            return ((ServiceResponse) result).isSuccess();
+        }
+        return result instanceof String && ResponseUtils.isSuccess((String) result);
+    }
+
+    /**
+     * 删除实例后使该实例的搜索结果缓存和图片存在性缓存失效
+     */
+    private <T> T afterInstanceDeleted(String projectId, String instanceName, T result){
+        ImageExistenceCache cache = this.existenceCache;
+        if (null != cache) {
+            cache.invalidate(projectId, instanceName);
+        }
+        IndexedDigestStore store = this.digestStore;
+        if (null != store && isSuccess(result)) {
+            try {
+                store.removeInstance(projectId, instanceName);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return afterMutation(projectId, instanceName, result);
+    }
+
+    private <T> CompletableFuture<T> afterInstanceDeleted(final String projectId, final String instanceName,
+            CompletableFuture<T> future){
+        if (null != this.digestStore) {
+            return future.whenCompleteAsync((result, error) -> afterInstanceDeleted(projectId, instanceName, result));
+        }
+        if (null == this.existenceCache) {
+            return afterMutation(projectId, instanceName, future);
+        }
+        return future.whenComplete((result, error) -> afterInstanceDeleted(projectId, instanceName, result));
+    }
+
+    private static HttpEntity toEntity(JSONObject json){
+        return new ByteArrayEntity(JSON.toJSONBytes(json), ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * 同步发送请求并读取返回body，调用失败时返回null
+     */
+    private String execute(OperationType operation, HttpMethodName httpMethod, String url, HttpEntity entity){
+        return execute(operation, httpMethod, url, entity, HttpClientUtils.BODY_AS_STRING);
+    }
+
+    /**
+     * 同步发送请求并由handler处理返回，调用失败时返回null
+     */
+    private <T> T execute(OperationType operation, HttpMethodName httpMethod, String url, HttpEntity entity,
+            ResponseHandler<? extends T> handler){
+        try
+        {
+            return pipeline().execute(new ApiRequest(operation, httpMethod, url, entity), handler);
+        }catch (Exception e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 以非阻塞方式发送请求并读取返回body，调用失败时future以异常方式完成
+     */
+    private CompletableFuture<String> executeAsync(OperationType operation, HttpMethodName httpMethod, String url,
+            HttpEntity entity){
+        return executeAsync(operation, httpMethod, url, entity, HttpClientUtils.BODY_AS_STRING);
+    }
+
+    /**
+     * 以非阻塞方式发送请求并由handler处理返回，调用失败时future以异常方式完成
+     */
+    private <T> CompletableFuture<T> executeAsync(OperationType operation, HttpMethodName httpMethod, String url,
+            HttpEntity entity, ResponseHandler<? extends T> handler){
+        return pipeline().executeAsync(new ApiRequest(operation, httpMethod, url, entity), handler);
+    }
+
+    private RequestPipeline pipeline(){
+        RequestPipeline current = this.pipeline;
+        return null != current ? current : rebuildPipeline();
+    }
+
+    /**
+     * 按当前配置创建请求管道：统计、重试在外层，之后是用户添加的拦截器，末端为限流、对冲、路由、鉴权和发送
+     */
+    private synchronized RequestPipeline rebuildPipeline(){
+        List<RequestInterceptor> chain = new ArrayList<RequestInterceptor>();
+        chain.add(METRICS_INTERCEPTOR);
+        RetryExecutor retry = this.retryExecutor;
+        if (null != retry) {
+            chain.add(new RetryInterceptor(retry, this::routeOf));
+        }
+        chain.addAll(this.interceptors);
+        RequestPipeline rebuilt = new RequestPipeline(chain, new Transport(), new AsyncTransport());
+        this.pipeline = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * 管道的同步末端
+     */
+    private final class Transport implements RequestInterceptor.Chain
+    {
+        @Override
+        public <T> T proceed(ApiRequest request, ResponseHandler<? extends T> handler) throws Exception{
+            return send(request, handler);
+        }
+    }
+
+    /**
+     * 管道的异步末端
+     */
+    private final class AsyncTransport implements RequestInterceptor.AsyncChain
+    {
+        @Override
+        public <T> CompletableFuture<T> proceed(ApiRequest request, ResponseHandler<? extends T> handler){
+            return sendAsync(request, handler);
+        }
+    }
+
+    /**
+     * 发送一次请求，开启限流时先获取对应接口的令牌
+     */
+    private <T> T send(ApiRequest request, ResponseHandler<? extends T> handler) throws Exception{
+        if (isHedged(request)) {
+            return await(sendAsync(request, handler));
+        }
+        RateLimiter limiter = this.rateLimiter;
+        if (null != limiter) {
+            limiter.acquire(request.getOperation());
+        }
+        RequestRoute route = routeOf(request);
+        if (null == route) {
+            return HttpClientUtils.execute(httpClient(), authenticator.authenticate(request, request.getUrl()), handler);
+        }
+        RequestRoute.Tracked<T> tracked = route.track(handler);
+        try
+        {
+            return HttpClientUtils.execute(httpClient(),
+                    route.getAuthenticator().authenticate(request, route.getUrl()), tracked);
+        }catch (Exception e){
+            tracked.onFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 重试环节已为本次尝试选择目标时沿用，否则开启多区域路由时为读请求选择区域
+     * @return 选中的目标，不路由时返回null
+     */
+    private RequestRoute routeOf(ApiRequest request){
+        if (null != request.getRoute()) {
+            return request.getRoute();
+        }
+        EndpointRouter router = this.endpointRouter;
+        return null == router ? null : router.route(request);
+    }
+
+    /**
+     * 以非阻塞方式发送一次请求，开启限流时在令牌可用后才构造并发送请求，不阻塞调用线程
+     */
+    private <T> CompletableFuture<T> sendAsync(ApiRequest request, ResponseHandler<? extends T> handler){
+        HedgingExecutor hedging = this.hedgingExecutor;
+        if (null != hedging && isHedged(request)) {
+            return hedging.execute(() -> limitedSendAsync(request, handler));
+        }
+        return limitedSendAsync(request, handler);
+    }
+
+    /**
+     * 等待限流令牌后发送；等待期间取消返回的future不再发送，发送后取消会取消正在进行的请求
+     */
+    private <T> CompletableFuture<T> limitedSendAsync(ApiRequest request, ResponseHandler<? extends T> handler){
+        RateLimiter limiter = this.rateLimiter;
+        if (null == limiter) {
+            return dispatchAsync(request, handler);
+        }
+        CompletableFuture<Void> permit = limiter.acquireAsync(request.getOperation());
+        if (permit.isDone()) {
+            return dispatchAsync(request, handler);
+        }
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final AtomicReference<CompletableFuture<T>> inflight = new AtomicReference<CompletableFuture<T>>();
+        result.whenComplete((value, error) -> {
+            CompletableFuture<T> current = inflight.get();
+            if (result.isCancelled() && null != current) {
+                current.cancel(true);
+            }
+        });
+        permit.whenComplete((v, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (null != error) {
+                result.completeExceptionally(error);
+                return;
+            }
+            CompletableFuture<T> future = dispatchAsync(request, handler);
+            inflight.set(future);
+            future.whenComplete((value, failure) -> {
+                if (null == failure) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            });
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 构造并发送请求，开启多区域路由时读请求按选中区域的地址、项目ID和鉴权方式发送
+     */
+    private <T> CompletableFuture<T> dispatchAsync(ApiRequest request, ResponseHandler<? extends T> handler){
+        RequestRoute route = routeOf(request);
+        HttpUriRequest httpRequest;
+        try
+        {
+            httpRequest = null == route ? authenticator.authenticate(request, request.getUrl())
+                    : route.getAuthenticator().authenticate(request, route.getUrl());
+        }catch (Exception e){
+            return failedFuture(e);
+        }
+        if (null == route) {
+            return HttpAsyncClientUtils.execute(getHttpAsyncClient(), httpRequest, handler);
+        }
+        RequestRoute.Tracked<T> tracked = route.track(handler);
+        CompletableFuture<T> future = HttpAsyncClientUtils.execute(getHttpAsyncClient(), httpRequest, tracked);
+        future.whenComplete((value, error) -> {
+            if (null != error) {
+                tracked.onFailure(error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 开启对冲时，搜索、检查图片是否存在等只读接口及GET请求使用对冲
+     */
+    private boolean isHedged(ApiRequest request){
+        return null != this.hedgingExecutor && request.isRead();
+    }
+
+    /**
+     * 等待异步请求完成，中断时取消请求
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception{
+        try
+        {
+            return future.get();
+        }catch (InterruptedException e){
+            future.cancel(true);
+            throw e;
+        }catch (ExecutionException e){
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e){
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * 未设置独立连接池时每次调用都获取进程内共享的httpclient，共享客户端被重建后自动使用新的客户端
+     */
+    private CloseableHttpClient httpClient(){
+        CloseableHttpClient client = this.httpClient;
+        return null != client ? client : HttpClientBase.getSharedHttpClient();
+    }
+
+    private CloseableHttpAsyncClient getHttpAsyncClient(){
+        CloseableHttpAsyncClient client = this.httpAsyncClient;
+        if (null != client) {
+            return client;
+        }
+        synchronized (this) {
+            if (null == this.httpClientConfig) {
+                return HttpAsyncClientBase.getSharedHttpAsyncClient();
+            }
+            if (null == this.httpAsyncClient) {
+                this.httpAsyncClient = HttpAsyncClientBase.createHttpAsyncClient(this.httpClientConfig);
+            }
+            return this.httpAsyncClient;
+        }
+    }
+
+
+    /**
+     * 将二进制文件转为经Base64编码之后的对象
+     *
+     * @param file 文件名
+     * @return 被Base64编码之后的对象
+     * @throws IOException 文件格式转化异常时，抛出此异常
+     */
+    public static String toBase64Str(String file) throws IOException {
+        byte[] fileData = FileUtils.readFileToByteArray(new File(file));
+        return Base64.encodeBase64String(fileData);
+    }
+
+    public String getToken()
+    {
+        return token;
+    }
+
+    public void setToken(String token)
+    {
+        this.token = token;
+        this.tokenProvider = null;
+    }
+
+    public SearchResultCache getSearchCache()
+    {
+        return searchCache;
+    }
+
+    /**
+     * 开启相似图像搜索结果缓存，对requestSearchSimBase64/requestSearchSimUrl生效；
+     * 通过当前服务对象添加、删除、修改图片或删除实例时，自动使对应实例的缓存失效
+     * @param searchCache 搜索结果缓存，传null关闭缓存
+     */
+    public void setSearchCache(SearchResultCache searchCache)
+    {
+        this.searchCache = searchCache;
+    }
+
+    public ImageExistenceCache getExistenceCache()
+    {
+        return existenceCache;
+    }
+
+    /**
+     * 开启查询图像结果缓存，对requestImageCheck/imageCheck生效；
+     * 通过当前服务对象添加、删除图片或修改标签成功后自动更新对应路径的缓存，删除实例时使该实例的缓存失效
+     * @param existenceCache 图片存在性缓存，传null关闭缓存
+     */
+    public void setExistenceCache(ImageExistenceCache existenceCache)
+    {
+        this.existenceCache = existenceCache;
+    }
+
+    public IndexedDigestStore getDigestStore()
+    {
+        return digestStore;
+    }
+
+    /**
+     * 关联批量索引使用的摘要库：通过当前服务对象删除图片或删除实例成功后，移除对应的摘要记录，
+     * 之后批量索引时这些图片会重新上传；摘要库由调用方负责关闭
+     * @param digestStore 已索引图片的摘要库，传null取消关联
+     */
+    public void setDigestStore(IndexedDigestStore digestStore)
+    {
+        this.digestStore = digestStore;
+    }
+
+    public RetryExecutor getRetryExecutor()
+    {
+        return retryExecutor;
+    }
+
+    /**
+     * 开启失败重试和按终端节点熔断，同一个retryExecutor可由多个服务对象共享以共用重试预算和熔断状态；
+     * 未设置时失败直接返回null，与之前的行为一致
+     * @param retryExecutor 重试执行器，如new RetryExecutor(new RetryPolicy())，传null关闭重试
+     */
+    public void setRetryExecutor(RetryExecutor retryExecutor)
+    {
+        this.retryExecutor = retryExecutor;
+        rebuildPipeline();
+    }
+
+    /**
+     * 添加请求拦截器，位于统计和重试之后、鉴权和发送之前，每次重试都会经过；按添加顺序由外到内
+     */
+    public void addInterceptor(RequestInterceptor interceptor)
+    {
+        this.interceptors.add(interceptor);
+        rebuildPipeline();
+    }
+
+    public void removeInterceptor(RequestInterceptor interceptor)
+    {
+        this.interceptors.remove(interceptor);
+        rebuildPipeline();
+    }
+
+    public RequestAuthenticator getAuthenticator()
+    {
+        return authenticator;
+    }
+
+    /**
+     * 替换鉴权方式，默认由构造函数决定：Token方式为{@link TokenAuthenticator}，AK/SK方式为{@link AkSkAuthenticator}
+     */
+    public void setAuthenticator(RequestAuthenticator authenticator)
+    {
+        this.authenticator = authenticator;
+    }
+
+    public RateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * 开启客户端限流，每次发送请求(包括重试)前按接口类型获取令牌；同步接口在调用线程等待，异步接口延迟发送。
+     * 同一个rateLimiter可由多个服务对象共享，以匹配账号整体的接口配额
+     * @param rateLimiter 限流器，传null关闭限流
+     */
+    public void setRateLimiter(RateLimiter rateLimiter)
+    {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public ImagePreprocessor getImagePreprocessor()
+    {
+        return imagePreprocessor;
+    }
+
+    /**
+     * 开启上传前的图像预处理，对Base64方式的添加图片和搜索相似图像生效；
+     * 开启后图像先读入内存处理，不再以流的方式边读边编码
+     * @param imagePreprocessor 图像预处理器，传null关闭预处理
+     */
+    public void setImagePreprocessor(ImagePreprocessor imagePreprocessor)
+    {
+        this.imagePreprocessor = imagePreprocessor;
+    }
+
+    public EndpointRouter getEndpointRouter()
+    {
+        return endpointRouter;
+    }
+
+    /**
+     * 开启多区域路由，搜索、检查图片是否存在、查询实例信息等读请求按各区域的耗时和错误率发往最好的健康区域，
+     * 区域故障时自动切换；添加、删除等写请求仍发往构造时指定的终端节点。
+     * 各区域需保存相同的实例；读请求中的项目ID替换为选中区域的项目ID，并使用该区域的Token或AK/SK签名，
+     * 开启重试时每次尝试重新选择区域，熔断按选中区域的终端节点判断
+     * @param endpointRouter 多区域路由，传null关闭
+     */
+    public void setEndpointRouter(EndpointRouter endpointRouter)
+    {
+        this.endpointRouter = endpointRouter;
+    }
+
+    /**
+     * @param region 区域，如cn-north-4
+     * @return 区域对应的终端节点地址，未知区域返回null
+     */
+    public static String getRegionEndpoint(String region)
+    {
+        return endpointMap.get(region);
+    }
+
+    public HedgingExecutor getHedgingExecutor()
+    {
+        return hedgingExecutor;
+    }
+
+    /**
+     * 开启对冲请求，对搜索、检查图片是否存在、查询实例信息等只读接口生效：
+     * 请求超过延迟未返回时再发出一个相同请求，先返回的结果生效并取消另一个。
+     * 开启后只读接口的同步调用也通过异步客户端发送
+     * @param hedgingExecutor 对冲执行器，传null关闭对冲
+     */
+    public void setHedgingExecutor(HedgingExecutor hedgingExecutor)
+    {
+        this.hedgingExecutor = hedgingExecutor;
+    }
+
+    public TokenProvider getTokenProvider()
+    {
+        return tokenProvider;
+    }
+
+    public void setTokenProvider(TokenProvider tokenProvider)
+    {
+        this.tokenProvider = tokenProvider;
+    }
+
+    private String currentToken() throws IOException
+    {
+        TokenProvider provider = this.tokenProvider;
+        return null != provider ? provider.getToken() : this.token;
+    }
+
+    public String getAk()
+    {
+        return ak;
+    }
+
+    public String getSk()
+    {
+        return sk;
+    }
+
+    public boolean isUseToken()
+    {
+        return useToken;
+    }
+
+    /**
+     * 按指定配置为当前服务对象创建独立的连接池，未调用时使用进程内共享的连接池；
+     * 独立连接池在{@link #close()}时释放
+     * @param config 连接池配置
+     */
+    public synchronized void setHttpClientConfig(HttpClientConfig config)
+    {
+        CloseableHttpClient old = this.httpClient;
+        CloseableHttpAsyncClient oldAsync = this.httpAsyncClient;
+        this.httpAsyncClient = null;
+        this.httpClient = HttpClientBase.createHttpClient(config);
+        this.httpClientConfig = config;
+        if (null != this.accessServiceUtil) {
+            this.accessServiceUtil.setHttpClient(this.httpClient);
+        }
+        try {
+            if (null != old) {
+                old.close();
+            }
+            if (null != oldAsync) {
+                oldAsync.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public CloseableHttpClient getHttpClient()
+    {
+        return httpClient();
+    }
+
+    /**
+     * @return 当前使用的连接池对应的泄漏检测器，可用于核对连接租出与归还数量
+     */
+    public ConnectionLeakDetector getConnectionLeakDetector()
+    {
+        return currentHttpClientConfig().getConnectionLeakDetector();
+    }
+
+    /**
+     * 预热，建议在服务启动后、接收业务请求前调用：解析终端节点(开启多区域路由时包括各区域)的域名，
+     * 向每个终端节点建立connections个长连接放入连接池，握手得到的TLS会话进入会话缓存；
+     * 同时预先完成一次鉴权，AK/SK方式下完成一次签名，Token方式下获取Token
+     * @param connections 每个终端节点建立的连接数，超过连接池每个路由的最大连接数时按最大连接数
+     * @return 成功建立的连接数
+     */
+    public int warmUp(int connections)
+    {
+        HttpClientConfig config = currentHttpClientConfig();
+        int perRoute = Math.min(connections, config.getDefaultMaxPerRoute());
+        primeAuthenticator();
+        int opened = 0;
+        for (String endpoint : warmUpEndpoints()) {
+            if (ConnectionWarmer.resolve(endpoint)) {
+                opened += ConnectionWarmer.warmUp(httpClient(), endpoint, perRoute,
+                        config.getConnectTimeoutMillis());
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * {@link #warmUp}的异步版本，预热异步接口使用的连接池；域名解析和鉴权在调用线程完成
+     * @return 成功建立的连接数，不会以异常方式完成
+     */
+    public CompletableFuture<Integer> warmUpAsync(int connections)
+    {
+        int perRoute = Math.min(connections, currentHttpClientConfig().getDefaultMaxPerRoute());
+        primeAuthenticator();
+        CloseableHttpAsyncClient client = getHttpAsyncClient();
+        CompletableFuture<Integer> opened = CompletableFuture.completedFuture(0);
+        for (String endpoint : warmUpEndpoints()) {
+            if (ConnectionWarmer.resolve(endpoint)) {
+                opened = opened.thenCombine(ConnectionWarmer.warmUpAsync(client, endpoint, perRoute), Integer::sum);
+            }
+        }
+        return opened;
+    }
+
+    private Set<String> warmUpEndpoints()
+    {
+        Set<String> endpoints = new LinkedHashSet<String>();
+        endpoints.add(this.endPointUrl);
+        EndpointRouter router = this.endpointRouter;
+        if (null != router) {
+            for (RegionEndpoint endpoint : router.getEndpoints()) {
+                endpoints.add(endpoint.getUrl());
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * 生成带鉴权信息的请求但不发送，使Token提前获取、签名算法提前初始化；开启多区域路由时各区域的鉴权方式也一并预热
+     */
+    private void primeAuthenticator()
+    {
+        primeAuthenticator(this.authenticator, this.endPointUrl);
+        EndpointRouter router = this.endpointRouter;
+        if (null != router) {
+            for (RegionEndpoint endpoint : router.getEndpoints()) {
+                primeAuthenticator(endpoint.getAuthenticator(), endpoint.getUrl());
+            }
+        }
+    }
+
+    private static void primeAuthenticator(RequestAuthenticator authenticator, String url)
+    {
+        try {
+            authenticator.authenticate(new ApiRequest(OperationType.SERVICE, HttpMethodName.GET, url, null), url);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private HttpClientConfig currentHttpClientConfig()
+    {
+        return null != this.httpClientConfig ? this.httpClientConfig : HttpClientBase.getSharedHttpClientConfig();
+    }
+
+    /**
+     * 释放当前服务对象独立创建的连接池，之后的调用改用进程内共享的连接池；使用共享连接池时不做任何操作
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        CloseableHttpClient client = this.httpClient;
+        CloseableHttpAsyncClient asyncClient = this.httpAsyncClient;
+        this.httpClient = null;
+        this.httpAsyncClient = null;
+        this.httpClientConfig = null;
+        if (null != this.accessServiceUtil) {
+            this.accessServiceUtil.setHttpClient(null);
+        }
+        if (null != client) {
+            client.close();
+        }
+        if (null != asyncClient) {
+            asyncClient.close();
+        }
     }
 
 }
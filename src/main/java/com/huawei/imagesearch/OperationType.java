@@ -0,0 +1,90 @@
+package com.huawei.imagesearch;
+
+import com.cloud.sdk.http.HttpMethodName;
+
+/**
+ * 图像搜索服务的接口类型，用于按接口分别限流、统计
+ */
+public enum OperationType
+{
+    /**
+     * 添加图片
+     */
+    CREATE_INDEX(false),
+    /**
+     * 相似图像搜索，包括Base64、URL和标签方式
+     */
+    SEARCH(true),
+    /**
+     * 查询图片
+     */
+    CHECK(true),
+    /**
+     * 跨实例搜索
+     */
+    CROSS_SEARCH(true),
+    /**
+     * 删除图片
+     */
+    DELETE_INDEX(false),
+    /**
+     * 修改图片标签
+     */
+    UPDATE_TAGS(false),
+    /**
+     * 创建、删除、查询实例
+     */
+    SERVICE(false);
+
+    private final boolean readOnly;
+
+    OperationType(boolean readOnly)
+    {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return 只读接口，不改变索引库
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /**
+     * GET/PUT/DELETE以及只读的POST重复发送不会改变索引库，可在请求可能已被处理时重试
+     */
+    public boolean isIdempotent(HttpMethodName httpMethod)
+    {
+        return readOnly || HttpMethodName.POST != httpMethod;
+    }
+
+    /**
+     * 根据请求方法和地址确定接口类型
+     */
+    public static OperationType of(HttpMethodName httpMethod, String url)
+    {
+        if (url.endsWith("/image/search")) {
+            return SEARCH;
+        }
+        if (url.endsWith("/image/check")) {
+            return CHECK;
+        }
+        if (url.endsWith("/image/cross-search")) {
+            return CROSS_SEARCH;
+        }
+        if (url.endsWith("/image")) {
+            switch (httpMethod) {
+                case POST:
+                    return CREATE_INDEX;
+                case DELETE:
+                    return DELETE_INDEX;
+                case PUT:
+                    return UPDATE_TAGS;
+                default:
+                    break;
+            }
+        }
+        return SERVICE;
+    }
+}
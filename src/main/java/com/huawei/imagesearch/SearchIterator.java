@@ -0,0 +1,167 @@
+package com.huawei.imagesearch;
+
+import com.alibaba.fastjson.JSONObject;
+import com.huawei.imagesearch.model.SearchHit;
+import com.huawei.imagesearch.model.SearchResult;
+import com.huawei.imagesearch.util.ByteArraysEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按页懒加载的相似图像搜索结果。请求体中除limit/offset外的字段(包括Base64图像)只序列化一次，各页复用；
+ * 取到一页后立即在后台请求下一页，调用方消费当前页时下一页已在传输中。
+ * 结果相似度低于minScore或已返回maxResults条时停止，不再请求后续页。
+ * 非线程安全；请求失败时hasNext/next抛出{@link UncheckedIOException}
+ */
+public class SearchIterator implements Iterator<SearchHit>, Closeable
+{
+    private final ImageSearchService service;
+    private final String projectId;
+    private final String instanceName;
+    private final byte[] queryFields;
+    private final int pageSize;
+    private final double minScore;
+    private final long maxResults;
+    private CompletableFuture<SearchResult> pending;
+    private int nextOffset;
+    private Iterator<SearchHit> page = Collections.<SearchHit>emptyIterator();
+    private SearchHit next;
+    private long returned;
+    private boolean finished;
+
+    SearchIterator(ImageSearchService service, String projectId, String instanceName, JSONObject query,
+            int pageSize, double minScore, long maxResults)
+    {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.service = service;
+        this.projectId = projectId;
+        this.instanceName = instanceName;
+        String json = query.toJSONString();
+        this.queryFields = ("{}".equals(json) ? "}" : "," + json.substring(1)).getBytes(StandardCharsets.UTF_8);
+        this.pageSize = pageSize;
+        this.minScore = minScore;
+        this.maxResults = maxResults <= 0 ? Long.MAX_VALUE : maxResults;
+        this.pending = fetch(0);
+    }
+
+    private CompletableFuture<SearchResult> fetch(int offset)
+    {
+        byte[] head = ("{\"limit\":" + pageSize + ",\"offset\":" + offset).getBytes(StandardCharsets.UTF_8);
+        nextOffset = offset + pageSize;
+        return service.searchPageAsync(projectId, instanceName,
+                new ByteArraysEntity(ContentType.APPLICATION_JSON, head, queryFields));
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (null != next) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        while (!page.hasNext()) {
+            if (null == pending) {
+                finished = true;
+                return false;
+            }
+            List<SearchHit> hits = await(pending).getHits();
+            pending = null;
+            if (hits.size() >= pageSize && returned + hits.size() < maxResults
+                    && hits.get(hits.size() - 1).getScore() >= minScore) {
+                pending = fetch(nextOffset);
+            }
+            page = hits.iterator();
+        }
+        SearchHit hit = page.next();
+        if (returned >= maxResults || hit.getScore() < minScore) {
+            close();
+            return false;
+        }
+        next = hit;
+        return true;
+    }
+
+    @Override
+    public SearchHit next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SearchHit hit = next;
+        next = null;
+        returned++;
+        return hit;
+    }
+
+    private static SearchResult await(CompletableFuture<SearchResult> future)
+    {
+        SearchResult result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            Throwable cause = null != e.getCause() ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+        if (!result.isSuccess()) {
+            throw new UncheckedIOException(new IOException("search failed, status " + result.getStatusCode()
+                    + (null != result.getError() ? ": " + result.getError() : "")));
+        }
+        return result;
+    }
+
+    /**
+     * @return 以流的方式消费结果，流关闭时取消预取
+     */
+    public Stream<SearchHit> stream()
+    {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * @return 已返回的结果数
+     */
+    public long getReturnedCount()
+    {
+        return returned;
+    }
+
+    /**
+     * 停止迭代并取消正在进行的预取
+     */
+    @Override
+    public void close()
+    {
+        finished = true;
+        next = null;
+        page = Collections.<SearchHit>emptyIterator();
+        if (null != pending) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.huawei.imagesearch;
+
+import java.io.IOException;
+
+/**
+ * Token来源，{@link ImageSearchService}在每次请求时从中获取当前有效的Token
+ */
+public interface TokenProvider
+{
+    /**
+     * @return 当前有效的Token
+     * @throws IOException 无法获取Token时，抛出此异常
+     */
+    String getToken() throws IOException;
+}
@@ -2,19 +2,63 @@ package com.huawei.imagesearch;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.time.Instant;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.huawei.imagesearch.util.HttpClientUtils;
 
 public class TokenUtil
 {
+    /**
+     * 默认的IAM获取Token地址
+     */
+    public static final String DEFAULT_IAM_URL = "https://iam.myhuaweicloud.com/v3/auth/tokens";
+
+    /**
+     * IAM返回中缺少过期时间时使用的默认有效期(毫秒)
+     */
+    private static final long DEFAULT_TOKEN_VALIDITY_MILLIS = 23L * 60 * 60 * 1000;
+
+    /**
+     * 从返回Header中提取X-Subject-Token，并从返回body中解析过期时间
+     */
+    private static final ResponseHandler<IamToken> IAM_TOKEN_HANDLER = new ResponseHandler<IamToken>()
+    {
+        @Override
+        public IamToken handleResponse(HttpResponse response) throws IOException
+        {
+            Header xst = response.getFirstHeader("x-subject-token");
+            if (null == xst) {
+                throw new HttpResponseException(response.getStatusLine().getStatusCode(),
+                        "x-subject-token not found in response: " + response.getStatusLine());
+            }
+            long expiresAt = System.currentTimeMillis() + DEFAULT_TOKEN_VALIDITY_MILLIS;
+            HttpEntity entity = response.getEntity();
+            if (null != entity) {
+                try {
+                    JSONObject token = JSON.parseObject(EntityUtils.toString(entity, "utf-8")).getJSONObject("token");
+                    if (null != token && null != token.getString("expires_at")) {
+                        expiresAt = Instant.parse(token.getString("expires_at")).toEpochMilli();
+                    }
+                } catch (RuntimeException e) {
+                    // 无法解析过期时间时使用默认有效期
+                }
+            }
+            return new IamToken(xst.getValue(), expiresAt);
+        }
+    };
 
     /**
      * 构造使用Token方式访问服务的请求Token对象
@@ -77,15 +121,27 @@ public class TokenUtil
      */
     public static String getToken(String username, String password, String domainName, String projectName)
             throws URISyntaxException, UnsupportedOperationException, IOException {
+        return requestToken(username, password, domainName, projectName, DEFAULT_IAM_URL).getToken();
+    }
+
+    /**
+     * 从IAM获取Token及其过期时间
+     *
+     * @param username    用户名
+     * @param password    密码
+     * @param domainName  域名
+     * @param projectName 区域名，可以参考http://developer.huaweicloud.com/dev/endpoint
+     * @param iamUrl      IAM获取Token的地址，如{@link #DEFAULT_IAM_URL}
+     * @return Token及其过期时间
+     * @throws IOException 网络异常或返回中没有Token时，抛出此异常
+     */
+    public static IamToken requestToken(String username, String password, String domainName, String projectName,
+            String iamUrl) throws IOException {
         String requestBody = requestBody(username, password, domainName, projectName);
-        String url = "https://iam.myhuaweicloud.com/v3/auth/tokens";
 
         Header[] headers = new Header[]{new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString())};
         StringEntity stringEntity = new StringEntity(requestBody, "utf-8");
-        HttpResponse response = HttpClientUtils.post(url, headers, stringEntity);
-//        System.out.println(response.getEntity().getContent());
-        Header[] xst = response.getHeaders("x-subject-token");
-        return xst[0].getValue();
-
+        return HttpClientUtils.execute(HttpClientUtils.getSharedHttpClient(),
+                HttpClientUtils.createPost(iamUrl, headers, stringEntity), IAM_TOKEN_HANDLER);
     }
 }
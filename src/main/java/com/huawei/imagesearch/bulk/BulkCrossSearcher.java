@@ -0,0 +1,150 @@
+package com.huawei.imagesearch.bulk;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.util.ResponseUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对任意数量的路径做跨实例搜索：按接口上限每10个路径一个请求，最多parallelism个请求同时进行，
+ * 某个请求完成后再发出下一个；各分片结果按路径顺序合并，失败的分片单独列出
+ */
+public class BulkCrossSearcher
+{
+    /**
+     * 跨实例搜索一次请求最多支持的路径数
+     */
+    public static final int MAX_PATHS_PER_REQUEST = 10;
+
+    private final ImageSearchService service;
+    private final String projectId;
+    private final String sourceInstance;
+    private final String targetInstance;
+    private int parallelism = 4;
+
+    /**
+     * @param service 图像搜索服务
+     * @param projectId 项目ID
+     * @param sourceInstance 源实例
+     * @param targetInstance 目标实例
+     */
+    public BulkCrossSearcher(ImageSearchService service, String projectId, String sourceInstance,
+            String targetInstance)
+    {
+        this.service = service;
+        this.projectId = projectId;
+        this.sourceInstance = sourceInstance;
+        this.targetInstance = targetInstance;
+    }
+
+    /**
+     * 搜索所有路径，调用在所有分片完成后返回
+     * @param paths 查询路径，数量不限
+     * @param limit 每个路径返回被检索图片的数量，默认10
+     * @param offset 偏移量，默认0
+     * @return 汇总结果
+     * @throws InterruptedException 等待时被中断
+     */
+    public CrossSearchReport search(List<String> paths, Integer limit, Integer offset) throws InterruptedException
+    {
+        try {
+            return searchAsync(paths, limit, offset).get();
+        } catch (ExecutionException e) {
+            // 分片失败记录在结果中，future本身不会以异常方式完成
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * {@link #search}的异步版本
+     * @return 所有分片完成后完成的future
+     */
+    public CompletableFuture<CrossSearchReport> searchAsync(List<String> paths, final Integer limit,
+            final Integer offset)
+    {
+        final long start = System.nanoTime();
+        final List<ArrayList<String>> slices = new ArrayList<ArrayList<String>>();
+        for (int i = 0; i < paths.size(); i += MAX_PATHS_PER_REQUEST) {
+            slices.add(new ArrayList<String>(paths.subList(i, Math.min(paths.size(), i + MAX_PATHS_PER_REQUEST))));
+        }
+        final CrossSearchChunk[] chunks = new CrossSearchChunk[slices.size()];
+        final CompletableFuture<CrossSearchReport> future = new CompletableFuture<CrossSearchReport>();
+        if (slices.isEmpty()) {
+            future.complete(new CrossSearchReport(chunks, 0));
+            return future;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger(slices.size());
+        Runnable launcher = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // 已完成的请求(如熔断时立即失败)在循环中处理，避免回调中递归调用
+                while (true) {
+                    final int index = next.getAndIncrement();
+                    if (index >= chunks.length) {
+                        return;
+                    }
+                    final ArrayList<String> slice = slices.get(index);
+                    CompletableFuture<String> request;
+                    try {
+                        request = service.requestCrossSearchAsync(projectId, limit, offset, slice, sourceInstance,
+                                targetInstance);
+                    } catch (RuntimeException e) {
+                        request = new CompletableFuture<String>();
+                        request.completeExceptionally(e);
+                    }
+                    if (!request.isDone()) {
+                        request.whenComplete((body, error) -> {
+                            if (finish(index, slice, body, error)) {
+                                run();
+                            }
+                        });
+                        return;
+                    }
+                    String body = null;
+                    Throwable error = null;
+                    try {
+                        body = request.join();
+                    } catch (RuntimeException e) {
+                        error = null != e.getCause() ? e.getCause() : e;
+                    }
+                    if (!finish(index, slice, body, error)) {
+                        return;
+                    }
+                }
+            }
+
+            /**
+             * @return 还有未完成的分片时返回true
+             */
+            private boolean finish(int index, List<String> slice, String body, Throwable error)
+            {
+                chunks[index] = new CrossSearchChunk(index, slice, null == error && ResponseUtils.isSuccess(body),
+                        body, error);
+                if (0 == remaining.decrementAndGet()) {
+                    future.complete(new CrossSearchReport(chunks, (System.nanoTime() - start) / 1000000L));
+                    return false;
+                }
+                return true;
+            }
+        };
+        for (int i = 0; i < Math.min(parallelism, chunks.length); i++) {
+            launcher.run();
+        }
+        return future;
+    }
+
+    /**
+     * @param parallelism 同时进行的最大请求数，默认4，小于1时按1处理
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+}
@@ -0,0 +1,9 @@
+package com.huawei.imagesearch.bulk;
+
+/**
+ * 批量索引中每个文件处理完成时的回调，在读取线程上调用，耗时的实现会占用读取线程、减慢后续文件的读取
+ */
+public interface BulkIndexListener
+{
+    void onResult(BulkIndexResult result);
+}
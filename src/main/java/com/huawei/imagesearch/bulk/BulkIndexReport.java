@@ -0,0 +1,98 @@
+package com.huawei.imagesearch.bulk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次批量索引任务的汇总结果
+ */
+public class BulkIndexReport
+{
+    private final long total;
+    private final long succeeded;
+    private final long skipped;
+    private final long failed;
+    private final long bytes;
+    private final long elapsedMillis;
+    private final List<BulkIndexResult> failures;
+
+    BulkIndexReport(long total, long succeeded, long skipped, long failed, long bytes, long elapsedMillis,
+            List<BulkIndexResult> failures)
+    {
+        this.total = total;
+        this.succeeded = succeeded;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    public long getTotal()
+    {
+        return total;
+    }
+
+    public long getSucceeded()
+    {
+        return succeeded;
+    }
+
+    /**
+     * @return 内容未变化而跳过上传的文件数，已计入{@link #getSucceeded()}
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * @return 已读取的文件总字节数
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return 平均每秒处理的文件数
+     */
+    public double getFilesPerSecond()
+    {
+        return elapsedMillis <= 0 ? 0 : total * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return 平均每秒读取的文件字节数
+     */
+    public double getBytesPerSecond()
+    {
+        return elapsedMillis <= 0 ? 0 : bytes * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return 所有失败文件的结果
+     */
+    public List<BulkIndexResult> getFailures()
+    {
+        return failures;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("BulkIndexReport[total=%d, succeeded=%d, skipped=%d, failed=%d, bytes=%d, elapsedMillis=%d, "
+                        + "files/s=%.1f, MB/s=%.2f]", total, succeeded, skipped, failed, bytes, elapsedMillis,
+                getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024));
+    }
+}
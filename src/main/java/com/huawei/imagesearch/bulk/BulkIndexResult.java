@@ -0,0 +1,105 @@
+package com.huawei.imagesearch.bulk;
+
+import java.io.File;
+
+/**
+ * 批量索引中单个文件的处理结果
+ */
+public class BulkIndexResult
+{
+    private final File file;
+    private final String path;
+    private final boolean success;
+    private final boolean skipped;
+    private final String response;
+    private final Throwable error;
+    private final long bytes;
+    private final long latencyMillis;
+
+    BulkIndexResult(File file, String path, boolean success, String response, Throwable error,
+            long bytes, long latencyMillis)
+    {
+        this(file, path, success, false, response, error, bytes, latencyMillis);
+    }
+
+    BulkIndexResult(File file, String path, boolean success, boolean skipped, String response, Throwable error,
+            long bytes, long latencyMillis)
+    {
+        this.file = file;
+        this.path = path;
+        this.success = success;
+        this.skipped = skipped;
+        this.response = response;
+        this.error = error;
+        this.bytes = bytes;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return 本地文件
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return 写入索引库的图片路径
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    /**
+     * @return 图片内容与上次成功索引时相同、未重新上传时为true，此时{@link #isSuccess()}也为true
+     */
+    public boolean isSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * @return 服务返回的body，文件读取或网络异常时为null
+     */
+    public String getResponse()
+    {
+        return response;
+    }
+
+    /**
+     * @return 文件读取或网络异常，其他情况为null
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return 文件原始大小(字节)
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return 从开始读取文件到收到返回的耗时(毫秒)
+     */
+    public long getLatencyMillis()
+    {
+        return latencyMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BulkIndexResult[file=" + file + ", success=" + success + (skipped ? ", skipped" : "") + ", latencyMillis=" + latencyMillis
+                + (null != error ? ", error=" + error : "") + (success ? "" : ", response=" + response) + "]";
+    }
+}
@@ -0,0 +1,285 @@
+package com.huawei.imagesearch.bulk;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.util.ResponseUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 将本地图片批量写入索引库：读取线程负责读文件和Base64编码，编码完成后通过异步接口上传，
+ * 读取编码与网络IO并行进行；同时处于读取、编码或上传中的文件数不超过maxInFlight，
+ * 窗口已满时暂停读取新文件，单个慢请求只占用一个窗口位置；
+ * 设置{@link IndexedDigestStore}后，内容与上次成功索引时相同的图片不再上传，上传成功后才写入摘要库
+ */
+public class BulkIndexer
+{
+    private static final String[] IMAGE_SUFFIXES = {".jpg", ".jpeg", ".png", ".bmp"};
+
+    private final ImageSearchService service;
+    private final String projectId;
+    private final String instanceName;
+    private int maxInFlight = 64;
+    private int readerThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private HashMap<String, String> tags;
+    private Function<File, String> pathMapper = new Function<File, String>()
+    {
+        @Override
+        public String apply(File file)
+        {
+            return file.getPath();
+        }
+    };
+    private BulkIndexListener listener;
+    private IndexedDigestStore digestStore;
+
+    /**
+     * @param service 图像搜索服务
+     * @param projectId 项目projectID
+     * @param instanceName 服务名称
+     */
+    public BulkIndexer(ImageSearchService service, String projectId, String instanceName)
+    {
+        this.service = service;
+        this.projectId = projectId;
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * 索引目录及其子目录下所有JPG/PNG/BMP文件
+     * @param directory 图片目录
+     * @return 汇总结果
+     * @throws IOException 遍历目录异常时，抛出此异常
+     * @throws InterruptedException 等待任务完成时被中断
+     */
+    public BulkIndexReport indexDirectory(File directory) throws IOException, InterruptedException
+    {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            final Iterator<Path> it = paths.filter(p -> Files.isRegularFile(p) && isImage(p)).iterator();
+            return index(new Iterator<File>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return it.hasNext();
+                }
+
+                @Override
+                public File next()
+                {
+                    return it.next().toFile();
+                }
+            });
+        }
+    }
+
+    /**
+     * 索引给定的文件，文件按迭代顺序依次读取，调用在所有文件处理完成后返回
+     * @param files 待索引文件
+     * @return 汇总结果
+     * @throws InterruptedException 等待任务完成时被中断
+     */
+    public BulkIndexReport index(Iterator<File> files) throws InterruptedException
+    {
+        final long start = System.nanoTime();
+        final Semaphore window = new Semaphore(maxInFlight);
+        final Phaser phaser = new Phaser(1);
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final List<BulkIndexResult> failures = new ArrayList<BulkIndexResult>();
+        final ExecutorService readers = Executors.newFixedThreadPool(readerThreads, new ReaderThreadFactory());
+        // 写摘要库和回调监听器放到读取线程上执行，不占用异步客户端的IO线程；读取线程已关闭(等待时被中断)时直接执行
+        final Executor callbacks = task -> {
+            try {
+                readers.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+        try {
+            while (files.hasNext()) {
+                final File file = files.next();
+                window.acquire();
+                phaser.register();
+                total.incrementAndGet();
+                readers.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        final long begin = System.nanoTime();
+                        final String path = pathMapper.apply(file);
+                        final byte[] image;
+                        try {
+                            image = FileUtils.readFileToByteArray(file);
+                        } catch (Exception e) {
+                            finish(new BulkIndexResult(file, path, false, null, e, 0, elapsed(begin)));
+                            return;
+                        }
+                        bytes.addAndGet(image.length);
+                        final IndexedDigestStore store = digestStore;
+                        final byte[] digest = null == store ? null : DigestUtils.sha256(image);
+                        try {
+                            if (null != store && store.contains(digest, projectId, instanceName, path)) {
+                                skipped.incrementAndGet();
+                                finish(new BulkIndexResult(file, path, true, true, null, null, image.length,
+                                        elapsed(begin)));
+                                return;
+                            }
+                        } catch (IOException e) {
+                            finish(new BulkIndexResult(file, path, false, null, e, image.length, elapsed(begin)));
+                            return;
+                        }
+                        try {
+                            service.requestCreateIndexBase64Async(projectId, instanceName, path, image, tags)
+                                    .whenCompleteAsync((body, error) -> {
+                                        boolean success = null == error && ResponseUtils.isSuccess(body);
+                                        Throwable failure = error;
+                                        if (success && null != store) {
+                                            try {
+                                                store.add(digest, projectId, instanceName, path);
+                                            } catch (IOException e) {
+                                                failure = e;
+                                            }
+                                        }
+                                        finish(new BulkIndexResult(file, path, success, body, failure,
+                                                image.length, elapsed(begin)));
+                                    }, callbacks);
+                        } catch (RuntimeException e) {
+                            finish(new BulkIndexResult(file, path, false, null, e, image.length, elapsed(begin)));
+                        }
+                    }
+
+                    private void finish(BulkIndexResult result)
+                    {
+                        try {
+                            if (result.isSuccess()) {
+                                succeeded.incrementAndGet();
+                            } else {
+                                synchronized (failures) {
+                                    failures.add(result);
+                                }
+                            }
+                            if (null != listener) {
+                                listener.onResult(result);
+                            }
+                        } finally {
+                            window.release();
+                            phaser.arriveAndDeregister();
+                        }
+                    }
+                });
+            }
+            phaser.arriveAndAwaitAdvance();
+        } finally {
+            readers.shutdown();
+        }
+        synchronized (failures) {
+            return new BulkIndexReport(total.get(), succeeded.get(), skipped.get(), failures.size(), bytes.get(),
+                    elapsed(start), new ArrayList<BulkIndexResult>(failures));
+        }
+    }
+
+    private static long elapsed(long beginNanos)
+    {
+        return (System.nanoTime() - beginNanos) / 1000000L;
+    }
+
+    private static boolean isImage(Path path)
+    {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String suffix : IMAGE_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 同时处于读取、编码或上传中的最大文件数，默认64
+     */
+    public void setMaxInFlight(int maxInFlight)
+    {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 读取和Base64编码文件的线程数，默认为CPU核数
+     */
+    public void setReaderThreads(int readerThreads)
+    {
+        this.readerThreads = readerThreads;
+    }
+
+    /**
+     * 所有图片共用的标签
+     */
+    public void setTags(HashMap<String, String> tags)
+    {
+        this.tags = tags;
+    }
+
+    /**
+     * 本地文件到索引库图片路径的映射，默认使用文件路径
+     */
+    public void setPathMapper(Function<File, String> pathMapper)
+    {
+        this.pathMapper = pathMapper;
+    }
+
+    /**
+     * 每个文件处理完成时的回调
+     */
+    public void setListener(BulkIndexListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * 已索引图片的摘要库，设置后跳过内容未变化的图片，由调用方负责关闭；
+     * 同时通过{@link ImageSearchService#setDigestStore}关联到服务对象，删除图片或实例后摘要记录随之移除
+     */
+    public void setDigestStore(IndexedDigestStore digestStore)
+    {
+        this.digestStore = digestStore;
+        service.setDigestStore(digestStore);
+    }
+
+    private static class ReaderThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger POOL_SEQ = new AtomicInteger();
+        private final int pool = POOL_SEQ.incrementAndGet();
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "bulk-indexer-" + pool + "-reader-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.huawei.imagesearch.bulk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 跨实例搜索中一次请求(最多10个路径)的结果
+ */
+public class CrossSearchChunk
+{
+    private final int index;
+    private final List<String> paths;
+    private final boolean success;
+    private final String response;
+    private final Throwable error;
+
+    CrossSearchChunk(int index, List<String> paths, boolean success, String response, Throwable error)
+    {
+        this.index = index;
+        this.paths = Collections.unmodifiableList(paths);
+        this.success = success;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @return 分片序号，从0开始
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @return 本次请求查询的路径
+     */
+    public List<String> getPaths()
+    {
+        return paths;
+    }
+
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    /**
+     * @return 服务返回的body，网络异常时为null
+     */
+    public String getResponse()
+    {
+        return response;
+    }
+
+    /**
+     * @return 网络异常，其他情况为null
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CrossSearchChunk[index=" + index + ", paths=" + paths.size() + ", success=" + success
+                + (null != error ? ", error=" + error : "") + (success ? "" : ", response=" + response) + "]";
+    }
+}
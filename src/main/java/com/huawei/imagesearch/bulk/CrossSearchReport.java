@@ -0,0 +1,99 @@
+package com.huawei.imagesearch.bulk;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多路径跨实例搜索的汇总结果，按分片顺序合并所有成功分片的result
+ */
+public class CrossSearchReport
+{
+    private final List<CrossSearchChunk> chunks;
+    private final long elapsedMillis;
+
+    CrossSearchReport(CrossSearchChunk[] chunks, long elapsedMillis)
+    {
+        this.chunks = Collections.unmodifiableList(Arrays.asList(chunks));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 所有分片的结果，按路径顺序排列
+     */
+    public List<CrossSearchChunk> getChunks()
+    {
+        return chunks;
+    }
+
+    /**
+     * @return 失败的分片，可只对这些分片的路径重新搜索
+     */
+    public List<CrossSearchChunk> getFailures()
+    {
+        List<CrossSearchChunk> failures = new ArrayList<CrossSearchChunk>();
+        for (CrossSearchChunk chunk : chunks) {
+            if (!chunk.isSuccess()) {
+                failures.add(chunk);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return 所有分片均成功时为true
+     */
+    public boolean isComplete()
+    {
+        return getFailures().isEmpty();
+    }
+
+    /**
+     * 合并所有成功分片返回中的result：数组依次拼接，对象按键合并
+     * @return 形如{"result": ...}的合并结果
+     */
+    public JSONObject getMergedResult()
+    {
+        JSONArray array = new JSONArray();
+        JSONObject object = new JSONObject();
+        for (CrossSearchChunk chunk : chunks) {
+            if (!chunk.isSuccess()) {
+                continue;
+            }
+            Object result = JSON.parseObject(chunk.getResponse()).get("result");
+            if (result instanceof JSONArray) {
+                array.addAll((JSONArray) result);
+            } else if (result instanceof JSONObject) {
+                object.putAll((JSONObject) result);
+            }
+        }
+        JSONObject merged = new JSONObject();
+        merged.put("result", object.isEmpty() ? array : object);
+        return merged;
+    }
+
+    /**
+     * @return {@link #getMergedResult()}的JSON字符串，与单次跨实例搜索的返回格式一致
+     */
+    public String getMergedResponse()
+    {
+        return getMergedResult().toJSONString();
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CrossSearchReport[chunks=" + chunks.size() + ", failed=" + getFailures().size()
+                + ", elapsedMillis=" + elapsedMillis + "]";
+    }
+}
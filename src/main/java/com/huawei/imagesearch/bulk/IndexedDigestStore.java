@@ -0,0 +1,494 @@
+package com.huawei.imagesearch.bulk;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 已索引图片的本地持久化摘要库，记录每个(项目/实例/路径)上次成功索引时的图片内容SHA-256，用于重新批量索引时跳过内容未变化的图片。
+ * 文件以8字节格式标识开头，之后只追加定长记录：1字节类型 + 8字节项目/实例hash + 8字节路径hash + 32字节内容摘要；
+ * 类型为添加、删除图片或删除实例，路径hash取自项目/实例/路径的SHA-256。
+ * 内存中只保留路径到记录位置的开放寻址哈希表，判断时从文件读出完整的32字节摘要比较；
+ * 写入后fsync，返回即已持久化，并发的写入合并为一次fsync；进程异常退出导致的末尾残缺记录在加载时被截断，
+ * 文件中间的记录损坏时打开失败，不丢弃其后的记录
+ */
+public class IndexedDigestStore implements Closeable
+{
+    private static final byte[] MAGIC = "ISDIGST2".getBytes(StandardCharsets.US_ASCII);
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REMOVE_INSTANCE = 3;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int DIGEST_OFFSET = 1 + 16;
+    private static final int RECORD_LENGTH = DIGEST_OFFSET + DIGEST_LENGTH;
+    private static final long MAX_MAP_SIZE = (Integer.MAX_VALUE / RECORD_LENGTH) * (long) RECORD_LENGTH;
+    /**
+     * 每个槽位占3个long：项目/实例hash、路径hash、记录在文件中的位置+1(0表示空槽位)
+     */
+    private static final int STRIDE = 3;
+    private static final int MAX_SLOTS = 1 << 29;
+
+    private final FileChannel channel;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object syncLock = new Object();
+    private long[] table;
+    private int size;
+    private volatile long end;
+    private volatile long synced;
+    private volatile long syncCount;
+
+    /**
+     * 打开摘要库，文件不存在时创建
+     * @param file 摘要库文件
+     * @throws IOException 文件读写异常、文件不是摘要库或记录损坏时，抛出此异常
+     */
+    public IndexedDigestStore(File file) throws IOException
+    {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (0 == channel.size()) {
+                writeFully(ByteBuffer.wrap(MAGIC), 0);
+                channel.force(false);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+                readFully(header, 0);
+                if (!Arrays.equals(MAGIC, header.array())) {
+                    throw new IOException("not an indexed digest store: " + file);
+                }
+            }
+            long length = channel.size();
+            long records = (length - MAGIC.length) / RECORD_LENGTH;
+            this.table = new long[tableLength(records) * STRIDE];
+            this.end = load(MAGIC.length + records * RECORD_LENGTH);
+            if (end != length) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+            this.synced = end;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int tableLength(long records)
+    {
+        long slots = Math.max(16, records * 4 / 3 + 1);
+        long pow2 = Long.highestOneBit(slots - 1) << 1;
+        if (pow2 > MAX_SLOTS) {
+            throw new IllegalStateException("too many records: " + records);
+        }
+        return (int) pow2;
+    }
+
+    /**
+     * 按顺序重放全部记录
+     * @return 有效数据的结尾位置；最后一条记录无法识别时视为未写完的记录，在该记录处结束
+     * @throws IOException 读文件异常或文件中间的记录无法识别时，抛出此异常
+     */
+    private long load(long length) throws IOException
+    {
+        long position = MAGIC.length;
+        while (position < length) {
+            long chunk = Math.min(MAX_MAP_SIZE, length - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunk);
+            while (buffer.remaining() >= RECORD_LENGTH) {
+                long offset = position + buffer.position();
+                byte kind = buffer.get();
+                long instance = buffer.getLong();
+                long location = buffer.getLong();
+                buffer.position(buffer.position() + DIGEST_LENGTH);
+                if (ADD == kind) {
+                    put(instance, location, offset);
+                } else if (REMOVE == kind) {
+                    int slot = find(instance, location);
+                    if (slot >= 0) {
+                        deleteSlot(slot);
+                    }
+                } else if (REMOVE_INSTANCE == kind) {
+                    retainOtherInstances(instance);
+                } else if (offset + RECORD_LENGTH < length) {
+                    throw new IOException("corrupt digest store record at offset " + offset + ", kind: " + kind);
+                } else {
+                    return offset;
+                }
+            }
+            position += chunk;
+        }
+        return position;
+    }
+
+    /**
+     * 判断图片是否已以相同内容索引到指定路径
+     * @param digest 图片内容的SHA-256摘要
+     * @param projectId 项目projectID
+     * @param instanceName 服务名称
+     * @param path 图片索引路径
+     * @return 已索引且内容摘要完全相同时返回true
+     * @throws IOException 读文件异常时，抛出此异常
+     */
+    public boolean contains(byte[] digest, String projectId, String instanceName, String path) throws IOException
+    {
+        long instance = instanceHash(projectId, instanceName);
+        long location = locationHash(projectId, instanceName, path);
+        long offset;
+        lock.readLock().lock();
+        try {
+            int slot = find(instance, location);
+            if (slot < 0) {
+                return false;
+            }
+            offset = table[slot * STRIDE + 2] - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.equals(digest, readDigest(offset));
+    }
+
+    /**
+     * 记录一次成功的索引，同一路径原有的记录被替换；记录写入并fsync后返回
+     * @param digest 图片内容的SHA-256摘要
+     * @param projectId 项目projectID
+     * @param instanceName 服务名称
+     * @param path 图片索引路径
+     * @throws IOException 写文件异常时，抛出此异常
+     */
+    public void add(byte[] digest, String projectId, String instanceName, String path) throws IOException
+    {
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("SHA-256 digest expected, length: " + digest.length);
+        }
+        long instance = instanceHash(projectId, instanceName);
+        long location = locationHash(projectId, instanceName, path);
+        lock.writeLock().lock();
+        try {
+            int slot = find(instance, location);
+            if (slot >= 0 && Arrays.equals(digest, readDigest(table[slot * STRIDE + 2] - 1))) {
+                return;
+            }
+            long offset = append(ADD, instance, location, digest);
+            put(instance, location, offset);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync();
+    }
+
+    /**
+     * 图片被删除后移除其记录，之后重新批量索引时该图片会再次上传
+     * @throws IOException 写文件异常时，抛出此异常
+     */
+    public void remove(String projectId, String instanceName, String path) throws IOException
+    {
+        long instance = instanceHash(projectId, instanceName);
+        long location = locationHash(projectId, instanceName, path);
+        lock.writeLock().lock();
+        try {
+            int slot = find(instance, location);
+            if (slot < 0) {
+                return;
+            }
+            append(REMOVE, instance, location, null);
+            deleteSlot(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync();
+    }
+
+    /**
+     * 实例被删除后移除该实例的全部记录
+     * @throws IOException 写文件异常时，抛出此异常
+     */
+    public void removeInstance(String projectId, String instanceName) throws IOException
+    {
+        long instance = instanceHash(projectId, instanceName);
+        lock.writeLock().lock();
+        try {
+            int before = size;
+            retainOtherInstances(instance);
+            if (before == size) {
+                return;
+            }
+            try {
+                append(REMOVE_INSTANCE, instance, 0, null);
+            } catch (IOException e) {
+                // 未写入文件，内存中恢复原有记录
+                this.table = new long[table.length];
+                this.size = 0;
+                load(end);
+                throw e;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync();
+    }
+
+    /**
+     * @return 记录数
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将已追加的记录刷到磁盘，每次写入后已自动刷盘
+     */
+    public void flush() throws IOException
+    {
+        channel.force(false);
+    }
+
+    /**
+     * @return fsync次数，并发写入共用一次fsync时只计一次
+     */
+    long getSyncCount()
+    {
+        return syncCount;
+    }
+
+    /**
+     * 组提交：等待中的写入线程依次进入，先进入者的一次fsync覆盖它开始前已追加的全部记录，
+     * 之后进入的线程发现自己的记录已落盘时直接返回
+     */
+    private void sync() throws IOException
+    {
+        long target = end;
+        if (synced >= target) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= target) {
+                return;
+            }
+            long position = end;
+            channel.force(false);
+            synced = position;
+            syncCount++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 在写锁内追加一条记录；写入失败时截断到写入前的位置，之后的记录不会接在残缺记录后面
+     * @return 记录的位置
+     */
+    private long append(byte kind, long instance, long location, byte[] digest) throws IOException
+    {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+        record.put(kind).putLong(instance).putLong(location);
+        if (null != digest) {
+            record.put(digest);
+        }
+        record.clear();
+        long offset = end;
+        try {
+            writeFully(record, offset);
+        } catch (IOException e) {
+            try {
+                channel.truncate(offset);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        end = offset + RECORD_LENGTH;
+        return offset;
+    }
+
+    private byte[] readDigest(long offset) throws IOException
+    {
+        ByteBuffer digest = ByteBuffer.allocate(DIGEST_LENGTH);
+        readFully(digest, offset + DIGEST_OFFSET);
+        return digest.array();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("unexpected end of digest store");
+            }
+            position += n;
+        }
+    }
+
+    private int find(long instance, long location)
+    {
+        long[] t = table;
+        int mask = t.length / STRIDE - 1;
+        int slot = mix(instance, location) & mask;
+        while (true) {
+            int i = slot * STRIDE;
+            if (0 == t[i + 2]) {
+                return -1;
+            }
+            if (t[i] == instance && t[i + 1] == location) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void put(long instance, long location, long offset)
+    {
+        if ((size + 1) * 4L > (table.length / STRIDE) * 3L) {
+            rehash();
+        }
+        if (insert(table, instance, location, offset + 1)) {
+            size++;
+        }
+    }
+
+    private void rehash()
+    {
+        long[] old = table;
+        int slots = old.length / STRIDE * 2;
+        if (slots > MAX_SLOTS) {
+            throw new IllegalStateException("too many records: " + size);
+        }
+        long[] t = new long[slots * STRIDE];
+        for (int i = 0; i < old.length; i += STRIDE) {
+            if (0 != old[i + 2]) {
+                insert(t, old[i], old[i + 1], old[i + 2]);
+            }
+        }
+        table = t;
+    }
+
+    /**
+     * @param position 记录位置+1
+     * @return 新增时返回true，替换已有记录时返回false
+     */
+    private static boolean insert(long[] t, long instance, long location, long position)
+    {
+        int mask = t.length / STRIDE - 1;
+        int slot = mix(instance, location) & mask;
+        while (true) {
+            int i = slot * STRIDE;
+            if (0 == t[i + 2]) {
+                t[i] = instance;
+                t[i + 1] = location;
+                t[i + 2] = position;
+                return true;
+            }
+            if (t[i] == instance && t[i + 1] == location) {
+                t[i + 2] = position;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * 线性探测表的删除：把后续探测链上可以前移的记录移到空出的槽位，不使用墓碑
+     */
+    private void deleteSlot(int slot)
+    {
+        long[] t = table;
+        int mask = t.length / STRIDE - 1;
+        int hole = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            int i = j * STRIDE;
+            if (0 == t[i + 2]) {
+                break;
+            }
+            int home = mix(t[i], t[i + 1]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                System.arraycopy(t, i, t, hole * STRIDE, STRIDE);
+                hole = j;
+            }
+        }
+        Arrays.fill(t, hole * STRIDE, hole * STRIDE + STRIDE, 0L);
+        size--;
+    }
+
+    private void retainOtherInstances(long instance)
+    {
+        long[] old = table;
+        long[] t = new long[old.length];
+        int count = 0;
+        for (int i = 0; i < old.length; i += STRIDE) {
+            if (0 != old[i + 2] && old[i] != instance) {
+                insert(t, old[i], old[i + 1], old[i + 2]);
+                count++;
+            }
+        }
+        table = t;
+        size = count;
+    }
+
+    private static int mix(long instance, long location)
+    {
+        long h = location ^ (instance * 0x9E3779B97F4A7C15L);
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+
+    static long instanceHash(String projectId, String instanceName)
+    {
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        update(sha256, projectId);
+        update(sha256, instanceName);
+        return ByteBuffer.wrap(sha256.digest()).getLong();
+    }
+
+    static long locationHash(String projectId, String instanceName, String path)
+    {
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        update(sha256, projectId);
+        update(sha256, instanceName);
+        update(sha256, path);
+        return ByteBuffer.wrap(sha256.digest()).getLong();
+    }
+
+    /**
+     * 以"长度+UTF-8内容"写入，各字段的分界不会产生歧义
+     */
+    private static void update(MessageDigest sha256, String value)
+    {
+        byte[] bytes = null == value ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        sha256.update(ByteBuffer.allocate(4).putInt(null == value ? -1 : bytes.length).array());
+        sha256.update(bytes);
+    }
+}
@@ -0,0 +1,303 @@
+package com.huawei.imagesearch.bulk;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.util.ResponseUtils;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 修改图片标签的后写队列：同一实例中同一路径的待发送修改合并为一个，后提交的覆盖先提交的，
+ * 按时间间隔或待发送数量触发发送，最多parallelism个请求同时进行；
+ * 同一路径同时只有一个请求在进行，保证最后提交的标签最后写入。发出的PUT次数随不同路径数增长，而不是修改次数
+ */
+public class TagUpdateQueue implements Closeable
+{
+    private final ImageSearchService service;
+    private final ConcurrentHashMap<UpdateKey, PendingUpdate> pending = new ConcurrentHashMap<UpdateKey, PendingUpdate>();
+    private final ConcurrentHashMap<UpdateKey, PendingUpdate> inflight = new ConcurrentHashMap<UpdateKey, PendingUpdate>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+    private int parallelism = 4;
+    private int maxPending = 100;
+
+    /**
+     * @param service 图像搜索服务
+     * @param flushIntervalMillis 定时发送的间隔(毫秒)
+     */
+    public TagUpdateQueue(ImageSearchService service, long flushIntervalMillis)
+    {
+        this.service = service;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-search-tag-update");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param parallelism 同时进行的最大请求数，默认4
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param maxPending 待发送的不同路径数达到此值时立即发送，默认100
+     */
+    public void setMaxPending(int maxPending)
+    {
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * 提交一次标签修改，不等待网络请求
+     * @param projectId 项目ID
+     * @param instanceName 实例名称
+     * @param path 图片路径
+     * @param tags 修改后的全部标签
+     * @return 携带此次(或覆盖它的更新的)标签的请求完成后完成，结果为接口返回值；请求失败时以异常方式完成
+     */
+    public CompletableFuture<String> update(String projectId, String instanceName, String path,
+            HashMap<String, String> tags)
+    {
+        if (closed) {
+            throw new IllegalStateException("TagUpdateQueue is closed");
+        }
+        submittedCount.increment();
+        UpdateKey key = new UpdateKey(projectId, instanceName, path);
+        final HashMap<String, String> copy = null == tags ? null : new HashMap<String, String>(tags);
+        PendingUpdate update = pending.compute(key, (k, current) -> {
+            if (null == current) {
+                return new PendingUpdate(copy);
+            }
+            coalescedCount.increment();
+            current.tags = copy;
+            return current;
+        });
+        if (pending.size() >= maxPending) {
+            scheduleDrain();
+        }
+        return update.future;
+    }
+
+    /**
+     * 立即发送所有待发送的修改
+     * @return 调用时已提交的修改全部完成后完成，不会以异常方式完成
+     */
+    public CompletableFuture<Void> flush()
+    {
+        List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+        for (PendingUpdate update : pending.values()) {
+            futures.add(update.future);
+        }
+        for (PendingUpdate update : inflight.values()) {
+            futures.add(update.future);
+        }
+        scheduleDrain();
+        CompletableFuture<?>[] all = new CompletableFuture<?>[futures.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = futures.get(i).handle((result, error) -> null);
+        }
+        return CompletableFuture.allOf(all);
+    }
+
+    /**
+     * 发送所有待发送的修改并等待完成
+     * @return 超时前全部完成时返回true
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitFlush(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        try {
+            flush().get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 不再接受新的修改，发送剩余修改并等待完成
+     */
+    @Override
+    public void close() throws InterruptedIOException
+    {
+        closed = true;
+        try {
+            flush().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while flushing tag updates");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * @return 提交的修改次数
+     */
+    public long getSubmittedCount()
+    {
+        return submittedCount.sum();
+    }
+
+    /**
+     * @return 被后续修改覆盖、未单独发送的修改次数
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return 发出的修改请求数
+     */
+    public long getSentCount()
+    {
+        return sentCount.sum();
+    }
+
+    /**
+     * @return 失败或返回错误码的请求数
+     */
+    public long getFailedCount()
+    {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return 待发送的不同路径数
+     */
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    private void scheduleDrain()
+    {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::drain);
+            } catch (RuntimeException e) {
+                drainScheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 在调度线程上发出待发送的修改，跳过仍有请求在进行的路径，达到并发上限时等请求完成后再继续
+     */
+    private void drain()
+    {
+        drainScheduled.set(false);
+        for (Map.Entry<UpdateKey, PendingUpdate> entry : pending.entrySet()) {
+            if (running.get() >= parallelism) {
+                return;
+            }
+            final UpdateKey key = entry.getKey();
+            final PendingUpdate update = entry.getValue();
+            if (inflight.containsKey(key) || !pending.remove(key, update)) {
+                continue;
+            }
+            inflight.put(key, update);
+            running.incrementAndGet();
+            sentCount.increment();
+            CompletableFuture<String> future;
+            try {
+                future = service.requestUpdateTagsAsync(key.projectId, key.instanceName, key.path, update.tags);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<String>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((result, error) -> {
+                inflight.remove(key, update);
+                running.decrementAndGet();
+                if (null != error || !ResponseUtils.isSuccess(result)) {
+                    failedCount.increment();
+                }
+                if (null == error) {
+                    update.future.complete(result);
+                } else {
+                    update.future.completeExceptionally(error);
+                }
+                if (!pending.isEmpty()) {
+                    scheduleDrain();
+                }
+            });
+        }
+    }
+
+    private static final class PendingUpdate
+    {
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        volatile HashMap<String, String> tags;
+
+        PendingUpdate(HashMap<String, String> tags)
+        {
+            this.tags = tags;
+        }
+    }
+
+    private static final class UpdateKey
+    {
+        final String projectId;
+        final String instanceName;
+        final String path;
+
+        UpdateKey(String projectId, String instanceName, String path)
+        {
+            this.projectId = projectId;
+            this.instanceName = instanceName;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UpdateKey)) {
+                return false;
+            }
+            UpdateKey other = (UpdateKey) o;
+            return Objects.equals(projectId, other.projectId) && Objects.equals(instanceName, other.instanceName)
+                    && Objects.equals(path, other.path);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(projectId, instanceName, path);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.huawei.imagesearch.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 图片路径的布隆过滤器：mightContain返回false时路径一定未加入过，返回true时可能存在误判；
+ * 加入和查询都是无锁的，可在多线程中同时使用
+ */
+public class BloomFilter
+{
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计加入的路径数
+     * @param fpp 期望的误判率，如0.01
+     */
+    public BloomFilter(long expectedInsertions, double fpp)
+    {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (m + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = 64L * words;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    public void put(String path)
+    {
+        long h1 = hash(path);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            while (0 == ((current = bits.get(word)) & mask)) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public boolean mightContain(String path)
+    {
+        long h1 = hash(path);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+            if (0 == (bits.get((int) (index >>> 6)) & (1L << index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 位数组大小(bit)
+     */
+    public long getBitSize()
+    {
+        return bitSize;
+    }
+
+    public int getHashCount()
+    {
+        return hashCount;
+    }
+
+    /**
+     * 路径UTF-8字节的FNV-1a哈希，再经过混合使各位分布均匀
+     */
+    private static long hash(String path)
+    {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,69 @@
+package com.huawei.imagesearch.cache;
+
+/**
+ * 缓存命中统计快照
+ */
+public class CacheStats
+{
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final long size;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long invalidationCount, long size)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return 因容量或过期被淘汰的条目数
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return 显式失效的次数
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount;
+    }
+
+    /**
+     * @return 当前条目数
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    public double getHitRate()
+    {
+        long total = hitCount + missCount;
+        return 0 == total ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("CacheStats[hits=%d, misses=%d, hitRate=%.3f, evictions=%d, invalidations=%d, size=%d]",
+                hitCount, missCount, getHitRate(), evictionCount, invalidationCount, size);
+    }
+}
@@ -0,0 +1,406 @@
+package com.huawei.imagesearch.cache;
+
+import com.alibaba.fastjson.JSONObject;
+import com.huawei.imagesearch.model.ImageCheckResult;
+import com.huawei.imagesearch.model.ResponseParsers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询图像(图片是否存在)结果缓存：存在和不存在的结果分别使用不同的有效期，按条目数做LRU淘汰，按key的hash分段加锁。
+ * 通过同一个服务对象添加、删除图片或修改标签成功后直接更新对应条目，不需要再次查询。
+ * 可为实例加载图片路径快照构建布隆过滤器，过滤器判定不存在的路径直接在本地返回不存在；
+ * 快照之后由其他客户端添加的图片不在过滤器中，只适用于实例只由本进程写入，或可以接受这种误判的场景
+ */
+public class ImageExistenceCache
+{
+    private static final int SEGMENT_COUNT = 16;
+
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final Segment[] segments;
+    private final ConcurrentHashMap<String, BloomFilter> filters = new ConcurrentHashMap<String, BloomFilter>();
+    private final AtomicLong versions = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> instanceMinVersions = new ConcurrentHashMap<String, Long>();
+    private volatile long minVersion;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param positiveTtlMillis 图片存在的结果的有效期(毫秒)
+     * @param negativeTtlMillis 图片不存在的结果的有效期(毫秒)
+     */
+    public ImageExistenceCache(int maxEntries, long positiveTtlMillis, long negativeTtlMillis)
+    {
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.segments = new Segment[SEGMENT_COUNT];
+        int perSegment = Math.max(1, (maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * 获取当前版本号，发起查询前获取，写入结果时传给{@link #put}；
+     * 查询期间该路径被添加或删除、所在实例被删除或缓存被清空时，查询结果不会再写入
+     */
+    public long version()
+    {
+        return versions.get();
+    }
+
+    /**
+     * @return 缓存的查询结果body；未命中但布隆过滤器判定不存在时返回表示不存在的body；否则返回null
+     */
+    public String get(String projectId, String instanceName, String path)
+    {
+        Key key = new Key(projectId, instanceName, path);
+        long now = System.currentTimeMillis();
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (null != entry && null != entry.body) {
+                if (entry.expiresAt > now) {
+                    hits.increment();
+                    return entry.body;
+                }
+                segment.remove(key);
+                evictions.increment();
+            }
+        }
+        BloomFilter filter = filters.get(instanceKey(projectId, instanceName));
+        if (null != filter && !filter.mightContain(path)) {
+            hits.increment();
+            filterHits.increment();
+            return checkBody(path, false, null);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入查询接口的返回body，返回错误码或无法解析时不写入
+     * @param version 发起查询前通过{@link #version}获取的版本号
+     */
+    public void put(String projectId, String instanceName, String path, String body, long version)
+    {
+        ImageCheckResult result;
+        try {
+            result = ResponseParsers.parseImageCheck(body);
+        } catch (IOException e) {
+            return;
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (!result.isSuccess()) {
+            return;
+        }
+        if (result.isExist()) {
+            BloomFilter filter = filters.get(instanceKey(projectId, instanceName));
+            if (null != filter) {
+                filter.put(path);
+            }
+        }
+        store(new Key(projectId, instanceName, path), body, result.isExist(), version);
+    }
+
+    /**
+     * 记录图片已添加或标签已修改
+     */
+    public void recordPresent(String projectId, String instanceName, String path, Map<String, String> tags)
+    {
+        BloomFilter filter = filters.get(instanceKey(projectId, instanceName));
+        if (null != filter) {
+            filter.put(path);
+        }
+        store(new Key(projectId, instanceName, path), checkBody(path, true, tags), true, versions.incrementAndGet());
+    }
+
+    /**
+     * 记录图片已删除
+     */
+    public void recordAbsent(String projectId, String instanceName, String path)
+    {
+        store(new Key(projectId, instanceName, path), checkBody(path, false, null), false, versions.incrementAndGet());
+    }
+
+    /**
+     * 使路径的缓存结果失效，用于修改请求结果未知的情况
+     */
+    public void invalidate(String projectId, String instanceName, String path)
+    {
+        // 保留不含结果的条目，使失效前发出的查询结果不会再写入
+        store(new Key(projectId, instanceName, path), null, false, versions.incrementAndGet());
+        BloomFilter filter = filters.get(instanceKey(projectId, instanceName));
+        if (null != filter) {
+            filter.put(path);
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * 使实例的所有缓存结果失效并移除其布隆过滤器，用于删除实例；之后拒绝写入失效前获取的版本号
+     */
+    public void invalidate(String projectId, String instanceName)
+    {
+        // 先提高实例的最小有效版本再清理条目，写入在分段锁内检查版本，清理前的写入会被一并清理
+        instanceMinVersions.merge(instanceKey(projectId, instanceName), versions.incrementAndGet(), Math::max);
+        filters.remove(instanceKey(projectId, instanceName));
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Key> it = segment.keySet().iterator();
+                while (it.hasNext()) {
+                    Key key = it.next();
+                    if (Objects.equals(projectId, key.projectId) && Objects.equals(instanceName, key.instanceName)) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * 清空所有缓存结果和布隆过滤器，之后拒绝写入清空前获取的版本号
+     */
+    public void invalidateAll()
+    {
+        minVersion = versions.incrementAndGet();
+        // 各实例的最小有效版本都不高于全局的最小有效版本
+        instanceMinVersions.clear();
+        filters.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * 用实例中全部图片路径的快照构建布隆过滤器，替换已有的过滤器
+     * @param paths 实例中全部图片路径
+     * @param fpp 期望的误判率，如0.01
+     */
+    public void loadSnapshot(String projectId, String instanceName, Collection<String> paths, double fpp)
+    {
+        BloomFilter filter = new BloomFilter(paths.size(), fpp);
+        for (String path : paths) {
+            filter.put(path);
+        }
+        filters.put(instanceKey(projectId, instanceName), filter);
+    }
+
+    /**
+     * 从快照文件构建布隆过滤器，文件为UTF-8编码，每行一个图片路径，空行被忽略；
+     * 第一遍统计路径数确定过滤器大小，第二遍逐行加入过滤器，不在内存中保存路径
+     * @throws IOException 读取文件失败
+     */
+    public void loadSnapshot(String projectId, String instanceName, File snapshot, double fpp) throws IOException
+    {
+        long count = 0;
+        try (BufferedReader reader = openSnapshot(snapshot)) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (!line.isEmpty()) {
+                    count++;
+                }
+            }
+        }
+        BloomFilter filter = new BloomFilter(count, fpp);
+        try (BufferedReader reader = openSnapshot(snapshot)) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (!line.isEmpty()) {
+                    filter.put(line);
+                }
+            }
+        }
+        filters.put(instanceKey(projectId, instanceName), filter);
+    }
+
+    private static BufferedReader openSnapshot(File snapshot) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(snapshot), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 清理已过期的条目，缓存本身按需清理，也可由调用方定期调用
+     */
+    public void cleanUp()
+    {
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (entry.expiresAt <= now) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    public CacheStats getStats()
+    {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size);
+    }
+
+    /**
+     * @return 由布隆过滤器直接判定不存在的次数，已计入命中数
+     */
+    public long getFilterHitCount()
+    {
+        return filterHits.sum();
+    }
+
+    private void store(Key key, String body, boolean exist, long version)
+    {
+        long expiresAt = System.currentTimeMillis() + (exist ? positiveTtlMillis : negativeTtlMillis);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (version < minVersion(key)) {
+                return;
+            }
+            Entry current = segment.get(key);
+            if (null == current || current.version <= version) {
+                segment.put(key, new Entry(body, expiresAt, version));
+            }
+        }
+    }
+
+    /**
+     * @return 路径可以写入的最小版本号，实例被删除或缓存被清空时提高
+     */
+    private long minVersion(Key key)
+    {
+        Long instanceMin = instanceMinVersions.get(instanceKey(key.projectId, key.instanceName));
+        return null == instanceMin ? minVersion : Math.max(minVersion, instanceMin);
+    }
+
+    /**
+     * 构造与查询接口格式一致的返回body
+     */
+    private static String checkBody(String path, boolean exist, Map<String, String> tags)
+    {
+        JSONObject result = new JSONObject();
+        result.put("exist", exist);
+        result.put("path", path);
+        if (exist && null != tags) {
+            result.put("tags", tags);
+        }
+        JSONObject json = new JSONObject();
+        json.put("result", result);
+        return json.toJSONString();
+    }
+
+    private Segment segmentFor(Key key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static String instanceKey(String projectId, String instanceName)
+    {
+        return projectId + '/' + instanceName;
+    }
+
+    private static final class Key
+    {
+        final String projectId;
+        final String instanceName;
+        final String path;
+
+        Key(String projectId, String instanceName, String path)
+        {
+            this.projectId = projectId;
+            this.instanceName = instanceName;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(projectId, other.projectId) && Objects.equals(instanceName, other.instanceName)
+                    && Objects.equals(path, other.path);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(projectId, instanceName, path);
+        }
+    }
+
+    private static final class Entry
+    {
+        final String body;
+        final long expiresAt;
+        final long version;
+
+        Entry(String body, long expiresAt, long version)
+        {
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.version = version;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Key, Entry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Segment(int maxEntries)
+        {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+        {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.huawei.imagesearch.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 搜索结果缓存的key：查询图像(内容摘要或图像路径)、实例及limit/offset/tags
+ */
+public final class SearchCacheKey
+{
+    private final String projectId;
+    private final String instanceName;
+    private final String query;
+    private final Integer limit;
+    private final Integer offset;
+    private final String tags;
+    private final int hash;
+
+    private SearchCacheKey(String projectId, String instanceName, String query, Integer limit, Integer offset,
+            Map<String, String> tags)
+    {
+        this.projectId = projectId;
+        this.instanceName = instanceName;
+        this.query = query;
+        this.limit = limit;
+        this.offset = offset;
+        this.tags = encodeTags(tags);
+        int h = Objects.hashCode(projectId);
+        h = 31 * h + Objects.hashCode(instanceName);
+        h = 31 * h + query.hashCode();
+        h = 31 * h + (null == limit ? 0 : limit);
+        h = 31 * h + (null == offset ? 0 : offset);
+        h = 31 * h + this.tags.hashCode();
+        this.hash = h;
+    }
+
+    /**
+     * 按key排序后逐个写成"长度:内容"，key和value中含有任何字符都不会使不同的tags得到相同的编码；value为null时写作"-"
+     */
+    private static String encodeTags(Map<String, String> tags)
+    {
+        if (null == tags || tags.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> tag : new TreeMap<String, String>(tags).entrySet()) {
+            appendField(sb, tag.getKey());
+            appendField(sb, tag.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void appendField(StringBuilder sb, String value)
+    {
+        if (null == value) {
+            sb.append('-');
+        } else {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * 以本地图像内容的SHA-256摘要作为查询条件
+     */
+    public static SearchCacheKey forImage(String projectId, String instanceName, String imageDigest,
+            Integer limit, Integer offset, Map<String, String> tags)
+    {
+        return new SearchCacheKey(projectId, instanceName, "sha256:" + imageDigest, limit, offset, tags);
+    }
+
+    /**
+     * 以图像URL路径作为查询条件
+     */
+    public static SearchCacheKey forPath(String projectId, String instanceName, String path,
+            Integer limit, Integer offset, Map<String, String> tags)
+    {
+        return new SearchCacheKey(projectId, instanceName, "path:" + path, limit, offset, tags);
+    }
+
+    /**
+     * 计算文件内容的SHA-256摘要
+     * @param file 本地文件
+     * @return 十六进制摘要
+     * @throws IOException 文件读取异常时，抛出此异常
+     */
+    public static String digest(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    public String getProjectId()
+    {
+        return projectId;
+    }
+
+    public String getInstanceName()
+    {
+        return instanceName;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchCacheKey)) {
+            return false;
+        }
+        SearchCacheKey other = (SearchCacheKey) o;
+        return hash == other.hash
+                && Objects.equals(projectId, other.projectId)
+                && Objects.equals(instanceName, other.instanceName)
+                && query.equals(other.query)
+                && (null == limit ? null == other.limit : limit.equals(other.limit))
+                && (null == offset ? null == other.offset : offset.equals(other.offset))
+                && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchCacheKey[" + projectId + "/" + instanceName + ", " + query + ", limit=" + limit
+                + ", offset=" + offset + ", tags=" + tags + "]";
+    }
+}
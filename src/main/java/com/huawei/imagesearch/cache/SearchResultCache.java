@@ -0,0 +1,206 @@
+package com.huawei.imagesearch.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端相似图像搜索结果缓存：按条目数做LRU淘汰并支持TTL过期；
+ * 为降低多线程竞争，按key的hash分段加锁。
+ * 每个实例维护一个版本号，实例内容变更(添加、删除、修改图片)时递增版本号，清空缓存时递增全局版本号，
+ * 版本号早于当前版本的条目视为失效，因此失效操作是O(1)的，
+ * 且变更或清空前发出、之后才返回的搜索结果也不会被当作有效结果
+ */
+public class SearchResultCache
+{
+    private static final int SEGMENT_COUNT = 16;
+
+    private final long ttlMillis;
+    private final Segment[] segments;
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param ttlMillis 条目有效期(毫秒)
+     */
+    public SearchResultCache(int maxEntries, long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+        this.segments = new Segment[SEGMENT_COUNT];
+        int perSegment = Math.max(1, (maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * 获取实例当前的版本号，发起搜索前获取，写入结果时传给{@link #put}；
+     * 版本号为实例版本号与全局版本号之和，两者都只增不减，任一递增都使之前获取的版本号失效
+     */
+    public long generation(String projectId, String instanceName)
+    {
+        AtomicLong generation = generations.get(instanceKey(projectId, instanceName));
+        return globalGeneration.get() + (null == generation ? 0 : generation.get());
+    }
+
+    /**
+     * @return 缓存的搜索结果，未命中、已过期或实例已变更时返回null
+     */
+    public String get(SearchCacheKey key)
+    {
+        long now = System.currentTimeMillis();
+        long generation = generation(key.getProjectId(), key.getInstanceName());
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (null != entry) {
+                if (entry.expiresAt > now && entry.generation == generation) {
+                    hits.increment();
+                    return entry.value;
+                }
+                segment.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入搜索结果
+     * @param key 查询条件
+     * @param value 搜索结果
+     * @param generation 发起搜索前通过{@link #generation}获取的实例版本号
+     */
+    public void put(SearchCacheKey key, String value, long generation)
+    {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (generation != generation(key.getProjectId(), key.getInstanceName())) {
+                return;
+            }
+            segment.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis, generation));
+        }
+    }
+
+    /**
+     * 使实例的所有缓存结果失效
+     */
+    public void invalidate(String projectId, String instanceName)
+    {
+        AtomicLong generation = generations.get(instanceKey(projectId, instanceName));
+        if (null == generation) {
+            AtomicLong created = new AtomicLong();
+            generation = generations.putIfAbsent(instanceKey(projectId, instanceName), created);
+            if (null == generation) {
+                generation = created;
+            }
+        }
+        generation.incrementAndGet();
+        invalidations.increment();
+    }
+
+    /**
+     * 清空所有缓存结果，清空前发出的搜索结果不再写入
+     */
+    public void invalidateAll()
+    {
+        globalGeneration.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * 清理已过期或已失效的条目，缓存本身按需清理，也可由调用方定期调用
+     */
+    public void cleanUp()
+    {
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Map.Entry<SearchCacheKey, Entry>> it = segment.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<SearchCacheKey, Entry> e = it.next();
+                    SearchCacheKey key = e.getKey();
+                    if (e.getValue().expiresAt <= now
+                            || e.getValue().generation != generation(key.getProjectId(), key.getInstanceName())) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    public CacheStats getStats()
+    {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size);
+    }
+
+    private Segment segmentFor(SearchCacheKey key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static String instanceKey(String projectId, String instanceName)
+    {
+        return projectId + '/' + instanceName;
+    }
+
+    private static final class Entry
+    {
+        final String value;
+        final long expiresAt;
+        final long generation;
+
+        Entry(String value, long expiresAt, long generation)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<SearchCacheKey, Entry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Segment(int maxEntries)
+        {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SearchCacheKey, Entry> eldest)
+        {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.huawei.imagesearch.hedge;
+
+/**
+ * 对冲请求配置，由{@link HedgingExecutor}使用
+ */
+public class HedgePolicy
+{
+    private long delayMillis = 100;
+    private double delayPercentile = 0.95;
+    private int minSamples = 100;
+    private long minDelayMillis = 5;
+    private double maxHedgeRatio = 0.05;
+    private int maxHedgeBurst = 10;
+
+    /**
+     * 首次请求超过此时间(毫秒)仍未返回时发出对冲请求；按分位数计算延迟时，样本不足前使用此值，默认100
+     */
+    public long getDelayMillis()
+    {
+        return delayMillis;
+    }
+
+    public void setDelayMillis(long delayMillis)
+    {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * 以观察到的请求耗时的此分位数作为对冲延迟，默认0.95，小于等于0时固定使用{@link #getDelayMillis()}
+     */
+    public double getDelayPercentile()
+    {
+        return delayPercentile;
+    }
+
+    public void setDelayPercentile(double delayPercentile)
+    {
+        this.delayPercentile = delayPercentile;
+    }
+
+    /**
+     * 按分位数计算延迟所需的最少样本数，默认100
+     */
+    public int getMinSamples()
+    {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples)
+    {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * 按分位数计算出的延迟的下限(毫秒)，默认5
+     */
+    public long getMinDelayMillis()
+    {
+        return minDelayMillis;
+    }
+
+    public void setMinDelayMillis(long minDelayMillis)
+    {
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    /**
+     * 对冲请求占请求总数的最大比例，默认0.05
+     */
+    public double getMaxHedgeRatio()
+    {
+        return maxHedgeRatio;
+    }
+
+    public void setMaxHedgeRatio(double maxHedgeRatio)
+    {
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    /**
+     * 可累积的对冲请求数上限，即短时间内最多连续发出的对冲请求数，默认10
+     */
+    public int getMaxHedgeBurst()
+    {
+        return maxHedgeBurst;
+    }
+
+    public void setMaxHedgeBurst(int maxHedgeBurst)
+    {
+        this.maxHedgeBurst = maxHedgeBurst;
+    }
+}
@@ -0,0 +1,199 @@
+package com.huawei.imagesearch.hedge;
+
+import com.huawei.imagesearch.metrics.LatencyHistogram;
+import com.huawei.imagesearch.retry.RetryBudget;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 对冲请求：首次请求超过延迟仍未返回时，再发出一个相同的请求，先成功返回的结果生效并取消另一个请求。
+ * 只应用于只读接口；对冲请求的比例由令牌预算限制，与{@link RetryBudget}相同，每个请求存入maxHedgeRatio个令牌，
+ * 每次对冲取出1个。延迟可按观察到的请求耗时分位数自适应
+ */
+public class HedgingExecutor
+{
+    private static final int DELAY_REFRESH_INTERVAL = 64;
+
+    private final HedgePolicy policy;
+    private final RetryBudget budget;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong samplesSinceRefresh = new AtomicLong();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder hedgedCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+    private final LongAdder budgetExhaustedCount = new LongAdder();
+    private volatile long delayNanos;
+
+    public HedgingExecutor(HedgePolicy policy)
+    {
+        this.policy = policy;
+        this.budget = new RetryBudget(policy.getMaxHedgeRatio(), 0, policy.getMaxHedgeBurst());
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(policy.getDelayMillis());
+    }
+
+    /**
+     * 执行请求，必要时发出对冲请求
+     * @param attempt 发送一次请求，每次调用都应发出一个独立的请求
+     * @return 先成功返回的结果；两个请求都失败时以后失败的异常完成；取消返回的future会取消所有请求
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt)
+    {
+        requestCount.increment();
+        budget.onRequest();
+        return new Hedge<T>(attempt).start();
+    }
+
+    /**
+     * @return 当前使用的对冲延迟(毫秒)
+     */
+    public long getDelayMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+
+    public HedgePolicy getPolicy()
+    {
+        return policy;
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return 发出的对冲请求数
+     */
+    public long getHedgedCount()
+    {
+        return hedgedCount.sum();
+    }
+
+    /**
+     * @return 对冲请求先于首次请求返回的次数
+     */
+    public long getHedgeWinCount()
+    {
+        return hedgeWinCount.sum();
+    }
+
+    /**
+     * @return 因超过对冲比例而未发出对冲请求的次数
+     */
+    public long getBudgetExhaustedCount()
+    {
+        return budgetExhaustedCount.sum();
+    }
+
+    private void recordLatency(long nanos)
+    {
+        latencies.record(nanos);
+        double percentile = policy.getDelayPercentile();
+        if (percentile <= 0 || samplesSinceRefresh.incrementAndGet() % DELAY_REFRESH_INTERVAL != 0
+                || latencies.getCount() < policy.getMinSamples()) {
+            return;
+        }
+        long micros = Math.max(latencies.percentile(percentile), TimeUnit.MILLISECONDS.toMicros(policy.getMinDelayMillis()));
+        delayNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private final class Hedge<T>
+    {
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final CompletableFuture<T> result = new CompletableFuture<T>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final long startNanos = System.nanoTime();
+        private volatile CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> secondary;
+        private volatile ScheduledFuture<?> timer;
+
+        Hedge(Supplier<CompletableFuture<T>> attempt)
+        {
+            this.attempt = attempt;
+        }
+
+        CompletableFuture<T> start()
+        {
+            primary = launch(false);
+            if (!result.isDone()) {
+                timer = SchedulerHolder.SCHEDULER.schedule(this::hedge, delayNanos, TimeUnit.NANOSECONDS);
+            }
+            result.whenComplete((value, error) -> {
+                ScheduledFuture<?> t = timer;
+                if (null != t) {
+                    t.cancel(false);
+                }
+                cancel(primary);
+                cancel(secondary);
+            });
+            return result;
+        }
+
+        private void hedge()
+        {
+            if (result.isDone()) {
+                return;
+            }
+            if (!budget.tryAcquire()) {
+                budgetExhaustedCount.increment();
+                return;
+            }
+            hedgedCount.increment();
+            secondary = launch(true);
+            if (result.isDone()) {
+                cancel(secondary);
+            }
+        }
+
+        private CompletableFuture<T> launch(final boolean hedged)
+        {
+            running.incrementAndGet();
+            CompletableFuture<T> future;
+            try {
+                future = attempt.get();
+            } catch (Throwable e) {
+                future = new CompletableFuture<T>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((value, error) -> {
+                if (null == error) {
+                    if (result.complete(value)) {
+                        // 从首次请求发出时计时，即调用方看到的耗时；对冲请求胜出时不以其自身的耗时低估延迟
+                        recordLatency(System.nanoTime() - startNanos);
+                        if (hedged) {
+                            hedgeWinCount.increment();
+                        }
+                    }
+                } else if (0 == running.decrementAndGet()) {
+                    // 另一个请求仍在进行时等待它的结果
+                    result.completeExceptionally(error);
+                }
+            });
+            return future;
+        }
+
+        private void cancel(CompletableFuture<T> future)
+        {
+            if (null != future && !future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static class SchedulerHolder
+    {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-search-hedge");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,585 @@
+package com.huawei.imagesearch.local;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.huawei.imagesearch.ratelimit.TokenBucket;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地的图像搜索服务替身，只监听回环地址，用于单元测试、压测和基准测试，不访问网络也不消耗配额。
+ * 支持实例管理、图片索引的增删改、相似搜索、存在性检查、跨实例搜索及IAM获取Token接口，
+ * 图片索引保存在内存中；可注入延迟、错误率和429限流。
+ * <pre>
+ * LocalImageSearchServer server = new LocalImageSearchServer();
+ * server.start();
+ * ImageSearchService service = new ImageSearchService(
+ *         new IamTokenProvider("user", "pwd", "domain", "region", server.getIamUrl(), 0), "region",
+ *         server.getEndpoint());
+ * </pre>
+ * 相似度由路径的哈希值确定性地生成，相同路径为1.0，只用于验证调用流程，不代表真实的搜索效果。
+ * JDK的HttpServer将返回头与body分两次写出，默认开启的Nagle算法会叠加客户端的延迟ACK(约40ms)；
+ * 测量延迟时应以-Dsun.net.httpserver.nodelay=true启动JVM，本类不修改全局的系统属性
+ */
+public class LocalImageSearchServer implements Closeable, HttpHandler
+{
+    private static final String IAM_PATH = "/v3/auth/tokens";
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final InetSocketAddress address;
+    private final ConcurrentMap<String, LocalInstance> instances = new ConcurrentHashMap<String, LocalInstance>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatusCode = 503;
+    private volatile double throttleRate;
+    private volatile TokenBucket capacity;
+    private volatile int retryAfterSeconds = 1;
+    private volatile boolean autoCreateInstances = true;
+    private volatile long tokenValidityMillis = 24L * 60 * 60 * 1000;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * 监听回环地址上的随机端口
+     */
+    public LocalImageSearchServer()
+    {
+        this(0);
+    }
+
+    /**
+     * @param port 监听的端口，0表示随机端口
+     */
+    public LocalImageSearchServer(int port)
+    {
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * 启动服务，请求在守护线程上处理，注入的延迟不会阻塞其他请求
+     */
+    public synchronized void start() throws IOException
+    {
+        if (null != server) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "local-image-search-" + index.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this);
+        server.start();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (null != server) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return 服务地址，如http://127.0.0.1:port，作为ImageSearchService的endPointUrl
+     */
+    public String getEndpoint()
+    {
+        if (null == server) {
+            throw new IllegalStateException("server not started");
+        }
+        InetSocketAddress bound = server.getAddress();
+        return "http://" + bound.getAddress().getHostAddress() + ":" + bound.getPort();
+    }
+
+    /**
+     * @return IAM获取Token的地址，可传给IamTokenProvider或TokenUtil.requestToken
+     */
+    public String getIamUrl()
+    {
+        return getEndpoint() + IAM_PATH;
+    }
+
+    /**
+     * 每个请求在处理前等待的时间，在[min, max]毫秒内均匀分布
+     */
+    public void setLatencyMillis(long minLatencyMillis, long maxLatencyMillis)
+    {
+        this.minLatencyMillis = Math.max(0, minLatencyMillis);
+        this.maxLatencyMillis = Math.max(this.minLatencyMillis, maxLatencyMillis);
+    }
+
+    /**
+     * @param errorRate 以此概率返回服务端错误，取值0~1
+     */
+    public void setErrorRate(double errorRate)
+    {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param errorStatusCode 注入错误时返回的状态码，默认503
+     */
+    public void setErrorStatusCode(int errorStatusCode)
+    {
+        this.errorStatusCode = errorStatusCode;
+    }
+
+    /**
+     * @param throttleRate 以此概率返回429，取值0~1
+     */
+    public void setThrottleRate(double throttleRate)
+    {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * 服务端容量，超过时返回429
+     * @param permitsPerSecond 每秒可处理的请求数，小于等于0时不限制
+     * @param burst 允许的突发请求数
+     */
+    public void setCapacity(double permitsPerSecond, int burst)
+    {
+        this.capacity = permitsPerSecond <= 0 ? null : new TokenBucket(permitsPerSecond, burst);
+    }
+
+    /**
+     * @param retryAfterSeconds 429返回中Retry-After的秒数，默认1，小于0时不返回该Header
+     */
+    public void setRetryAfterSeconds(int retryAfterSeconds)
+    {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param autoCreateInstances 访问不存在的实例时是否自动创建，默认true；为false时返回404
+     */
+    public void setAutoCreateInstances(boolean autoCreateInstances)
+    {
+        this.autoCreateInstances = autoCreateInstances;
+    }
+
+    /**
+     * @param tokenValidityMillis IAM接口返回的Token有效期(毫秒)，默认24小时
+     */
+    public void setTokenValidityMillis(long tokenValidityMillis)
+    {
+        this.tokenValidityMillis = tokenValidityMillis;
+    }
+
+    /**
+     * 直接向实例中添加图片，用于准备测试数据
+     */
+    public void addImage(String projectId, String instanceName, String path, Map<String, String> tags)
+    {
+        instance(projectId, instanceName, true).put(path, tags);
+    }
+
+    /**
+     * @return 实例中的图片数，实例不存在时为-1
+     */
+    public int getIndexSize(String projectId, String instanceName)
+    {
+        LocalInstance instance = instances.get(key(projectId, instanceName));
+        return null == instance ? -1 : instance.size();
+    }
+
+    /**
+     * 清空所有实例及统计
+     */
+    public void reset()
+    {
+        instances.clear();
+        requestCount.set(0);
+        injectedErrorCount.set(0);
+        throttledCount.set(0);
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    public long getInjectedErrorCount()
+    {
+        return injectedErrorCount.get();
+    }
+
+    public long getThrottledCount()
+    {
+        return throttledCount.get();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            requestCount.incrementAndGet();
+            byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+            delay();
+            if (throttled()) {
+                throttledCount.incrementAndGet();
+                if (retryAfterSeconds >= 0) {
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                }
+                send(exchange, 429, error("APIGW.0308", "The request is throttled"));
+                return;
+            }
+            double rate = errorRate;
+            if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+                injectedErrorCount.incrementAndGet();
+                send(exchange, errorStatusCode, error("LOCAL.0500", "Injected error"));
+                return;
+            }
+            route(exchange, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (JSONException e) {
+            send(exchange, 400, error("LOCAL.0400", "Invalid request body: " + e.getMessage()));
+        } catch (RuntimeException e) {
+            send(exchange, 500, error("LOCAL.0500", String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void delay() throws InterruptedException
+    {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        long millis = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+        if (millis > 0) {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+    }
+
+    private boolean throttled()
+    {
+        double rate = throttleRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            return true;
+        }
+        TokenBucket bucket = capacity;
+        return null != bucket && !bucket.tryAcquire();
+    }
+
+    private void route(HttpExchange exchange, byte[] body) throws IOException
+    {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (IAM_PATH.equals(path) && "POST".equals(method)) {
+            issueToken(exchange);
+            return;
+        }
+        if (null == exchange.getRequestHeaders().getFirst("X-Auth-Token")
+                && null == exchange.getRequestHeaders().getFirst("Authorization")) {
+            send(exchange, 401, error("APIGW.0301", "Incorrect IAM authentication information"));
+            return;
+        }
+        String[] segments = path.startsWith("/") ? path.substring(1).split("/") : path.split("/");
+        if (segments.length < 3 || !"v1".equals(segments[0])) {
+            send(exchange, 404, error("LOCAL.0404", "Unknown path: " + path));
+            return;
+        }
+        String projectId = segments[1];
+        JSONObject request = body.length == 0 ? new JSONObject() : JSON.parseObject(new String(body, StandardCharsets.UTF_8));
+        if ("service".equals(segments[2])) {
+            if (segments.length == 3 && "POST".equals(method)) {
+                createService(exchange, projectId, request);
+                return;
+            }
+            if (segments.length == 4 && "GET".equals(method)) {
+                getService(exchange, projectId, segments[3]);
+                return;
+            }
+            if (segments.length == 4 && "DELETE".equals(method)) {
+                deleteService(exchange, projectId, segments[3]);
+                return;
+            }
+        } else if (segments.length == 4 && "image".equals(segments[2]) && "cross-search".equals(segments[3])
+                && "POST".equals(method)) {
+            crossSearch(exchange, projectId, request);
+            return;
+        } else if (segments.length >= 4 && "image".equals(segments[3])) {
+            LocalInstance instance = instance(projectId, segments[2], autoCreateInstances);
+            if (null == instance) {
+                send(exchange, 404, error("LOCAL.0404", "Instance not found: " + segments[2]));
+                return;
+            }
+            if (segments.length == 4) {
+                if ("POST".equals(method) || "PUT".equals(method)) {
+                    putImage(exchange, instance, request, "PUT".equals(method));
+                    return;
+                }
+                if ("DELETE".equals(method)) {
+                    deleteImage(exchange, instance, request);
+                    return;
+                }
+            } else if (segments.length == 5 && "POST".equals(method)) {
+                if ("search".equals(segments[4])) {
+                    search(exchange, instance, request);
+                    return;
+                }
+                if ("check".equals(segments[4])) {
+                    check(exchange, instance, request);
+                    return;
+                }
+            }
+        }
+        send(exchange, 404, error("LOCAL.0404", "Unknown path: " + method + " " + path));
+    }
+
+    private void issueToken(HttpExchange exchange) throws IOException
+    {
+        JSONObject token = new JSONObject();
+        token.put("expires_at", Instant.ofEpochMilli(System.currentTimeMillis() + tokenValidityMillis).toString());
+        JSONObject response = new JSONObject();
+        response.put("token", token);
+        exchange.getResponseHeaders().set("X-Subject-Token", "local-" + UUID.randomUUID());
+        send(exchange, 201, response);
+    }
+
+    private void createService(HttpExchange exchange, String projectId, JSONObject request) throws IOException
+    {
+        String name = request.getString("name");
+        if (null == name) {
+            send(exchange, 400, error("LOCAL.0400", "name is required"));
+            return;
+        }
+        LocalInstance instance = new LocalInstance(name, request);
+        if (null != instances.putIfAbsent(key(projectId, name), instance)) {
+            send(exchange, 409, error("LOCAL.0409", "Instance already exists: " + name));
+            return;
+        }
+        JSONObject response = instance.describe();
+        response.put("domain", getEndpoint());
+        send(exchange, 200, response);
+    }
+
+    private void getService(HttpExchange exchange, String projectId, String name) throws IOException
+    {
+        LocalInstance instance = instance(projectId, name, autoCreateInstances);
+        if (null == instance) {
+            send(exchange, 404, error("LOCAL.0404", "Instance not found: " + name));
+            return;
+        }
+        JSONObject response = instance.describe();
+        response.put("domain", getEndpoint());
+        send(exchange, 200, response);
+    }
+
+    private void deleteService(HttpExchange exchange, String projectId, String name) throws IOException
+    {
+        if (null == instances.remove(key(projectId, name))) {
+            send(exchange, 404, error("LOCAL.0404", "Instance not found: " + name));
+            return;
+        }
+        send(exchange, 200, success());
+    }
+
+    private void putImage(HttpExchange exchange, LocalInstance instance, JSONObject request, boolean update)
+            throws IOException
+    {
+        String path = request.getString("path");
+        if (null == path) {
+            send(exchange, 400, error("LOCAL.0400", "path is required"));
+            return;
+        }
+        Map<String, String> tags = tags(request);
+        if (update) {
+            if (!instance.updateTags(path, tags)) {
+                send(exchange, 404, error("LOCAL.0404", "Image not found: " + path));
+                return;
+            }
+        } else {
+            instance.put(path, tags);
+        }
+        send(exchange, 200, success());
+    }
+
+    private void deleteImage(HttpExchange exchange, LocalInstance instance, JSONObject request) throws IOException
+    {
+        String path = request.getString("path");
+        if (null == path || !instance.remove(path)) {
+            send(exchange, 404, error("LOCAL.0404", "Image not found: " + path));
+            return;
+        }
+        send(exchange, 200, success());
+    }
+
+    private void search(HttpExchange exchange, LocalInstance instance, JSONObject request) throws IOException
+    {
+        String query = request.getString("path");
+        if (null == query) {
+            query = request.getString("file");
+        }
+        JSONObject response = new JSONObject();
+        response.put("result", hits(instance.search(query, tags(request)),
+                intValue(request, "limit", DEFAULT_LIMIT), intValue(request, "offset", 0)));
+        send(exchange, 200, response);
+    }
+
+    private void check(HttpExchange exchange, LocalInstance instance, JSONObject request) throws IOException
+    {
+        String path = request.getString("path");
+        Map<String, String> tags = null == path ? null : instance.get(path);
+        JSONObject result = new JSONObject();
+        result.put("exist", null != tags);
+        result.put("path", path);
+        if (null != tags) {
+            result.put("tags", tags);
+        }
+        JSONObject response = new JSONObject();
+        response.put("result", result);
+        send(exchange, 200, response);
+    }
+
+    private void crossSearch(HttpExchange exchange, String projectId, JSONObject request) throws IOException
+    {
+        LocalInstance source = instance(projectId, request.getString("source_instance"), autoCreateInstances);
+        LocalInstance target = instance(projectId, request.getString("target_instance"), autoCreateInstances);
+        if (null == source || null == target) {
+            send(exchange, 404, error("LOCAL.0404", "Instance not found"));
+            return;
+        }
+        JSONArray paths = request.getJSONArray("paths");
+        if (null == paths || paths.isEmpty() || paths.size() > 10) {
+            send(exchange, 400, error("LOCAL.0400", "paths must contain 1 to 10 items"));
+            return;
+        }
+        int limit = intValue(request, "limit", DEFAULT_LIMIT);
+        int offset = intValue(request, "offset", 0);
+        JSONObject result = new JSONObject();
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.getString(i);
+            List<LocalInstance.Hit> hits = null == source.get(path)
+                    ? Collections.<LocalInstance.Hit>emptyList() : target.search(path, null);
+            result.put(path, hits(hits, limit, offset));
+        }
+        JSONObject response = new JSONObject();
+        response.put("result", result);
+        send(exchange, 200, response);
+    }
+
+    private static JSONArray hits(List<LocalInstance.Hit> hits, int limit, int offset)
+    {
+        JSONArray array = new JSONArray();
+        for (int i = Math.max(0, offset); i < hits.size() && array.size() < limit; i++) {
+            LocalInstance.Hit hit = hits.get(i);
+            JSONObject item = new JSONObject();
+            item.put("path", hit.path);
+            item.put("sim", hit.score);
+            item.put("tags", hit.tags);
+            array.add(item);
+        }
+        return array;
+    }
+
+    private LocalInstance instance(String projectId, String name, boolean create)
+    {
+        if (null == name) {
+            return null;
+        }
+        String key = key(projectId, name);
+        LocalInstance instance = instances.get(key);
+        if (null == instance && create) {
+            LocalInstance created = new LocalInstance(name, new JSONObject());
+            instance = instances.putIfAbsent(key, created);
+            if (null == instance) {
+                instance = created;
+            }
+        }
+        return instance;
+    }
+
+    private static String key(String projectId, String instanceName)
+    {
+        return projectId + '/' + instanceName;
+    }
+
+    private static Map<String, String> tags(JSONObject request)
+    {
+        JSONObject tags = request.getJSONObject("tags");
+        if (null == tags || tags.isEmpty()) {
+            return null;
+        }
+        Map<String, String> result = new ConcurrentHashMap<String, String>();
+        for (Map.Entry<String, Object> entry : tags.entrySet()) {
+            if (null != entry.getValue()) {
+                result.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static int intValue(JSONObject request, String name, int defaultValue)
+    {
+        Integer value = request.getInteger(name);
+        return null == value ? defaultValue : value;
+    }
+
+    private static JSONObject success()
+    {
+        JSONObject response = new JSONObject();
+        response.put("result", "success");
+        return response;
+    }
+
+    private static JSONObject error(String code, String message)
+    {
+        JSONObject response = new JSONObject();
+        response.put("error_code", code);
+        response.put("error_msg", message);
+        return response;
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, JSONObject response) throws IOException
+    {
+        byte[] bytes = response.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.huawei.imagesearch.local;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * {@link LocalImageSearchServer}中的一个实例，图片按路径有序保存，各操作线程安全
+ */
+class LocalInstance
+{
+    private static final Map<String, String> NO_TAGS = Collections.emptyMap();
+
+    private static final Comparator<Hit> BY_SCORE = new Comparator<Hit>()
+    {
+        @Override
+        public int compare(Hit a, Hit b)
+        {
+            int c = Double.compare(b.score, a.score);
+            return 0 != c ? c : a.path.compareTo(b.path);
+        }
+    };
+
+    private final String name;
+    private final JSONObject info;
+    private final String creationTime = Instant.now().toString();
+    private final ConcurrentSkipListMap<String, Map<String, String>> images =
+            new ConcurrentSkipListMap<String, Map<String, String>>();
+
+    LocalInstance(String name, JSONObject request)
+    {
+        this.name = name;
+        this.info = request;
+    }
+
+    void put(String path, Map<String, String> tags)
+    {
+        images.put(path, null == tags ? NO_TAGS : Collections.unmodifiableMap(tags));
+    }
+
+    boolean updateTags(String path, Map<String, String> tags)
+    {
+        return null != images.computeIfPresent(path,
+                (k, v) -> null == tags ? NO_TAGS : Collections.unmodifiableMap(tags));
+    }
+
+    boolean remove(String path)
+    {
+        return null != images.remove(path);
+    }
+
+    Map<String, String> get(String path)
+    {
+        return images.get(path);
+    }
+
+    int size()
+    {
+        return images.size();
+    }
+
+    /**
+     * @param query 查询图片的路径或Base64内容，为null时只按标签过滤，所有结果相似度为1
+     * @param tags 标签过滤条件，图片须包含全部标签
+     * @return 按相似度降序排列的全部结果
+     */
+    List<Hit> search(String query, Map<String, String> tags)
+    {
+        List<Hit> hits = new ArrayList<Hit>();
+        for (Map.Entry<String, Map<String, String>> entry : images.entrySet()) {
+            if (matches(entry.getValue(), tags)) {
+                hits.add(new Hit(entry.getKey(), score(query, entry.getKey()), entry.getValue()));
+            }
+        }
+        if (null != query) {
+            Collections.sort(hits, BY_SCORE);
+        }
+        return hits;
+    }
+
+    JSONObject describe()
+    {
+        JSONObject response = new JSONObject();
+        response.put("name", name);
+        response.put("model", info.getString("model"));
+        response.put("description", info.getString("description"));
+        response.put("level", info.getLong("level"));
+        response.put("tags", info.getJSONArray("tags"));
+        response.put("status", "available");
+        response.put("creation_time", creationTime);
+        response.put("image_count", images.size());
+        return response;
+    }
+
+    private static boolean matches(Map<String, String> imageTags, Map<String, String> tags)
+    {
+        if (null == tags) {
+            return true;
+        }
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            if (!entry.getValue().equals(imageTags.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 由查询与图片路径的哈希确定性地生成相似度，相同时为1.0，其余在[0.5, 0.99]之间
+     */
+    private static double score(String query, String path)
+    {
+        if (null == query || query.equals(path)) {
+            return 1.0;
+        }
+        long h = query.hashCode() * 0x9E3779B97F4A7C15L ^ path.hashCode();
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return Math.round((0.5 + 0.49 * ((h >>> 11) / (double) (1L << 53))) * 10000) / 10000.0;
+    }
+
+    static final class Hit
+    {
+        final String path;
+        final double score;
+        final Map<String, String> tags;
+
+        Hit(String path, double score, Map<String, String> tags)
+        {
+            this.path = path;
+            this.score = score;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.huawei.imagesearch.metrics;
+
+/**
+ * 耗时分布快照，单位均为微秒
+ */
+public class HistogramSnapshot
+{
+    static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final long count;
+    private final double mean;
+    private final long max;
+    private final long[] percentiles;
+
+    HistogramSnapshot(long count, double mean, long max, long[] percentiles)
+    {
+        this.count = count;
+        this.mean = mean;
+        this.max = max;
+        this.percentiles = percentiles;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMean()
+    {
+        return mean;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    public long getP50()
+    {
+        return percentiles[0];
+    }
+
+    public long getP90()
+    {
+        return percentiles[1];
+    }
+
+    public long getP99()
+    {
+        return percentiles[2];
+    }
+
+    public long getP999()
+    {
+        return percentiles[3];
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("count=%d, mean=%.0fus, p50=%dus, p90=%dus, p99=%dus, p999=%dus, max=%dus",
+                count, mean, getP50(), getP90(), getP99(), getP999(), max);
+    }
+}
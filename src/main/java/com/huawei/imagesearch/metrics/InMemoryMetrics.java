@@ -0,0 +1,122 @@
+package com.huawei.imagesearch.metrics;
+
+import com.huawei.imagesearch.OperationType;
+import com.huawei.imagesearch.util.ConnectionLeakDetector;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 默认的内存指标实现，所有记录均无锁，通过{@link #snapshot()}获取带分位数的快照
+ */
+public class InMemoryMetrics implements MetricsListener
+{
+    private final Map<OperationType, LatencyHistogram> operations =
+            new EnumMap<OperationType, LatencyHistogram>(OperationType.class);
+    private final Map<OperationType, LongAdder> operationFailures =
+            new EnumMap<OperationType, LongAdder>(OperationType.class);
+    private final LatencyHistogram http = new LatencyHistogram();
+    private final LatencyHistogram sign = new LatencyHistogram();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<Integer, LongAdder>();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAccumulator maxPending = new LongAccumulator(Math::max, 0);
+    private final CopyOnWriteArrayList<ConnectionLeakDetector> pools = new CopyOnWriteArrayList<ConnectionLeakDetector>();
+
+    public InMemoryMetrics()
+    {
+        for (OperationType operation : OperationType.values()) {
+            operations.put(operation, new LatencyHistogram());
+            operationFailures.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * 在快照中包含连接池的当前状态，如{@link com.huawei.imagesearch.ImageSearchService#getConnectionLeakDetector()}
+     */
+    public void addPool(ConnectionLeakDetector detector)
+    {
+        pools.addIfAbsent(detector);
+    }
+
+    @Override
+    public void onOperation(OperationType operation, long latencyNanos, boolean success)
+    {
+        operations.get(operation).record(latencyNanos);
+        if (!success) {
+            operationFailures.get(operation).increment();
+        }
+    }
+
+    @Override
+    public void onHttpRequest(String method, int statusCode, long latencyNanos, long requestBytes,
+            long responseBytes)
+    {
+        http.record(latencyNanos);
+        LongAdder counter = statusCounts.get(statusCode);
+        if (null == counter) {
+            LongAdder created = new LongAdder();
+            counter = statusCounts.putIfAbsent(statusCode, created);
+            if (null == counter) {
+                counter = created;
+            }
+        }
+        counter.increment();
+        if (requestBytes > 0) {
+            this.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            this.responseBytes.add(responseBytes);
+        }
+    }
+
+    @Override
+    public void onSign(long latencyNanos)
+    {
+        sign.record(latencyNanos);
+    }
+
+    @Override
+    public void onRetry(String endpoint, Throwable cause)
+    {
+        retries.increment();
+    }
+
+    @Override
+    public void onConnectionLeased(long waitNanos, int pending)
+    {
+        connectionWait.record(waitNanos);
+        maxPending.accumulate(pending);
+    }
+
+    /**
+     * @return 当前指标的快照
+     */
+    public MetricsSnapshot snapshot()
+    {
+        Map<OperationType, HistogramSnapshot> ops = new EnumMap<OperationType, HistogramSnapshot>(OperationType.class);
+        Map<OperationType, Long> failures = new EnumMap<OperationType, Long>(OperationType.class);
+        for (OperationType operation : OperationType.values()) {
+            HistogramSnapshot snapshot = operations.get(operation).snapshot();
+            if (snapshot.getCount() > 0) {
+                ops.put(operation, snapshot);
+                failures.put(operation, operationFailures.get(operation).sum());
+            }
+        }
+        Map<Integer, Long> statuses = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+            statuses.put(entry.getKey(), entry.getValue().sum());
+        }
+        return new MetricsSnapshot(ops, failures, http.snapshot(), sign.snapshot(), connectionWait.snapshot(),
+                statuses, requestBytes.sum(), responseBytes.sum(), retries.sum(), maxPending.get(),
+                pools.toArray(new ConnectionLeakDetector[0]));
+    }
+}
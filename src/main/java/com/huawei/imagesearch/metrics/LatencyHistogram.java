@@ -0,0 +1,123 @@
+package com.huawei.imagesearch.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数线性分桶直方图，思路与HdrHistogram相同：以微秒记录，小于128us时每微秒一个桶，
+ * 之后每个2的幂区间分为64个桶，相对误差不超过1.6%，最大约12天；
+ * 记录只是一次数组下标计算和一次原子自增，快照时复制计数后计算分位数
+ */
+public class LatencyHistogram
+{
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BIT = 40;
+    private static final long MAX_VALUE = (1L << MAX_BIT) - 1;
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos 耗时(纳秒)
+     */
+    public void record(long nanos)
+    {
+        long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        counts.incrementAndGet(index(micros));
+        total.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    static int index(long micros)
+    {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = msb - SUB_BUCKET_BITS;
+        int sub = (int) (micros >>> shift);
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (sub - SUB_BUCKETS);
+    }
+
+    /**
+     * @return 桶所代表区间的中间值(微秒)
+     */
+    static long value(int index)
+    {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int k = index - LINEAR_BUCKETS;
+        int shift = k / SUB_BUCKETS + 1;
+        long sub = k % SUB_BUCKETS + SUB_BUCKETS;
+        return (sub << shift) + (1L << (shift - 1));
+    }
+
+    /**
+     * @return 已记录的次数
+     */
+    public long getCount()
+    {
+        return total.sum();
+    }
+
+    /**
+     * 计算单个分位数，比{@link #snapshot()}开销小
+     * @param quantile 分位，如0.95
+     * @return 分位数(微秒)，没有记录时为0
+     */
+    public long percentile(double quantile)
+    {
+        long count = total.sum();
+        if (0 == count) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(value(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return 当前分布的快照，快照期间仍可并发记录
+     */
+    public HistogramSnapshot snapshot()
+    {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long[] percentiles = new long[HistogramSnapshot.PERCENTILES.length];
+        int p = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && p < percentiles.length; i++) {
+            seen += copy[i];
+            while (p < percentiles.length && count > 0 && seen >= Math.ceil(HistogramSnapshot.PERCENTILES[p] * count)) {
+                percentiles[p++] = value(i);
+            }
+        }
+        long maxValue = max.get();
+        for (int i = 0; i < percentiles.length; i++) {
+            // 桶的代表值可能略大于实际记录的最大值
+            percentiles[i] = Math.min(percentiles[i], maxValue);
+        }
+        long totalCount = total.sum();
+        return new HistogramSnapshot(count, totalCount == 0 ? 0 : sum.sum() / (double) totalCount, maxValue,
+                percentiles);
+    }
+}
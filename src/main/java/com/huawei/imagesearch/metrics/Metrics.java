@@ -0,0 +1,54 @@
+package com.huawei.imagesearch.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * 进程内全局的指标监听器，未设置时为空操作，调用方通过{@link #isEnabled()}跳过计时
+ */
+public final class Metrics
+{
+    private static final MetricsListener NOOP = new MetricsListener()
+    {
+    };
+
+    private static volatile MetricsListener listener = load();
+
+    private Metrics()
+    {
+    }
+
+    private static MetricsListener load()
+    {
+        try {
+            Iterator<MetricsListener> it = ServiceLoader.load(MetricsListener.class).iterator();
+            if (it.hasNext()) {
+                return it.next();
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        return NOOP;
+    }
+
+    public static MetricsListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * @param metricsListener 指标监听器，如{@link InMemoryMetrics}，传null关闭
+     */
+    public static void setListener(MetricsListener metricsListener)
+    {
+        listener = null == metricsListener ? NOOP : metricsListener;
+    }
+
+    /**
+     * @return 设置了监听器时为true
+     */
+    public static boolean isEnabled()
+    {
+        return NOOP != listener;
+    }
+}
@@ -0,0 +1,60 @@
+package com.huawei.imagesearch.metrics;
+
+import com.huawei.imagesearch.OperationType;
+
+/**
+ * 指标监听SPI，所有方法都在请求线程或IO线程上同步调用，实现必须线程安全且足够轻量；
+ * 默认实现均为空操作，只需覆盖关心的事件。
+ * 通过{@link Metrics#setListener}设置，或在META-INF/services中声明由ServiceLoader自动加载
+ */
+public interface MetricsListener
+{
+    /**
+     * ImageSearchService的一次接口调用结束，包括重试和限流等待
+     * @param operation 接口类型
+     * @param latencyNanos 耗时(纳秒)
+     * @param success 调用是否得到返回，服务返回的错误码不计为失败
+     */
+    default void onOperation(OperationType operation, long latencyNanos, boolean success)
+    {
+    }
+
+    /**
+     * 一次HTTP请求结束，由HttpClientUtils和HttpAsyncClientUtils调用
+     * @param method 请求方法
+     * @param statusCode HTTP状态码，网络异常时为-1
+     * @param latencyNanos 从发送请求到处理完返回的耗时(纳秒)
+     * @param requestBytes 请求body字节数，未知时为-1
+     * @param responseBytes 返回body字节数，未知时为-1
+     */
+    default void onHttpRequest(String method, int statusCode, long latencyNanos, long requestBytes,
+            long responseBytes)
+    {
+    }
+
+    /**
+     * AccessServiceUtil完成一次AK/SK签名
+     * @param latencyNanos 签名耗时(纳秒)
+     */
+    default void onSign(long latencyNanos)
+    {
+    }
+
+    /**
+     * 请求失败后即将重试
+     * @param endpoint 终端节点
+     * @param cause 本次失败的原因
+     */
+    default void onRetry(String endpoint, Throwable cause)
+    {
+    }
+
+    /**
+     * 从同步客户端的连接池获取到连接
+     * @param waitNanos 等待连接的耗时(纳秒)
+     * @param pending 获取连接时正在等待的请求数(含本次)
+     */
+    default void onConnectionLeased(long waitNanos, int pending)
+    {
+    }
+}
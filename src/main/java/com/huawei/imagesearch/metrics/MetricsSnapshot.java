@@ -0,0 +1,147 @@
+package com.huawei.imagesearch.metrics;
+
+import com.huawei.imagesearch.OperationType;
+import com.huawei.imagesearch.util.ConnectionLeakDetector;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link InMemoryMetrics}的快照
+ */
+public class MetricsSnapshot
+{
+    private final Map<OperationType, HistogramSnapshot> operations;
+    private final Map<OperationType, Long> operationFailures;
+    private final HistogramSnapshot http;
+    private final HistogramSnapshot sign;
+    private final HistogramSnapshot connectionWait;
+    private final Map<Integer, Long> statusCounts;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long retries;
+    private final long maxPending;
+    private final List<PoolStats> pools = new ArrayList<PoolStats>();
+
+    MetricsSnapshot(Map<OperationType, HistogramSnapshot> operations, Map<OperationType, Long> operationFailures,
+            HistogramSnapshot http, HistogramSnapshot sign, HistogramSnapshot connectionWait,
+            Map<Integer, Long> statusCounts, long requestBytes, long responseBytes, long retries, long maxPending,
+            ConnectionLeakDetector[] detectors)
+    {
+        this.operations = Collections.unmodifiableMap(operations);
+        this.operationFailures = Collections.unmodifiableMap(operationFailures);
+        this.http = http;
+        this.sign = sign;
+        this.connectionWait = connectionWait;
+        this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.retries = retries;
+        this.maxPending = maxPending;
+        for (ConnectionLeakDetector detector : detectors) {
+            PoolStats stats = detector.getPoolStats();
+            if (null != stats) {
+                pools.add(stats);
+            }
+        }
+    }
+
+    /**
+     * @return 各接口的耗时分布，只包含有调用的接口
+     */
+    public Map<OperationType, HistogramSnapshot> getOperations()
+    {
+        return operations;
+    }
+
+    /**
+     * @return 各接口未得到返回的调用次数
+     */
+    public Map<OperationType, Long> getOperationFailures()
+    {
+        return operationFailures;
+    }
+
+    /**
+     * @return 单次HTTP请求的耗时分布
+     */
+    public HistogramSnapshot getHttp()
+    {
+        return http;
+    }
+
+    /**
+     * @return AK/SK签名的耗时分布
+     */
+    public HistogramSnapshot getSign()
+    {
+        return sign;
+    }
+
+    /**
+     * @return 从连接池获取连接的等待时间分布
+     */
+    public HistogramSnapshot getConnectionWait()
+    {
+        return connectionWait;
+    }
+
+    /**
+     * @return 各HTTP状态码的请求数，-1表示网络异常
+     */
+    public Map<Integer, Long> getStatusCounts()
+    {
+        return statusCounts;
+    }
+
+    public long getRequestBytes()
+    {
+        return requestBytes;
+    }
+
+    public long getResponseBytes()
+    {
+        return responseBytes;
+    }
+
+    public long getRetries()
+    {
+        return retries;
+    }
+
+    /**
+     * @return 获取连接时观察到的最大等待请求数
+     */
+    public long getMaxPending()
+    {
+        return maxPending;
+    }
+
+    /**
+     * @return 已登记连接池的当前状态(leased/available/pending/max)
+     */
+    public List<PoolStats> getPools()
+    {
+        return pools;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("MetricsSnapshot\n");
+        for (Map.Entry<OperationType, HistogramSnapshot> entry : operations.entrySet()) {
+            sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue())
+                    .append(", failures=").append(operationFailures.get(entry.getKey())).append('\n');
+        }
+        sb.append("  http: ").append(http).append('\n');
+        sb.append("  sign: ").append(sign).append('\n');
+        sb.append("  connectionWait: ").append(connectionWait).append(", maxPending=").append(maxPending).append('\n');
+        sb.append("  status: ").append(statusCounts).append(", requestBytes=").append(requestBytes)
+                .append(", responseBytes=").append(responseBytes).append(", retries=").append(retries).append('\n');
+        sb.append("  pools: ").append(pools);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.huawei.imagesearch.model;
+
+/**
+ * 服务返回的错误信息，对应返回body中的error_code和error_msg
+ */
+public class ErrorInfo
+{
+    private final String code;
+    private final String message;
+
+    public ErrorInfo(String code, String message)
+    {
+        this.code = code;
+        this.message = message;
+    }
+
+    /**
+     * @return 错误码，如IS.0001
+     */
+    public String getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return 错误描述
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return code + ": " + message;
+    }
+}
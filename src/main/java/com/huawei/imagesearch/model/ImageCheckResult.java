@@ -0,0 +1,60 @@
+package com.huawei.imagesearch.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 查询图像的类型化返回结果
+ */
+public class ImageCheckResult extends ServiceResponse
+{
+    private boolean exist;
+    private String path;
+    private Map<String, String> tags = Collections.emptyMap();
+
+    /**
+     * @return 图片是否存在于索引库中
+     */
+    public boolean isExist()
+    {
+        return exist;
+    }
+
+    void setExist(boolean exist)
+    {
+        this.exist = exist;
+    }
+
+    /**
+     * @return 图片索引路径，服务未返回时为null
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    void setPath(String path)
+    {
+        this.path = path;
+    }
+
+    /**
+     * @return 图片标签，没有标签时为空
+     */
+    public Map<String, String> getTags()
+    {
+        return tags;
+    }
+
+    void setTags(Map<String, String> tags)
+    {
+        this.tags = Collections.unmodifiableMap(tags);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ImageCheckResult[statusCode=" + getStatusCode() + (null != getError() ? ", error=" + getError() : "")
+                + ", exist=" + exist + ", path=" + path + ", tags=" + tags + "]";
+    }
+}
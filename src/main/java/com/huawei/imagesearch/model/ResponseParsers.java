@@ -0,0 +1,374 @@
+package com.huawei.imagesearch.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用Jackson流式解析器将返回body直接从输入流解析为类型化结果，不先读取为字符串，也不构建完整的JSON树；
+ * 搜索结果解析到指定条数后即停止
+ */
+public final class ResponseParsers
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 只解析错误信息的处理器，适用于添加、删除、修改等只关心是否成功的接口
+     */
+    public static final ResponseHandler<ServiceResponse> SERVICE_RESPONSE_HANDLER =
+            new ParsingHandler<ServiceResponse>()
+            {
+                @Override
+                ServiceResponse parse(InputStream in) throws IOException
+                {
+                    return parseServiceResponse(in);
+                }
+            };
+
+    public static final ResponseHandler<ImageCheckResult> IMAGE_CHECK_HANDLER =
+            new ParsingHandler<ImageCheckResult>()
+            {
+                @Override
+                ImageCheckResult parse(InputStream in) throws IOException
+                {
+                    return parseImageCheck(in);
+                }
+            };
+
+    public static final ResponseHandler<ServiceInfo> SERVICE_INFO_HANDLER =
+            new ParsingHandler<ServiceInfo>()
+            {
+                @Override
+                ServiceInfo parse(InputStream in) throws IOException
+                {
+                    return parseServiceInfo(in);
+                }
+            };
+
+    private ResponseParsers()
+    {
+    }
+
+    /**
+     * 解析相似图像搜索结果的处理器
+     * @param maxHits 最多解析的结果数，小于等于0时不限制
+     */
+    public static ResponseHandler<SearchResult> searchResultHandler(final int maxHits)
+    {
+        return new ParsingHandler<SearchResult>()
+        {
+            @Override
+            SearchResult parse(InputStream in) throws IOException
+            {
+                return parseSearchResult(in, maxHits);
+            }
+        };
+    }
+
+    /**
+     * 解析相似图像搜索结果
+     * @param in 返回body
+     * @param maxHits 最多解析的结果数，小于等于0时不限制；达到后不再读取后续结果
+     * @return 搜索结果
+     * @throws IOException 读取异常或body不是JSON对象时，抛出此异常
+     */
+    public static SearchResult parseSearchResult(InputStream in, int maxHits) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(in)) {
+            return parse(p, new SearchResult(), new SearchReader(maxHits));
+        }
+    }
+
+    /**
+     * 解析已读取为字符串的相似图像搜索结果，如缓存中的返回body
+     */
+    public static SearchResult parseSearchResult(String body, int maxHits) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(body)) {
+            return parse(p, new SearchResult(), new SearchReader(maxHits));
+        }
+    }
+
+    /**
+     * 解析查询图像结果
+     */
+    public static ImageCheckResult parseImageCheck(InputStream in) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(in)) {
+            return parse(p, new ImageCheckResult(), IMAGE_CHECK_READER);
+        }
+    }
+
+    /**
+     * 解析已读取为字符串的查询图像结果，如缓存中的返回body
+     */
+    public static ImageCheckResult parseImageCheck(String body) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(body)) {
+            return parse(p, new ImageCheckResult(), IMAGE_CHECK_READER);
+        }
+    }
+
+    /**
+     * 解析实例详细信息
+     */
+    public static ServiceInfo parseServiceInfo(InputStream in) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(in)) {
+            return parse(p, new ServiceInfo(), SERVICE_INFO_READER);
+        }
+    }
+
+    /**
+     * 只解析返回中的错误信息，其余字段跳过
+     */
+    public static ServiceResponse parseServiceResponse(InputStream in) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(in)) {
+            return parse(p, new ServiceResponse(), SKIP_READER);
+        }
+    }
+
+    /**
+     * 只解析已读取为字符串的返回中的错误信息，如返回String的接口的body
+     */
+    public static ServiceResponse parseServiceResponse(String body) throws IOException
+    {
+        try (JsonParser p = JSON_FACTORY.createParser(body)) {
+            return parse(p, new ServiceResponse(), SKIP_READER);
+        }
+    }
+
+    /**
+     * 逐个读取顶层字段，error_code和error_msg统一处理，其他字段交给reader；reader返回false时停止解析
+     */
+    private static <T extends ServiceResponse> T parse(JsonParser p, T result, FieldReader<? super T> reader)
+            throws IOException
+    {
+        JsonToken token = p.nextToken();
+        if (null == token) {
+            return result;
+        }
+        if (JsonToken.START_OBJECT != token) {
+            throw new JsonParseException(p, "JSON object expected but was " + token);
+        }
+        String errorCode = null;
+        String errorMsg = null;
+        while (JsonToken.FIELD_NAME == p.nextToken()) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("error_code".equals(name)) {
+                errorCode = p.getValueAsString();
+            } else if ("error_msg".equals(name)) {
+                errorMsg = p.getValueAsString();
+            } else if (!reader.read(name, p, result)) {
+                break;
+            }
+        }
+        if (null != errorCode || null != errorMsg) {
+            result.setError(new ErrorInfo(errorCode, errorMsg));
+        }
+        return result;
+    }
+
+    /**
+     * 读取当前的JSON对象为字符串键值对，值不是标量时跳过
+     */
+    private static Map<String, String> readStringMap(JsonParser p) throws IOException
+    {
+        Map<String, String> map = new HashMap<String, String>();
+        if (JsonToken.START_OBJECT != p.getCurrentToken()) {
+            p.skipChildren();
+            return map;
+        }
+        while (JsonToken.FIELD_NAME == p.nextToken()) {
+            String name = p.getCurrentName();
+            if (p.nextToken().isScalarValue()) {
+                map.put(name, p.getValueAsString());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return map;
+    }
+
+    private static List<String> readStringList(JsonParser p) throws IOException
+    {
+        List<String> list = new ArrayList<String>();
+        if (JsonToken.START_ARRAY != p.getCurrentToken()) {
+            p.skipChildren();
+            return list;
+        }
+        JsonToken token;
+        while (JsonToken.END_ARRAY != (token = p.nextToken())) {
+            if (token.isScalarValue()) {
+                list.add(p.getValueAsString());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return list;
+    }
+
+    private interface FieldReader<T>
+    {
+        /**
+         * 读取当前字段的值，需跳过不关心的值；返回false时停止解析
+         */
+        boolean read(String name, JsonParser p, T result) throws IOException;
+    }
+
+    private static class SearchReader implements FieldReader<SearchResult>
+    {
+        private final int maxHits;
+
+        SearchReader(int maxHits)
+        {
+            this.maxHits = maxHits <= 0 ? Integer.MAX_VALUE : maxHits;
+        }
+
+        @Override
+        public boolean read(String name, JsonParser p, SearchResult result) throws IOException
+        {
+            if (!"result".equals(name) || JsonToken.START_ARRAY != p.getCurrentToken()) {
+                p.skipChildren();
+                return true;
+            }
+            int count = 0;
+            JsonToken token;
+            while (JsonToken.END_ARRAY != (token = p.nextToken())) {
+                if (JsonToken.START_OBJECT != token) {
+                    p.skipChildren();
+                    continue;
+                }
+                if (count == maxHits) {
+                    result.setTruncated(true);
+                    return false;
+                }
+                result.addHit(readHit(p));
+                count++;
+            }
+            return true;
+        }
+
+        private static SearchHit readHit(JsonParser p) throws IOException
+        {
+            String path = null;
+            double score = 0;
+            Map<String, String> tags = null;
+            while (JsonToken.FIELD_NAME == p.nextToken()) {
+                String name = p.getCurrentName();
+                p.nextToken();
+                if ("path".equals(name)) {
+                    path = p.getValueAsString();
+                } else if ("sim".equals(name) || "score".equals(name)) {
+                    score = p.getValueAsDouble();
+                } else if ("tags".equals(name)) {
+                    tags = readStringMap(p);
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return new SearchHit(path, score, tags);
+        }
+    }
+
+    private static final FieldReader<ServiceResponse> SKIP_READER = new FieldReader<ServiceResponse>()
+    {
+        @Override
+        public boolean read(String name, JsonParser p, ServiceResponse result) throws IOException
+        {
+            p.skipChildren();
+            return true;
+        }
+    };
+
+    private static final FieldReader<ImageCheckResult> IMAGE_CHECK_READER = new FieldReader<ImageCheckResult>()
+    {
+        @Override
+        public boolean read(String name, JsonParser p, ImageCheckResult result) throws IOException
+        {
+            if ("exist".equals(name)) {
+                result.setExist(p.getValueAsBoolean());
+            } else if ("path".equals(name)) {
+                result.setPath(p.getValueAsString());
+            } else if ("tags".equals(name)) {
+                result.setTags(readStringMap(p));
+            } else if ("result".equals(name) && JsonToken.START_OBJECT == p.getCurrentToken()) {
+                // 部分版本将图片信息放在result对象中
+                while (JsonToken.FIELD_NAME == p.nextToken()) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    read(field, p, result);
+                }
+            } else {
+                p.skipChildren();
+            }
+            return true;
+        }
+    };
+
+    private static final FieldReader<ServiceInfo> SERVICE_INFO_READER = new FieldReader<ServiceInfo>()
+    {
+        @Override
+        public boolean read(String name, JsonParser p, ServiceInfo result) throws IOException
+        {
+            if ("name".equals(name)) {
+                result.setName(p.getValueAsString());
+            } else if ("model".equals(name)) {
+                result.setModel(p.getValueAsString());
+            } else if ("description".equals(name)) {
+                result.setDescription(p.getValueAsString());
+            } else if ("domain".equals(name)) {
+                result.setDomain(p.getValueAsString());
+            } else if ("status".equals(name)) {
+                result.setStatus(p.getValueAsString());
+            } else if ("level".equals(name) && p.getCurrentToken().isScalarValue()) {
+                result.setLevel(p.getValueAsLong());
+            } else if ("creation_time".equals(name)) {
+                result.setCreationTime(p.getValueAsString());
+            } else if ("tags".equals(name)) {
+                result.setTags(readStringList(p));
+            } else {
+                p.skipChildren();
+            }
+            return true;
+        }
+    };
+
+    /**
+     * 直接从返回的entity输入流解析，并记录HTTP状态码
+     */
+    private abstract static class ParsingHandler<T extends ServiceResponse> implements ResponseHandler<T>
+    {
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException
+        {
+            HttpEntity entity = response.getEntity();
+            T result;
+            if (null == entity) {
+                result = parse(new ByteArrayInputStream(new byte[0]));
+            } else {
+                try (InputStream in = entity.getContent()) {
+                    result = parse(in);
+                }
+            }
+            result.setStatusCode(response.getStatusLine().getStatusCode());
+            return result;
+        }
+
+        abstract T parse(InputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,51 @@
+package com.huawei.imagesearch.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 相似图像搜索返回的单个结果
+ */
+public class SearchHit
+{
+    private final String path;
+    private final double score;
+    private final Map<String, String> tags;
+
+    public SearchHit(String path, double score, Map<String, String> tags)
+    {
+        this.path = path;
+        this.score = score;
+        this.tags = null == tags ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return 图片索引路径
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return 相似度，对应返回中的sim字段
+     */
+    public double getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return 图片标签，没有标签时为空
+     */
+    public Map<String, String> getTags()
+    {
+        return tags;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchHit[path=" + path + ", score=" + score + ", tags=" + tags + "]";
+    }
+}
@@ -0,0 +1,47 @@
+package com.huawei.imagesearch.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 相似图像搜索的类型化返回结果
+ */
+public class SearchResult extends ServiceResponse
+{
+    private final List<SearchHit> hits = new ArrayList<SearchHit>();
+    private boolean truncated;
+
+    /**
+     * @return 按服务返回顺序排列的搜索结果
+     */
+    public List<SearchHit> getHits()
+    {
+        return Collections.unmodifiableList(hits);
+    }
+
+    void addHit(SearchHit hit)
+    {
+        hits.add(hit);
+    }
+
+    /**
+     * @return 达到调用方指定的最大结果数后停止解析、其余结果被丢弃时为true
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    void setTruncated(boolean truncated)
+    {
+        this.truncated = truncated;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchResult[statusCode=" + getStatusCode() + (null != getError() ? ", error=" + getError() : "")
+                + ", hits=" + hits + (truncated ? ", truncated" : "") + "]";
+    }
+}
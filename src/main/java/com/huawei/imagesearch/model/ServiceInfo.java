@@ -0,0 +1,127 @@
+package com.huawei.imagesearch.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 实例详细信息的类型化返回结果
+ */
+public class ServiceInfo extends ServiceResponse
+{
+    private String name;
+    private String model;
+    private String description;
+    private String domain;
+    private String status;
+    private Long level;
+    private String creationTime;
+    private List<String> tags = Collections.emptyList();
+
+    /**
+     * @return 实例名称
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @return 模型名称，如image-copyright/image-recommend
+     */
+    public String getModel()
+    {
+        return model;
+    }
+
+    void setModel(String model)
+    {
+        this.model = model;
+    }
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    void setDescription(String description)
+    {
+        this.description = description;
+    }
+
+    /**
+     * @return 实例访问域名
+     */
+    public String getDomain()
+    {
+        return domain;
+    }
+
+    void setDomain(String domain)
+    {
+        this.domain = domain;
+    }
+
+    /**
+     * @return 实例状态
+     */
+    public String getStatus()
+    {
+        return status;
+    }
+
+    void setStatus(String status)
+    {
+        this.status = status;
+    }
+
+    /**
+     * @return 实例的图片数量规格，服务未返回时为null
+     */
+    public Long getLevel()
+    {
+        return level;
+    }
+
+    void setLevel(Long level)
+    {
+        this.level = level;
+    }
+
+    /**
+     * @return 实例创建时间
+     */
+    public String getCreationTime()
+    {
+        return creationTime;
+    }
+
+    void setCreationTime(String creationTime)
+    {
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * @return 实例定义的标签名
+     */
+    public List<String> getTags()
+    {
+        return tags;
+    }
+
+    void setTags(List<String> tags)
+    {
+        this.tags = Collections.unmodifiableList(tags);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ServiceInfo[statusCode=" + getStatusCode() + (null != getError() ? ", error=" + getError() : "")
+                + ", name=" + name + ", model=" + model + ", status=" + status + ", level=" + level + "]";
+    }
+}
@@ -0,0 +1,44 @@
+package com.huawei.imagesearch.model;
+
+/**
+ * 类型化返回结果的公共部分：HTTP状态码和服务返回的错误信息
+ */
+public class ServiceResponse
+{
+    private int statusCode;
+    private ErrorInfo error;
+
+    /**
+     * @return HTTP状态码，由缓存的返回body解析时为0
+     */
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    void setStatusCode(int statusCode)
+    {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return 服务返回的错误信息，调用成功时为null
+     */
+    public ErrorInfo getError()
+    {
+        return error;
+    }
+
+    void setError(ErrorInfo error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * @return 返回body中没有error_code和error_msg且HTTP状态码不是4xx/5xx时为true
+     */
+    public boolean isSuccess()
+    {
+        return null == error && statusCode < 400;
+    }
+}
@@ -0,0 +1,17 @@
+package com.huawei.imagesearch.outbox;
+
+import com.huawei.imagesearch.model.ServiceResponse;
+
+/**
+ * 发件箱放弃发送一条修改时的回调：修改被服务拒绝、无法构造请求或重试次数用尽。
+ * 回调之后修改即被确认，不会再重放；在请求完成的线程上调用，实现不应阻塞
+ */
+public interface DeadLetterListener
+{
+    /**
+     * @param mutation 放弃发送的修改
+     * @param response 最后一次请求的返回，请求未得到返回时为null
+     * @param error 最后一次请求的异常，得到返回时为null
+     */
+    void onDeadLetter(Mutation mutation, ServiceResponse response, Throwable error);
+}
@@ -0,0 +1,109 @@
+package com.huawei.imagesearch.outbox;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 记录在日志中的一次实例内容修改
+ */
+public final class Mutation
+{
+    /**
+     * 修改类型，code写入日志，不可更改
+     */
+    public enum Type
+    {
+        CREATE_INDEX_URL(1), DELETE_INDEX(2), UPDATE_TAGS(3);
+
+        final byte code;
+
+        Type(int code)
+        {
+            this.code = (byte) code;
+        }
+
+        static Type valueOf(byte code)
+        {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("unknown mutation type: " + code);
+        }
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String projectId;
+    private final String instanceName;
+    private final String path;
+    private final HashMap<String, String> tags;
+
+    Mutation(long sequence, Type type, String projectId, String instanceName, String path,
+            HashMap<String, String> tags)
+    {
+        this.sequence = sequence;
+        this.type = type;
+        this.projectId = projectId;
+        this.instanceName = instanceName;
+        this.path = path;
+        this.tags = tags;
+    }
+
+    /**
+     * @return 日志中的序号，按提交顺序递增
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public String getProjectId()
+    {
+        return projectId;
+    }
+
+    public String getInstanceName()
+    {
+        return instanceName;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return 标签，删除操作或未设置标签时为null
+     */
+    public Map<String, String> getTags()
+    {
+        return null == tags ? null : Collections.unmodifiableMap(tags);
+    }
+
+    HashMap<String, String> tags()
+    {
+        return tags;
+    }
+
+    /**
+     * 同一实例中同一路径的修改必须按顺序发送
+     */
+    String orderingKey()
+    {
+        return projectId + '\n' + instanceName + '\n' + path;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Mutation{" + sequence + ", " + type + ", " + projectId + "/" + instanceName + ", " + path + "}";
+    }
+}
@@ -0,0 +1,476 @@
+package com.huawei.imagesearch.outbox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的修改日志。每条记录为[长度][CRC32][内容]，内容为修改(ENTRY)或确认(ACK)；
+ * 由单个写线程成批写入，一批修改只调用一次fsync后才通知提交方。确认记录不单独fsync，
+ * 丢失时对应修改在重启后会被再次发送(至少一次)。打开时截掉末尾不完整的记录，未确认的修改即为需要重放的修改；
+ * 已确认的记录数超过阈值时，将未确认的修改写入新文件并原子替换旧文件。
+ * 一批写入失败时截回写入前的长度，截断或压缩后重新打开失败时日志进入失败状态，之后的写入都以该异常失败
+ */
+final class MutationJournal implements Closeable
+{
+    private static final byte ENTRY = 1;
+    private static final byte ACK = 2;
+    private static final int MAX_RECORD_LENGTH = 1 << 24;
+    private static final int MAX_BATCH = 1024;
+
+    private final File file;
+    private final Consumer<Mutation> onDurable;
+    private final ConcurrentSkipListMap<Long, Mutation> live = new ConcurrentSkipListMap<Long, Mutation>();
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<Record>();
+    private final Object appendLock = new Object();
+    private final Thread writer;
+    private final List<Mutation> recovered;
+    private FileChannel channel;
+    private long nextSequence = 1;
+    private long deadRecords;
+    private volatile long compactThreshold = 10000;
+    private volatile long compactionCount;
+    private volatile long syncCount;
+    private volatile long errorCount;
+    private volatile Throwable lastError;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * @param file 日志文件，不存在时创建
+     * @param onDurable 修改写入磁盘后在写线程上按序号顺序调用
+     * @throws IOException 读取或截断日志失败
+     */
+    MutationJournal(File file, Consumer<Mutation> onDurable) throws IOException
+    {
+        this.file = file;
+        this.onDurable = onDurable;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create directory " + parent);
+        }
+        recover();
+        this.recovered = new ArrayList<Mutation>(live.values());
+        this.channel = openChannel();
+        this.writer = new Thread(this::writeLoop, "image-search-outbox-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return 打开时日志中未确认的修改，按序号排列
+     */
+    List<Mutation> getRecovered()
+    {
+        return recovered;
+    }
+
+    /**
+     * @param compactThreshold 已确认的记录数达到此值且多于未确认的修改数时压缩日志，默认10000
+     */
+    void setCompactThreshold(long compactThreshold)
+    {
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    /**
+     * 追加一条修改
+     * @return 修改写入磁盘并fsync后完成；写入失败时以异常方式完成
+     */
+    CompletableFuture<Mutation> append(Mutation.Type type, String projectId, String instanceName, String path,
+            HashMap<String, String> tags)
+    {
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("journal is closed");
+            }
+            Mutation mutation = new Mutation(nextSequence++, type, projectId, instanceName, path, tags);
+            Record record = new Record(encode(mutation), mutation);
+            queue.add(record);
+            return record.future;
+        }
+    }
+
+    /**
+     * 确认一条修改已发送，之后它不再参与重放和压缩
+     */
+    void acknowledge(Mutation mutation)
+    {
+        if (null == live.remove(mutation.getSequence())) {
+            return;
+        }
+        synchronized (appendLock) {
+            if (!closed) {
+                queue.add(new Record(encodeAck(mutation.getSequence()), null));
+            }
+        }
+    }
+
+    /**
+     * @return 未确认的修改数
+     */
+    int getLiveCount()
+    {
+        return live.size();
+    }
+
+    long getCompactionCount()
+    {
+        return compactionCount;
+    }
+
+    long getSyncCount()
+    {
+        return syncCount;
+    }
+
+    /**
+     * @return 不影响已写入记录的错误次数：onDurable抛出异常或压缩失败
+     */
+    long getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return 最近一次错误，日志不可再写入时为导致失败的异常
+     */
+    Throwable getLastError()
+    {
+        IOException error = failure;
+        return null != error ? error : lastError;
+    }
+
+    /**
+     * 写完已提交的记录后关闭日志，未确认的修改留在日志中等待下次打开时重放
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing journal");
+        }
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    private void writeLoop()
+    {
+        List<Record> batch = new ArrayList<Record>();
+        while (true) {
+            Record first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (null == first) {
+                if (closed && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Record> batch)
+    {
+        boolean hasEntry = false;
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            Record record = batch.get(i);
+            buffers[i] = ByteBuffer.wrap(record.bytes);
+            hasEntry |= null != record.mutation;
+        }
+        IOException error = failure;
+        if (null == error) {
+            error = write(buffers, hasEntry);
+        }
+        if (null != error) {
+            for (Record record : batch) {
+                record.future.completeExceptionally(error);
+            }
+            return;
+        }
+        for (Record record : batch) {
+            if (null == record.mutation) {
+                deadRecords += 2;
+                continue;
+            }
+            live.put(record.mutation.getSequence(), record.mutation);
+            try {
+                onDurable.accept(record.mutation);
+            } catch (RuntimeException e) {
+                recordError(e);
+            }
+            record.future.complete(record.mutation);
+        }
+        if (deadRecords >= compactThreshold && deadRecords > live.size()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                if (!channel.isOpen()) {
+                    failure = e;
+                }
+                recordError(e);
+            }
+        }
+    }
+
+    /**
+     * 只在写线程上调用
+     */
+    private void recordError(Throwable e)
+    {
+        lastError = e;
+        errorCount++;
+    }
+
+    /**
+     * 写入一批记录，失败时截回写入前的长度，避免不完整的记录之后再追加新记录
+     * @return 写入失败的异常，成功时返回null
+     */
+    private IOException write(ByteBuffer[] buffers, boolean sync)
+    {
+        long start;
+        try {
+            start = channel.size();
+        } catch (IOException e) {
+            failure = e;
+            return e;
+        }
+        try {
+            writeFully(channel, buffers);
+            if (sync) {
+                channel.force(false);
+                syncCount++;
+            }
+            return null;
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+            } catch (IOException t) {
+                e.addSuppressed(t);
+                failure = e;
+            }
+            return e;
+        }
+    }
+
+    /**
+     * 在写线程上执行：把未确认的修改写入临时文件，fsync后原子替换日志文件
+     */
+    private void compact() throws IOException
+    {
+        File temp = new File(file.getPath() + ".compact");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+            for (Mutation mutation : live.values()) {
+                buffers.add(ByteBuffer.wrap(encode(mutation)));
+            }
+            writeFully(out, buffers.toArray(new ByteBuffer[buffers.size()]));
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // 替换失败时继续追加到原日志
+            channel = openChannel();
+        }
+        deadRecords = 0;
+        compactionCount++;
+    }
+
+    private FileChannel openChannel() throws IOException
+    {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException
+    {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * 读取日志，重建未确认的修改；遇到长度非法、内容不完整或校验失败的记录时，从该记录起截断
+     */
+    private void recover() throws IOException
+    {
+        if (!file.exists()) {
+            return;
+        }
+        long valid = 0;
+        long records = 0;
+        long maxSequence = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                int crc = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (crc != crc32(payload)) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte kind = record.readByte();
+                long sequence = record.readLong();
+                if (ENTRY == kind) {
+                    live.put(sequence, readMutation(sequence, record));
+                } else {
+                    live.remove(sequence);
+                }
+                maxSequence = Math.max(maxSequence, sequence);
+                valid += 8 + length;
+                records++;
+            }
+        } catch (EOFException e) {
+            // 末尾记录不完整
+        }
+        if (valid < file.length()) {
+            try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                truncate.truncate(valid);
+                truncate.force(true);
+            }
+        }
+        nextSequence = maxSequence + 1;
+        deadRecords = records - live.size();
+    }
+
+    private static byte[] encode(Mutation mutation)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(ENTRY);
+            out.writeLong(mutation.getSequence());
+            out.writeByte(mutation.getType().code);
+            writeString(out, mutation.getProjectId());
+            writeString(out, mutation.getInstanceName());
+            writeString(out, mutation.getPath());
+            HashMap<String, String> tags = mutation.tags();
+            out.writeInt(null == tags ? -1 : tags.size());
+            if (null != tags) {
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    writeString(out, tag.getKey());
+                    writeString(out, tag.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    private static byte[] encodeAck(long sequence)
+    {
+        ByteBuffer payload = ByteBuffer.allocate(9);
+        payload.put(ACK).putLong(sequence);
+        return frame(payload.array());
+    }
+
+    private static byte[] frame(byte[] payload)
+    {
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt(crc32(payload)).put(payload);
+        return record.array();
+    }
+
+    private static Mutation readMutation(long sequence, DataInputStream in) throws IOException
+    {
+        Mutation.Type type = Mutation.Type.valueOf(in.readByte());
+        String projectId = readString(in);
+        String instanceName = readString(in);
+        String path = readString(in);
+        int size = in.readInt();
+        HashMap<String, String> tags = null;
+        if (size >= 0) {
+            tags = new HashMap<String, String>();
+            for (int i = 0; i < size; i++) {
+                tags.put(readString(in), readString(in));
+            }
+        }
+        return new Mutation(sequence, type, projectId, instanceName, path, tags);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(null != value);
+        if (null != value) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static int crc32(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static final class Record
+    {
+        final byte[] bytes;
+        final Mutation mutation;
+        final CompletableFuture<Mutation> future = new CompletableFuture<Mutation>();
+
+        Record(byte[] bytes, Mutation mutation)
+        {
+            this.bytes = bytes;
+            this.mutation = mutation;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.huawei.imagesearch.outbox;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.model.ServiceResponse;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 持久化的修改发件箱：添加、删除图片和修改标签先写入本地日志，fsync后即确认给提交方，
+ * 之后由后台按最多parallelism个并发请求发送到服务，提交方不等待网络。
+ * 同一实例中同一路径的修改按提交顺序逐个发送；发送成功后写入确认记录，网络异常、限流和5xx按指数退避重试。
+ * 被服务以4xx或错误返回体明确拒绝、无法构造请求或重试maxAttempts次仍失败的修改交给{@link DeadLetterListener}
+ * 后同样确认，不再占用所属路径。进程重启后，用同一个日志文件创建发件箱即可重放未确认的修改。
+ * 修改至少发送一次，确认记录丢失时可能重复发送
+ */
+public class MutationOutbox implements Closeable
+{
+    private final ImageSearchService service;
+    private final MutationJournal journal;
+    private final ScheduledExecutorService scheduler;
+    private final LinkedHashMap<String, ArrayDeque<Mutation>> queues = new LinkedHashMap<String, ArrayDeque<Mutation>>();
+    private final Set<String> busy = new HashSet<String>();
+    private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final LongAdder journaledCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder deadLetterCount = new LongAdder();
+    private final int replayedCount;
+    private int running;
+    private int queued;
+    private volatile boolean closed;
+    private int parallelism = 4;
+    private long retryDelayMillis = 500;
+    private long maxRetryDelayMillis = 30000;
+    private int maxAttempts = 20;
+    private volatile DeadLetterListener deadLetterListener;
+
+    /**
+     * @param service 图像搜索服务
+     * @param journalFile 日志文件，不存在时创建；已存在时其中未确认的修改会被重放
+     * @throws IOException 读取日志失败
+     */
+    public MutationOutbox(ImageSearchService service, File journalFile) throws IOException
+    {
+        this.service = service;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-search-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+        this.journal = new MutationJournal(journalFile, mutation -> {
+            journaledCount.increment();
+            enqueue(mutation);
+        });
+        this.replayedCount = journal.getRecovered().size();
+        for (Mutation mutation : journal.getRecovered()) {
+            enqueue(mutation);
+        }
+    }
+
+    /**
+     * @param parallelism 同时进行的最大请求数，默认4
+     */
+    public synchronized void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param retryDelayMillis 首次重试的等待时间(毫秒)，之后每次翻倍，默认500
+     * @param maxRetryDelayMillis 重试等待时间上限(毫秒)，默认30000
+     */
+    public synchronized void setRetryDelay(long retryDelayMillis, long maxRetryDelayMillis)
+    {
+        this.retryDelayMillis = Math.max(1, retryDelayMillis);
+        this.maxRetryDelayMillis = Math.max(this.retryDelayMillis, maxRetryDelayMillis);
+    }
+
+    /**
+     * @param maxAttempts 一条修改最多发送的次数(含首次)，用尽后放弃，默认20
+     */
+    public synchronized void setMaxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * @param deadLetterListener 放弃发送修改时的回调，为null时只计数
+     */
+    public void setDeadLetterListener(DeadLetterListener deadLetterListener)
+    {
+        this.deadLetterListener = deadLetterListener;
+    }
+
+    /**
+     * @param compactThreshold 日志中已确认的记录数达到此值时压缩日志，默认10000
+     */
+    public void setCompactThreshold(long compactThreshold)
+    {
+        journal.setCompactThreshold(compactThreshold);
+    }
+
+    /**
+     * 通过URL添加图片，参数含义同{@link ImageSearchService#requestCreateIndexUrl}
+     * @return 修改写入日志后完成，不等待发送
+     */
+    public CompletableFuture<Mutation> createIndexUrl(String projectId, String instanceName, String path,
+            HashMap<String, String> tags)
+    {
+        return append(Mutation.Type.CREATE_INDEX_URL, projectId, instanceName, path, tags);
+    }
+
+    /**
+     * 删除图片，参数含义同{@link ImageSearchService#requestDeleteIndex}
+     * @return 修改写入日志后完成，不等待发送
+     */
+    public CompletableFuture<Mutation> deleteIndex(String projectId, String instanceName, String path)
+    {
+        return append(Mutation.Type.DELETE_INDEX, projectId, instanceName, path, null);
+    }
+
+    /**
+     * 修改图片标签，参数含义同{@link ImageSearchService#requestUpdateTags}
+     * @return 修改写入日志后完成，不等待发送
+     */
+    public CompletableFuture<Mutation> updateTags(String projectId, String instanceName, String path,
+            HashMap<String, String> tags)
+    {
+        return append(Mutation.Type.UPDATE_TAGS, projectId, instanceName, path, tags);
+    }
+
+    /**
+     * 等待已写入日志的修改全部发送完成
+     * @return 超时前全部完成时返回true
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (queued > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 停止发送并关闭日志，不等待未发送的修改，它们会在下次打开日志时重放；
+     * 需要先发送完时，在关闭前调用{@link #awaitDrained}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing outbox");
+        }
+        journal.close();
+    }
+
+    /**
+     * @return 本次打开时从日志中重放的修改数
+     */
+    public int getReplayedCount()
+    {
+        return replayedCount;
+    }
+
+    /**
+     * @return 本次打开后写入日志的修改数
+     */
+    public long getJournaledCount()
+    {
+        return journaledCount.sum();
+    }
+
+    /**
+     * @return 发送成功的修改数
+     */
+    public long getDeliveredCount()
+    {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * @return 被服务以4xx或错误返回体拒绝、或无法构造请求而不再重试的修改数
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return 重试次数用尽后放弃的修改数
+     */
+    public long getDeadLetterCount()
+    {
+        return deadLetterCount.sum();
+    }
+
+    /**
+     * @return 因网络异常、限流或5xx而重试的次数
+     */
+    public long getRetryCount()
+    {
+        return retryCount.sum();
+    }
+
+    /**
+     * @return 已写入日志、尚未发送完成的修改数
+     */
+    public synchronized int getPendingCount()
+    {
+        return queued;
+    }
+
+    /**
+     * @return 日志被压缩的次数
+     */
+    public long getCompactionCount()
+    {
+        return journal.getCompactionCount();
+    }
+
+    /**
+     * @return 日志fsync次数，一次fsync确认一批修改
+     */
+    public long getSyncCount()
+    {
+        return journal.getSyncCount();
+    }
+
+    /**
+     * @return 日志压缩失败和修改入队失败的次数，这些错误不影响已写入的修改，重启后仍会重放
+     */
+    public long getJournalErrorCount()
+    {
+        return journal.getErrorCount();
+    }
+
+    /**
+     * @return 日志最近一次的错误，没有错误时为null
+     */
+    public Throwable getJournalError()
+    {
+        return journal.getLastError();
+    }
+
+    private CompletableFuture<Mutation> append(Mutation.Type type, String projectId, String instanceName,
+            String path, HashMap<String, String> tags)
+    {
+        if (closed) {
+            throw new IllegalStateException("MutationOutbox is closed");
+        }
+        HashMap<String, String> copy = null == tags ? null : new HashMap<String, String>(tags);
+        return journal.append(type, projectId, instanceName, path, copy);
+    }
+
+    /**
+     * 修改写入日志后在日志写线程上按序号顺序调用，加入所属路径的队列
+     */
+    private void enqueue(Mutation mutation)
+    {
+        synchronized (this) {
+            ArrayDeque<Mutation> queue = queues.get(mutation.orderingKey());
+            if (null == queue) {
+                queue = new ArrayDeque<Mutation>();
+                queues.put(mutation.orderingKey(), queue);
+            }
+            queue.add(mutation);
+            queued++;
+        }
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch()
+    {
+        if (closed || !dispatchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this::dispatch);
+        } catch (RuntimeException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 发送各路径队首的修改，跳过仍有请求在进行或等待重试的路径，达到并发上限时等请求完成后再继续
+     */
+    private void dispatch()
+    {
+        dispatchScheduled.set(false);
+        List<Mutation> ready = new ArrayList<Mutation>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, ArrayDeque<Mutation>>> it = queues.entrySet().iterator();
+            while (running < parallelism && it.hasNext()) {
+                Map.Entry<String, ArrayDeque<Mutation>> entry = it.next();
+                if (busy.add(entry.getKey())) {
+                    running++;
+                    ready.add(entry.getValue().peek());
+                }
+            }
+        }
+        for (Mutation mutation : ready) {
+            send(mutation.orderingKey(), mutation);
+        }
+    }
+
+    private void send(final String key, final Mutation mutation)
+    {
+        CompletableFuture<ServiceResponse> future;
+        try {
+            future = request(mutation);
+        } catch (RuntimeException e) {
+            // 参数错误等同步异常重试也不会成功
+            rejectedCount.increment();
+            giveUp(key, mutation, null, e);
+            return;
+        }
+        future.whenComplete((response, error) -> {
+            if (closed) {
+                // 关闭后的失败可能由关闭引起，留在日志中等待重放
+                return;
+            }
+            if (null == error && response.isSuccess()) {
+                deliveredCount.increment();
+                journal.acknowledge(mutation);
+                complete(key);
+            } else if (null == error && isRejected(response)) {
+                rejectedCount.increment();
+                giveUp(key, mutation, response, null);
+            } else if (exhausted(key)) {
+                deadLetterCount.increment();
+                giveUp(key, mutation, response, error);
+            } else {
+                retryCount.increment();
+                retry(key);
+            }
+        });
+    }
+
+    /**
+     * 放弃发送：通知回调后确认修改，释放所属路径
+     */
+    private void giveUp(String key, Mutation mutation, ServiceResponse response, Throwable error)
+    {
+        DeadLetterListener listener = deadLetterListener;
+        if (null != listener) {
+            try {
+                listener.onDeadLetter(mutation, response, error);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        journal.acknowledge(mutation);
+        complete(key);
+    }
+
+    private CompletableFuture<ServiceResponse> request(Mutation mutation)
+    {
+        switch (mutation.getType()) {
+        case CREATE_INDEX_URL:
+            return service.createIndexUrlAsync(mutation.getProjectId(), mutation.getInstanceName(),
+                    mutation.getPath(), mutation.tags());
+        case DELETE_INDEX:
+            return service.deleteIndexAsync(mutation.getProjectId(), mutation.getInstanceName(), mutation.getPath());
+        default:
+            return service.updateTagsAsync(mutation.getProjectId(), mutation.getInstanceName(),
+                    mutation.getPath(), mutation.tags());
+        }
+    }
+
+    /**
+     * 4xx中除请求超时和限流外的错误、以及状态码成功但返回体带错误码的返回，重试也不会成功
+     */
+    private static boolean isRejected(ServiceResponse response)
+    {
+        int status = response.getStatusCode();
+        return status < 400 || status < 500 && status != 408 && status != 429;
+    }
+
+    private synchronized boolean exhausted(String key)
+    {
+        return attempts.getOrDefault(key, 0) + 1 >= maxAttempts;
+    }
+
+    private synchronized void complete(String key)
+    {
+        ArrayDeque<Mutation> queue = queues.get(key);
+        queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        }
+        busy.remove(key);
+        attempts.remove(key);
+        running--;
+        queued--;
+        if (0 == queued) {
+            notifyAll();
+        }
+        scheduleDispatch();
+    }
+
+    /**
+     * 重试等待期间释放并发名额，但路径保持占用，保证同一路径的后续修改不会先于它发送
+     */
+    private synchronized void retry(final String key)
+    {
+        running--;
+        int attempt = attempts.merge(key, 1, Integer::sum);
+        long delay = Math.min(maxRetryDelayMillis, retryDelayMillis << Math.min(attempt - 1, 20));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        scheduleDispatch();
+        if (closed) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    busy.remove(key);
+                }
+                dispatch();
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // 已关闭
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.huawei.imagesearch.pipeline;
+
+import com.huawei.imagesearch.util.AccessServiceUtil;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * AK/SK方式鉴权：用{@link AccessServiceUtil}中只创建一次的签名器对请求签名
+ */
+public class AkSkAuthenticator implements RequestAuthenticator
+{
+    private static final Header[] HEADERS = new Header[]{TokenAuthenticator.CONTENT_TYPE};
+
+    private final AccessServiceUtil accessServiceUtil;
+
+    public AkSkAuthenticator(AccessServiceUtil accessServiceUtil)
+    {
+        this.accessServiceUtil = accessServiceUtil;
+    }
+
+    @Override
+    public HttpUriRequest authenticate(ApiRequest request, String url) throws Exception
+    {
+        return accessServiceUtil.createSignedRequest(request.getHttpMethod(), url, HEADERS, request.getEntity());
+    }
+
+    public AccessServiceUtil getAccessServiceUtil()
+    {
+        return accessServiceUtil;
+    }
+}
@@ -0,0 +1,105 @@
+package com.huawei.imagesearch.pipeline;
+
+import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.imagesearch.OperationType;
+import org.apache.http.HttpEntity;
+
+/**
+ * 经过请求管道的一次接口调用：接口类型、请求方法、地址和请求body，鉴权信息在管道末端添加
+ */
+public final class ApiRequest
+{
+    private final OperationType operation;
+    private final HttpMethodName httpMethod;
+    private final String url;
+    private final HttpEntity entity;
+    private final RequestRoute route;
+
+    public ApiRequest(OperationType operation, HttpMethodName httpMethod, String url, HttpEntity entity)
+    {
+        this(operation, httpMethod, url, entity, null);
+    }
+
+    private ApiRequest(OperationType operation, HttpMethodName httpMethod, String url, HttpEntity entity,
+            RequestRoute route)
+    {
+        this.operation = operation;
+        this.httpMethod = httpMethod;
+        this.url = url;
+        this.entity = entity;
+        this.route = route;
+    }
+
+    /**
+     * @param route 路由选中的目标
+     * @return 发往route的同一调用，route为null时返回当前对象
+     */
+    public ApiRequest withRoute(RequestRoute route)
+    {
+        return null == route ? this : new ApiRequest(operation, httpMethod, url, entity, route);
+    }
+
+    public OperationType getOperation()
+    {
+        return operation;
+    }
+
+    public HttpMethodName getHttpMethod()
+    {
+        return httpMethod;
+    }
+
+    /**
+     * @return 调用构造时的地址，路由后实际发送的地址见{@link #getTargetUrl}
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * @return 路由选中的目标，未经路由时为null
+     */
+    public RequestRoute getRoute()
+    {
+        return route;
+    }
+
+    /**
+     * @return 实际发送的地址
+     */
+    public String getTargetUrl()
+    {
+        return null == route ? url : route.getUrl();
+    }
+
+    /**
+     * @return 请求body，GET请求为null
+     */
+    public HttpEntity getEntity()
+    {
+        return entity;
+    }
+
+    /**
+     * @return 请求可能已被处理时能否安全重试，见{@link OperationType#isIdempotent}
+     */
+    public boolean isIdempotent()
+    {
+        return operation.isIdempotent(httpMethod);
+    }
+
+    /**
+     * @return 搜索、查询等只读接口或GET请求
+     */
+    public boolean isRead()
+    {
+        return operation.isReadOnly() || HttpMethodName.GET == httpMethod;
+    }
+
+    @Override
+    public String toString()
+    {
+        return operation + " " + httpMethod + " " + getTargetUrl();
+    }
+}
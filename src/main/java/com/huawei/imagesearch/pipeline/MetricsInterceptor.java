@@ -0,0 +1,43 @@
+package com.huawei.imagesearch.pipeline;
+
+import com.huawei.imagesearch.metrics.Metrics;
+import org.apache.http.client.ResponseHandler;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 统计每次接口调用(含重试)的总耗时和结果，未开启统计时直接交给下一环节
+ */
+public class MetricsInterceptor implements RequestInterceptor
+{
+    @Override
+    public <T> T intercept(ApiRequest request, ResponseHandler<? extends T> handler, Chain chain) throws Exception
+    {
+        if (!Metrics.isEnabled()) {
+            return chain.proceed(request, handler);
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = chain.proceed(request, handler);
+            success = true;
+            return result;
+        } finally {
+            Metrics.getListener().onOperation(request.getOperation(), System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> interceptAsync(ApiRequest request, ResponseHandler<? extends T> handler,
+            AsyncChain chain)
+    {
+        if (!Metrics.isEnabled()) {
+            return chain.proceed(request, handler);
+        }
+        final long start = System.nanoTime();
+        CompletableFuture<T> future = chain.proceed(request, handler);
+        future.whenComplete((value, error) -> Metrics.getListener()
+                .onOperation(request.getOperation(), System.nanoTime() - start, null == error));
+        return future;
+    }
+}
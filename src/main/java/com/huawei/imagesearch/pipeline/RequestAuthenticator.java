@@ -0,0 +1,17 @@
+package com.huawei.imagesearch.pipeline;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * 请求管道的鉴权环节：在发送前由最终地址构造带鉴权信息的请求，重试和多区域路由时每次发送都会重新调用
+ */
+public interface RequestAuthenticator
+{
+    /**
+     * @param request 本次调用
+     * @param url 实际发送的地址，开启多区域路由时可能与request中的地址不同
+     * @return 可直接发送的请求
+     * @throws Exception 获取Token或签名失败
+     */
+    HttpUriRequest authenticate(ApiRequest request, String url) throws Exception;
+}
@@ -0,0 +1,51 @@
+package com.huawei.imagesearch.pipeline;
+
+import org.apache.http.client.ResponseHandler;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 请求管道中的拦截器，可在请求前后添加处理，如统计、重试、日志；
+ * 同步和异步调用分别经过intercept和interceptAsync，默认直接交给下一环节
+ */
+public interface RequestInterceptor
+{
+    /**
+     * 处理同步调用
+     * @param request 本次调用
+     * @param handler 返回处理器
+     * @param chain 管道的下一环节，可调用多次(重试)或不调用(直接返回)
+     * @return handler的处理结果
+     * @throws Exception 网络、鉴权或handler处理异常
+     */
+    default <T> T intercept(ApiRequest request, ResponseHandler<? extends T> handler, Chain chain) throws Exception
+    {
+        return chain.proceed(request, handler);
+    }
+
+    /**
+     * 处理异步调用，不能阻塞调用线程
+     * @return 调用失败时以异常方式完成
+     */
+    default <T> CompletableFuture<T> interceptAsync(ApiRequest request, ResponseHandler<? extends T> handler,
+            AsyncChain chain)
+    {
+        return chain.proceed(request, handler);
+    }
+
+    /**
+     * 同步调用的下一环节
+     */
+    interface Chain
+    {
+        <T> T proceed(ApiRequest request, ResponseHandler<? extends T> handler) throws Exception;
+    }
+
+    /**
+     * 异步调用的下一环节
+     */
+    interface AsyncChain
+    {
+        <T> CompletableFuture<T> proceed(ApiRequest request, ResponseHandler<? extends T> handler);
+    }
+}
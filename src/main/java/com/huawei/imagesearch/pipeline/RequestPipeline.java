@@ -0,0 +1,83 @@
+package com.huawei.imagesearch.pipeline;
+
+import org.apache.http.client.ResponseHandler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 请求管道：调用依次经过各拦截器，最后交给transport发送。管道创建后不可修改，配置变化时创建新的管道
+ */
+public final class RequestPipeline
+{
+    private final RequestInterceptor[] interceptors;
+    private final RequestInterceptor.Chain transport;
+    private final RequestInterceptor.AsyncChain asyncTransport;
+
+    /**
+     * @param interceptors 拦截器，靠前的在外层
+     * @param transport 同步发送请求的末端
+     * @param asyncTransport 异步发送请求的末端
+     */
+    public RequestPipeline(List<RequestInterceptor> interceptors, RequestInterceptor.Chain transport,
+            RequestInterceptor.AsyncChain asyncTransport)
+    {
+        this.interceptors = interceptors.toArray(new RequestInterceptor[interceptors.size()]);
+        this.transport = transport;
+        this.asyncTransport = asyncTransport;
+    }
+
+    public <T> T execute(ApiRequest request, ResponseHandler<? extends T> handler) throws Exception
+    {
+        return new SyncStep(0).proceed(request, handler);
+    }
+
+    public <T> CompletableFuture<T> executeAsync(ApiRequest request, ResponseHandler<? extends T> handler)
+    {
+        return new AsyncStep(0).proceed(request, handler);
+    }
+
+    private final class SyncStep implements RequestInterceptor.Chain
+    {
+        private final int index;
+
+        SyncStep(int index)
+        {
+            this.index = index;
+        }
+
+        @Override
+        public <T> T proceed(ApiRequest request, ResponseHandler<? extends T> handler) throws Exception
+        {
+            if (index == interceptors.length) {
+                return transport.proceed(request, handler);
+            }
+            return interceptors[index].intercept(request, handler, new SyncStep(index + 1));
+        }
+    }
+
+    private final class AsyncStep implements RequestInterceptor.AsyncChain
+    {
+        private final int index;
+
+        AsyncStep(int index)
+        {
+            this.index = index;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> proceed(ApiRequest request, ResponseHandler<? extends T> handler)
+        {
+            if (index == interceptors.length) {
+                return asyncTransport.proceed(request, handler);
+            }
+            try {
+                return interceptors[index].interceptAsync(request, handler, new AsyncStep(index + 1));
+            } catch (RuntimeException e) {
+                CompletableFuture<T> future = new CompletableFuture<T>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.huawei.imagesearch.pipeline;
+
+import org.apache.http.client.ResponseHandler;
+
+/**
+ * 路由为一次调用选中的目标：发往目标的地址和目标使用的鉴权方式，并记录每次发送的结果
+ */
+public interface RequestRoute
+{
+    /**
+     * @return 发往目标的完整请求地址
+     */
+    String getUrl();
+
+    /**
+     * @return 目标使用的鉴权方式
+     */
+    RequestAuthenticator getAuthenticator();
+
+    /**
+     * 开始一次发送，对冲时同一目标可能发送多次
+     * @param handler 实际的返回处理器
+     * @return 记录状态码和耗时的返回处理器
+     */
+    <T> Tracked<T> track(ResponseHandler<? extends T> handler);
+
+    /**
+     * 跟踪一次发送的返回处理器
+     */
+    interface Tracked<T> extends ResponseHandler<T>
+    {
+        /**
+         * 发送未得到返回时调用，取消不计为失败
+         */
+        void onFailure(Throwable e);
+    }
+}
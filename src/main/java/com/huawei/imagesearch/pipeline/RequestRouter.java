@@ -0,0 +1,13 @@
+package com.huawei.imagesearch.pipeline;
+
+/**
+ * 请求管道的路由环节：为一次调用选择实际发往的目标，重试时每次尝试都会重新选择
+ */
+public interface RequestRouter
+{
+    /**
+     * @param request 本次调用
+     * @return 选中的目标，不需要路由时返回null
+     */
+    RequestRoute route(ApiRequest request);
+}
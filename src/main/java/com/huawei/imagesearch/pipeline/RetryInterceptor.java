@@ -0,0 +1,73 @@
+package com.huawei.imagesearch.pipeline;
+
+import com.huawei.imagesearch.retry.RetryExecutor;
+import org.apache.http.client.ResponseHandler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按{@link RetryExecutor}的策略重试管道的后续环节，每次重试都会重新经过后续拦截器和鉴权；
+ * 设置路由时每次尝试前重新选择目标，熔断按该次尝试实际发往的终端节点判断
+ */
+public class RetryInterceptor implements RequestInterceptor
+{
+    private final RetryExecutor retryExecutor;
+    private final RequestRouter router;
+
+    public RetryInterceptor(RetryExecutor retryExecutor)
+    {
+        this(retryExecutor, null);
+    }
+
+    /**
+     * @param retryExecutor 重试策略
+     * @param router 路由，传null时请求发往调用中的地址
+     */
+    public RetryInterceptor(RetryExecutor retryExecutor, RequestRouter router)
+    {
+        this.retryExecutor = retryExecutor;
+        this.router = router;
+    }
+
+    @Override
+    public <T> T intercept(ApiRequest request, ResponseHandler<? extends T> handler, Chain chain) throws Exception
+    {
+        if (null == router) {
+            return retryExecutor.execute(request.getUrl(), request.isIdempotent(), handler,
+                    h -> chain.proceed(request, h));
+        }
+        final AtomicReference<ApiRequest> routed = new AtomicReference<ApiRequest>(request);
+        return retryExecutor.execute(() -> route(request, routed), request.isIdempotent(), handler,
+                h -> chain.proceed(routed.get(), h));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> interceptAsync(ApiRequest request, ResponseHandler<? extends T> handler,
+            AsyncChain chain)
+    {
+        if (null == router) {
+            return retryExecutor.executeAsync(request.getUrl(), request.isIdempotent(), handler,
+                    h -> chain.proceed(request, h));
+        }
+        final AtomicReference<ApiRequest> routed = new AtomicReference<ApiRequest>(request);
+        return retryExecutor.executeAsync(() -> route(request, routed), request.isIdempotent(), handler,
+                h -> chain.proceed(routed.get(), h));
+    }
+
+    /**
+     * 为下一次尝试选择目标，各次尝试依次进行，由routed传给随后的发送
+     * @return 本次尝试实际发往的地址
+     */
+    private String route(ApiRequest request, AtomicReference<ApiRequest> routed)
+    {
+        ApiRequest next = request.withRoute(router.route(request));
+        routed.set(next);
+        return next.getTargetUrl();
+    }
+
+    public RetryExecutor getRetryExecutor()
+    {
+        return retryExecutor;
+    }
+}
@@ -0,0 +1,145 @@
+package com.huawei.imagesearch.pipeline;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预先拼接的接口地址：每个项目、实例的地址只拼接一次，之后的调用直接复用，不再每次格式化
+ */
+public final class ServiceUrls
+{
+    private static final int MAX_CACHED = 1024;
+
+    private final String endpoint;
+    private final ConcurrentHashMap<String, ProjectUrls> projects = new ConcurrentHashMap<String, ProjectUrls>();
+
+    /**
+     * @param endpoint 服务地址，如https://imagesearch.cn-north-4.myhuaweicloud.com
+     */
+    public ServiceUrls(String endpoint)
+    {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint()
+    {
+        return endpoint;
+    }
+
+    /**
+     * @return 创建实例的地址 {endpoint}/v1/{projectId}/service
+     */
+    public String service(String projectId)
+    {
+        return project(projectId).service;
+    }
+
+    /**
+     * @return 跨实例搜索的地址 {endpoint}/v1/{projectId}/image/cross-search
+     */
+    public String crossSearch(String projectId)
+    {
+        return project(projectId).crossSearch;
+    }
+
+    /**
+     * @return 查询、删除实例的地址 {endpoint}/v1/{projectId}/service/{instanceName}
+     */
+    public String service(String projectId, String instanceName)
+    {
+        return instance(projectId, instanceName).service;
+    }
+
+    /**
+     * @return 添加、删除图片和修改标签的地址 {endpoint}/v1/{projectId}/{instanceName}/image
+     */
+    public String image(String projectId, String instanceName)
+    {
+        return instance(projectId, instanceName).image;
+    }
+
+    /**
+     * @return 相似图像搜索的地址 {endpoint}/v1/{projectId}/{instanceName}/image/search
+     */
+    public String imageSearch(String projectId, String instanceName)
+    {
+        return instance(projectId, instanceName).search;
+    }
+
+    /**
+     * @return 查询图片的地址 {endpoint}/v1/{projectId}/{instanceName}/image/check
+     */
+    public String imageCheck(String projectId, String instanceName)
+    {
+        return instance(projectId, instanceName).check;
+    }
+
+    private ProjectUrls project(String projectId)
+    {
+        if (null == projectId) {
+            return new ProjectUrls(endpoint, null);
+        }
+        ProjectUrls urls = projects.get(projectId);
+        if (null == urls) {
+            if (projects.size() >= MAX_CACHED) {
+                projects.clear();
+            }
+            urls = new ProjectUrls(endpoint, projectId);
+            ProjectUrls existing = projects.putIfAbsent(projectId, urls);
+            if (null != existing) {
+                urls = existing;
+            }
+        }
+        return urls;
+    }
+
+    private InstanceUrls instance(String projectId, String instanceName)
+    {
+        ProjectUrls project = project(projectId);
+        if (null == instanceName) {
+            return new InstanceUrls(project.prefix, null);
+        }
+        InstanceUrls urls = project.instances.get(instanceName);
+        if (null == urls) {
+            if (project.instances.size() >= MAX_CACHED) {
+                project.instances.clear();
+            }
+            urls = new InstanceUrls(project.prefix, instanceName);
+            InstanceUrls existing = project.instances.putIfAbsent(instanceName, urls);
+            if (null != existing) {
+                urls = existing;
+            }
+        }
+        return urls;
+    }
+
+    private static final class ProjectUrls
+    {
+        final String prefix;
+        final String service;
+        final String crossSearch;
+        final ConcurrentHashMap<String, InstanceUrls> instances = new ConcurrentHashMap<String, InstanceUrls>();
+
+        ProjectUrls(String endpoint, String projectId)
+        {
+            this.prefix = endpoint + "/v1/" + projectId;
+            this.service = prefix + "/service";
+            this.crossSearch = prefix + "/image/cross-search";
+        }
+    }
+
+    private static final class InstanceUrls
+    {
+        final String service;
+        final String image;
+        final String search;
+        final String check;
+
+        InstanceUrls(String projectPrefix, String instanceName)
+        {
+            this.service = projectPrefix + "/service/" + instanceName;
+            this.image = projectPrefix + "/" + instanceName + "/image";
+            this.search = image + "/search";
+            this.check = image + "/check";
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.huawei.imagesearch.pipeline;
+
+import com.huawei.imagesearch.TokenProvider;
+import com.huawei.imagesearch.util.HttpClientUtils;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Token方式鉴权：添加X-Auth-Token头；Header数组按Token缓存，Token不变时每次请求复用同一个数组
+ */
+public class TokenAuthenticator implements RequestAuthenticator
+{
+    static final Header CONTENT_TYPE = new BasicHeader("Content-Type", "application/json");
+
+    private final TokenProvider tokenProvider;
+    private volatile TokenHeaders cached;
+
+    /**
+     * @param tokenProvider 每次请求时从中获取当前Token
+     */
+    public TokenAuthenticator(TokenProvider tokenProvider)
+    {
+        this.tokenProvider = tokenProvider;
+    }
+
+    @Override
+    public HttpUriRequest authenticate(ApiRequest request, String url) throws Exception
+    {
+        Header[] headers = headers(tokenProvider.getToken());
+        switch (request.getHttpMethod()) {
+            case POST:
+                return HttpClientUtils.createPost(url, headers, request.getEntity());
+            case PUT:
+                return HttpClientUtils.createPut(url, headers, request.getEntity());
+            case DELETE:
+                return HttpClientUtils.createDelete(url, headers, request.getEntity());
+            case GET:
+                return HttpClientUtils.createGet(url, headers);
+            default:
+                throw new IllegalArgumentException("Unsupported HTTP method: " + request.getHttpMethod());
+        }
+    }
+
+    /**
+     * 请求构造时会复制Header数组，因此可以共享
+     */
+    private Header[] headers(String token)
+    {
+        TokenHeaders current = this.cached;
+        if (null == current || !current.token.equals(token)) {
+            current = new TokenHeaders(token);
+            this.cached = current;
+        }
+        return current.headers;
+    }
+
+    private static final class TokenHeaders
+    {
+        final String token;
+        final Header[] headers;
+
+        TokenHeaders(String token)
+        {
+            this.token = String.valueOf(token);
+            this.headers = new Header[]{new BasicHeader("X-Auth-Token", token), CONTENT_TYPE};
+        }
+    }
+}
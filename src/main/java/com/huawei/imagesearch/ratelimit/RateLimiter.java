@@ -0,0 +1,131 @@
+package com.huawei.imagesearch.ratelimit;
+
+import com.huawei.imagesearch.OperationType;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按接口类型分别限流，与账号的接口配额对应；未设置速率的接口不限流。
+ * 可由多个服务对象及大量线程共享，获取令牌无锁
+ */
+public class RateLimiter
+{
+    private static final OperationType[] OPERATIONS = OperationType.values();
+
+    private final AtomicReferenceArray<TokenBucket> buckets = new AtomicReferenceArray<TokenBucket>(OPERATIONS.length);
+    private final AtomicLongArray throttled = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * 设置接口的速率
+     * @param operation 接口类型
+     * @param permitsPerSecond 每秒允许的请求数
+     * @param burst 允许的突发请求数
+     */
+    public void setRate(OperationType operation, double permitsPerSecond, int burst)
+    {
+        buckets.set(operation.ordinal(), new TokenBucket(permitsPerSecond, burst));
+    }
+
+    /**
+     * 取消接口的限流
+     */
+    public void removeRate(OperationType operation)
+    {
+        buckets.set(operation.ordinal(), null);
+    }
+
+    /**
+     * 同步获取令牌，必要时在当前线程等待
+     * @param operation 接口类型
+     * @throws InterruptedIOException 等待时被中断
+     */
+    public void acquire(OperationType operation) throws InterruptedIOException
+    {
+        long wait = reserve(operation);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for rate limit");
+            }
+        }
+    }
+
+    /**
+     * 异步获取令牌，不阻塞调用线程
+     * @param operation 接口类型
+     * @return 令牌可用时完成的future，无需等待时已完成
+     */
+    public CompletableFuture<Void> acquireAsync(OperationType operation)
+    {
+        long wait = reserve(operation);
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        SchedulerHolder.SCHEDULER.schedule(() -> future.complete(null), wait, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    /**
+     * 令牌可立即使用时获取
+     * @return 获取成功或该接口不限流时返回true
+     */
+    public boolean tryAcquire(OperationType operation)
+    {
+        TokenBucket bucket = buckets.get(operation.ordinal());
+        if (null == bucket || bucket.tryAcquire()) {
+            return true;
+        }
+        throttled.incrementAndGet(operation.ordinal());
+        return false;
+    }
+
+    private long reserve(OperationType operation)
+    {
+        TokenBucket bucket = buckets.get(operation.ordinal());
+        if (null == bucket) {
+            return 0;
+        }
+        long wait = bucket.reserve();
+        if (wait > 0) {
+            throttled.incrementAndGet(operation.ordinal());
+            throttledNanos.addAndGet(wait);
+        }
+        return wait;
+    }
+
+    /**
+     * @return 接口因限流而等待或被拒绝的次数
+     */
+    public long getThrottledCount(OperationType operation)
+    {
+        return throttled.get(operation.ordinal());
+    }
+
+    /**
+     * @return 所有接口因限流累计等待的时间(毫秒)
+     */
+    public long getThrottledMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    private static class SchedulerHolder
+    {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-search-rate-limiter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.huawei.imagesearch.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶。状态只有一个AtomicLong：下一个令牌可用的时间点(纳秒)，获取令牌即通过CAS将其后移一个间隔；
+ * 空闲期间累积的令牌最多为burst个，通过将该时间点最多回退(burst - 1)个间隔实现
+ */
+public class TokenBucket
+{
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond 每秒产生的令牌数
+     * @param burst 最多累积的令牌数，即允许的突发请求数
+     */
+    public TokenBucket(double permitsPerSecond, int burst)
+    {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.nextFreeNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * 预定一个令牌，立即返回
+     * @return 令牌可用前需要等待的时间(纳秒)，小于等于0时可立即使用
+     */
+    public long reserve()
+    {
+        while (true) {
+            long next = nextFreeNanos.get();
+            long now = System.nanoTime();
+            long start = Math.max(next, now - burstNanos);
+            if (nextFreeNanos.compareAndSet(next, start + intervalNanos)) {
+                return start - now;
+            }
+        }
+    }
+
+    /**
+     * 令牌可立即使用时获取
+     * @return 获取成功返回true，不等待、不预定
+     */
+    public boolean tryAcquire()
+    {
+        while (true) {
+            long next = nextFreeNanos.get();
+            long now = System.nanoTime();
+            long start = Math.max(next, now - burstNanos);
+            if (start > now) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(next, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 获取一个令牌，必要时在当前线程等待
+     * @return 等待的时间(纳秒)
+     * @throws InterruptedException 等待时被中断
+     */
+    public long acquire() throws InterruptedException
+    {
+        long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return Math.max(0, wait);
+    }
+
+    /**
+     * @return 每秒产生的令牌数
+     */
+    public double getRate()
+    {
+        return TimeUnit.SECONDS.toNanos(1) / (double) intervalNanos;
+    }
+}
@@ -0,0 +1,90 @@
+package com.huawei.imagesearch.retry;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个终端节点的熔断器：连续失败达到阈值后熔断，熔断期间请求立即失败；
+ * 熔断时间过后只放行一个探测请求，探测成功则恢复，失败则重新熔断
+ */
+public class CircuitBreaker
+{
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final long CLOSED = -1;
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong(CLOSED);
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    public CircuitBreaker(String endpoint, int failureThreshold, long openMillis)
+    {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 发送请求前调用
+     * @return 允许发送时返回true，熔断中返回false
+     */
+    public boolean tryAcquire()
+    {
+        long opened = openedAt.get();
+        if (CLOSED == opened) {
+            return true;
+        }
+        if (System.currentTimeMillis() - opened < openMillis) {
+            return false;
+        }
+        return probing.compareAndSet(false, true);
+    }
+
+    public void onSuccess()
+    {
+        consecutiveFailures.set(0);
+        openedAt.set(CLOSED);
+        probing.set(false);
+    }
+
+    public void onFailure()
+    {
+        if (CLOSED != openedAt.get()) {
+            // 探测失败，重新开始熔断计时
+            openedAt.set(System.currentTimeMillis());
+            probing.set(false);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.compareAndSet(CLOSED, System.currentTimeMillis());
+        }
+    }
+
+    public State getState()
+    {
+        long opened = openedAt.get();
+        if (CLOSED == opened) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() - opened < openMillis ? State.OPEN : State.HALF_OPEN;
+    }
+
+    public String getEndpoint()
+    {
+        return endpoint;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CircuitBreaker[endpoint=" + endpoint + ", state=" + getState()
+                + ", consecutiveFailures=" + consecutiveFailures.get() + "]";
+    }
+}
@@ -0,0 +1,16 @@
+package com.huawei.imagesearch.retry;
+
+import java.io.IOException;
+
+/**
+ * 终端节点处于熔断状态，请求未发送
+ */
+public class CircuitBreakerOpenException extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String endpoint)
+    {
+        super("circuit breaker open for " + endpoint);
+    }
+}
@@ -0,0 +1,61 @@
+package com.huawei.imagesearch.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算：每个请求存入ratio个令牌，每次重试取出1个令牌，令牌不足时不再重试，
+ * 避免服务整体故障时重试成倍放大请求量。令牌以千分之一为单位保存在AtomicLong中，无锁
+ */
+public class RetryBudget
+{
+    private static final long SCALE = 1000;
+
+    private final AtomicLong balance;
+    private final long deposit;
+    private final long max;
+
+    public RetryBudget(double ratio, int initialTokens, int maxTokens)
+    {
+        this.deposit = (long) (ratio * SCALE);
+        this.max = maxTokens * SCALE;
+        this.balance = new AtomicLong(Math.min(initialTokens, maxTokens) * SCALE);
+    }
+
+    /**
+     * 记录一次请求(不含重试)
+     */
+    public void onRequest()
+    {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(max, current + deposit)));
+    }
+
+    /**
+     * 尝试取出一次重试所需的令牌
+     * @return 预算充足时返回true
+     */
+    public boolean tryAcquire()
+    {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return 当前可用的重试次数
+     */
+    public double getAvailable()
+    {
+        return balance.get() / (double) SCALE;
+    }
+}
@@ -0,0 +1,157 @@
+package com.huawei.imagesearch.retry;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 重试、重试预算及熔断配置，由{@link RetryExecutor}使用
+ */
+public class RetryPolicy
+{
+    private int maxAttempts = 3;
+    private long baseDelayMillis = 100;
+    private long maxDelayMillis = 5000;
+    private long maxRetryAfterMillis = 30000;
+    private Set<Integer> retryableStatusCodes = new HashSet<Integer>();
+    private double retryBudgetRatio = 0.2;
+    private int retryBudgetInitialTokens = 10;
+    private int retryBudgetMaxTokens = 100;
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerOpenMillis = 30000;
+
+    public RetryPolicy()
+    {
+        Collections.addAll(retryableStatusCodes, 429, 500, 502, 503, 504);
+    }
+
+    /**
+     * 包括首次请求在内的最大尝试次数，默认3，为1时不重试
+     */
+    public int getMaxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 指数退避的基础时间(毫秒)，第n次重试前等待[0, baseDelayMillis * 2^(n-1))内的随机时间，默认100
+     */
+    public long getBaseDelayMillis()
+    {
+        return baseDelayMillis;
+    }
+
+    public void setBaseDelayMillis(long baseDelayMillis)
+    {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    /**
+     * 单次退避的最长时间(毫秒)，默认5000
+     */
+    public long getMaxDelayMillis()
+    {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis)
+    {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * 服务通过Retry-After要求的等待时间超过此值(毫秒)时不再重试，默认30000
+     */
+    public long getMaxRetryAfterMillis()
+    {
+        return maxRetryAfterMillis;
+    }
+
+    public void setMaxRetryAfterMillis(long maxRetryAfterMillis)
+    {
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+    }
+
+    /**
+     * 可重试的HTTP状态码，默认429/500/502/503/504；其中429对所有请求重试，其余仅对幂等请求重试
+     */
+    public Set<Integer> getRetryableStatusCodes()
+    {
+        return retryableStatusCodes;
+    }
+
+    public void setRetryableStatusCodes(Set<Integer> retryableStatusCodes)
+    {
+        this.retryableStatusCodes = retryableStatusCodes;
+    }
+
+    /**
+     * 每个请求为重试预算增加的令牌数，默认0.2，即长期来看重试不超过请求数的20%
+     */
+    public double getRetryBudgetRatio()
+    {
+        return retryBudgetRatio;
+    }
+
+    public void setRetryBudgetRatio(double retryBudgetRatio)
+    {
+        this.retryBudgetRatio = retryBudgetRatio;
+    }
+
+    /**
+     * 重试预算的初始令牌数，默认10
+     */
+    public int getRetryBudgetInitialTokens()
+    {
+        return retryBudgetInitialTokens;
+    }
+
+    public void setRetryBudgetInitialTokens(int retryBudgetInitialTokens)
+    {
+        this.retryBudgetInitialTokens = retryBudgetInitialTokens;
+    }
+
+    /**
+     * 重试预算最多累积的令牌数，默认100
+     */
+    public int getRetryBudgetMaxTokens()
+    {
+        return retryBudgetMaxTokens;
+    }
+
+    public void setRetryBudgetMaxTokens(int retryBudgetMaxTokens)
+    {
+        this.retryBudgetMaxTokens = retryBudgetMaxTokens;
+    }
+
+    /**
+     * 同一终端节点连续失败达到此次数后熔断，默认5
+     */
+    public int getCircuitBreakerFailureThreshold()
+    {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold)
+    {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * 熔断持续时间(毫秒)，之后放行一个探测请求，默认30000
+     */
+    public long getCircuitBreakerOpenMillis()
+    {
+        return circuitBreakerOpenMillis;
+    }
+
+    public void setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis)
+    {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+}
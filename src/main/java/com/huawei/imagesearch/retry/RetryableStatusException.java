@@ -0,0 +1,35 @@
+package com.huawei.imagesearch.retry;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * 服务返回了可重试的状态码，持有已缓存body的原始返回，重试用尽时交给原处理器处理
+ */
+public class RetryableStatusException extends HttpResponseException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient HttpResponse response;
+    private final long retryAfterMillis;
+
+    public RetryableStatusException(HttpResponse response, long retryAfterMillis)
+    {
+        super(response.getStatusLine().getStatusCode(), String.valueOf(response.getStatusLine()));
+        this.response = response;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public HttpResponse getResponse()
+    {
+        return response;
+    }
+
+    /**
+     * @return Retry-After要求的等待时间(毫秒)，未返回时为-1
+     */
+    public long getRetryAfterMillis()
+    {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,243 @@
+package com.huawei.imagesearch.routing;
+
+import com.huawei.imagesearch.pipeline.ApiRequest;
+import com.huawei.imagesearch.pipeline.RequestAuthenticator;
+import com.huawei.imagesearch.pipeline.RequestRoute;
+import com.huawei.imagesearch.pipeline.RequestRouter;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多区域终端节点路由：按各节点耗时和错误率的移动平均，把每个读请求发往当前最好的健康节点；
+ * 节点连续失败时被摘除，请求自动转到其他区域，到期后再探测恢复。
+ * 另有一小部分请求随机发往其他健康节点，使各节点的估计保持更新。
+ * 适用于在多个区域保存了相同实例的场景，请求按选中区域的项目ID和鉴权方式重新构造
+ */
+public class EndpointRouter implements RequestRouter
+{
+    private final List<RegionEndpoint> endpoints;
+    private volatile double alpha = 0.2;
+    private volatile double errorPenalty = 10;
+    private volatile double exploreRatio = 0.02;
+    private volatile int failureThreshold = 3;
+    private volatile long ejectMillis = 10000;
+
+    /**
+     * @param endpoints 各区域的终端节点，节点记录自身的统计状态，不应在多个路由间共用
+     */
+    public EndpointRouter(List<RegionEndpoint> endpoints)
+    {
+        if (null == endpoints || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("endpoints must not be empty");
+        }
+        this.endpoints = Collections.unmodifiableList(new ArrayList<RegionEndpoint>(endpoints));
+    }
+
+    public List<RegionEndpoint> getEndpoints()
+    {
+        return endpoints;
+    }
+
+    /**
+     * @param alpha 移动平均中新样本的权重，默认0.2
+     */
+    public void setAlpha(double alpha)
+    {
+        this.alpha = alpha;
+    }
+
+    /**
+     * @param errorPenalty 错误率的惩罚系数，得分为耗时*(1+系数*错误率)，默认10
+     */
+    public void setErrorPenalty(double errorPenalty)
+    {
+        this.errorPenalty = errorPenalty;
+    }
+
+    /**
+     * @param exploreRatio 随机发往其他健康节点的请求比例，默认0.02
+     */
+    public void setExploreRatio(double exploreRatio)
+    {
+        this.exploreRatio = exploreRatio;
+    }
+
+    /**
+     * @param failureThreshold 连续失败多少次后摘除节点，默认3
+     */
+    public void setFailureThreshold(int failureThreshold)
+    {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param ejectMillis 节点被摘除的时间(毫秒)，默认10000
+     */
+    public void setEjectMillis(long ejectMillis)
+    {
+        this.ejectMillis = ejectMillis;
+    }
+
+    /**
+     * 选择节点：摘除到期的节点只放行一个探测请求，尚无样本的节点其次，再次是得分最低的未摘除节点；
+     * 所有节点都被摘除时选择最早恢复的节点
+     */
+    public RegionEndpoint select()
+    {
+        long now = System.nanoTime();
+        long ejectNanos = TimeUnit.MILLISECONDS.toNanos(ejectMillis);
+        List<RegionEndpoint> healthy = new ArrayList<RegionEndpoint>(endpoints.size());
+        RegionEndpoint best = null;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (RegionEndpoint endpoint : endpoints) {
+            if (endpoint.isEjected()) {
+                if (endpoint.tryProbe(now, ejectNanos)) {
+                    return endpoint;
+                }
+                continue;
+            }
+            if (!endpoint.isSampled()) {
+                return endpoint;
+            }
+            healthy.add(endpoint);
+            double score = endpoint.score(errorPenalty);
+            if (null == best || score < bestScore) {
+                bestScore = score;
+                best = endpoint;
+            }
+        }
+        if (null == best) {
+            for (RegionEndpoint endpoint : endpoints) {
+                if (!endpoint.isEjected()) {
+                    continue;
+                }
+                if (null == best || endpoint.getEjectedUntilNanos() - best.getEjectedUntilNanos() < 0) {
+                    best = endpoint;
+                }
+            }
+            return best;
+        }
+        if (healthy.size() > 1 && ThreadLocalRandom.current().nextDouble() < exploreRatio) {
+            return healthy.get(ThreadLocalRandom.current().nextInt(healthy.size()));
+        }
+        return best;
+    }
+
+    /**
+     * 为读请求选择节点，按节点的地址、项目ID和鉴权方式发送；写请求不路由
+     * @param request 本次调用
+     * @return 选中的节点，写请求返回null
+     */
+    @Override
+    public Route route(ApiRequest request)
+    {
+        if (!request.isRead()) {
+            return null;
+        }
+        RegionEndpoint endpoint = select();
+        return new Route(endpoint, endpoint.resolve(request.getUrl()));
+    }
+
+    /**
+     * 记录一次请求的结果
+     * @param latencyNanos 耗时(纳秒)，未知时传-1
+     * @param success 是否成功，网络异常和5xx返回视为失败
+     */
+    public void record(RegionEndpoint endpoint, long latencyNanos, boolean success)
+    {
+        endpoint.record(latencyNanos, success, alpha, failureThreshold, TimeUnit.MILLISECONDS.toNanos(ejectMillis));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EndpointRouter" + endpoints;
+    }
+
+    /**
+     * 一次路由选中的节点，每次发送时通过{@link #track}记录状态码和耗时
+     */
+    public final class Route implements RequestRoute
+    {
+        private final RegionEndpoint endpoint;
+        private final String url;
+
+        Route(RegionEndpoint endpoint, String url)
+        {
+            this.endpoint = endpoint;
+            this.url = url;
+        }
+
+        public RegionEndpoint getEndpoint()
+        {
+            return endpoint;
+        }
+
+        @Override
+        public String getUrl()
+        {
+            return url;
+        }
+
+        @Override
+        public RequestAuthenticator getAuthenticator()
+        {
+            return endpoint.getAuthenticator();
+        }
+
+        @Override
+        public <T> Tracked<T> track(ResponseHandler<? extends T> handler)
+        {
+            return new TrackedSend<T>(endpoint, handler);
+        }
+
+        @Override
+        public String toString()
+        {
+            return endpoint.getRegion() + " " + url;
+        }
+    }
+
+    /**
+     * 一次发送，作为返回处理器使用时记录状态码和耗时
+     */
+    private final class TrackedSend<T> implements RequestRoute.Tracked<T>
+    {
+        private final RegionEndpoint endpoint;
+        private final ResponseHandler<? extends T> handler;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean recorded;
+
+        TrackedSend(RegionEndpoint endpoint, ResponseHandler<? extends T> handler)
+        {
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException
+        {
+            int status = response.getStatusLine().getStatusCode();
+            recorded = true;
+            record(endpoint, System.nanoTime() - startNanos, status < 500);
+            return handler.handleResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e)
+        {
+            if (!recorded && !(e instanceof CancellationException)) {
+                recorded = true;
+                record(endpoint, -1, false);
+            }
+        }
+    }
+}
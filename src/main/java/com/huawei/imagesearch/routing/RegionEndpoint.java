@@ -0,0 +1,208 @@
+package com.huawei.imagesearch.routing;
+
+import com.huawei.imagesearch.pipeline.RequestAuthenticator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EndpointRouter}中的一个区域终端节点，以指数移动平均估计耗时和错误率；
+ * 连续失败达到阈值后在一段时间内被摘除，到期后只放行一个请求探测，探测成功即恢复，失败则再次摘除。
+ * 项目ID和Token、AK/SK签名都按区域区分，每个节点使用自己的项目ID和鉴权方式
+ */
+public class RegionEndpoint
+{
+    private final String region;
+    private final String url;
+    private final String projectId;
+    private final RequestAuthenticator authenticator;
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicLong errorBits = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong ejectedUntilNanos = new AtomicLong();
+    private volatile boolean ejected;
+    private volatile boolean sampled;
+    private volatile boolean latencySampled;
+
+    /**
+     * @param region 区域，如cn-north-4
+     * @param url 区域的终端节点地址，如https://imagesearch.cn-north-4.myhuaweicloud.com
+     * @param projectId 账号在该区域的项目ID
+     * @param authenticator 该区域的鉴权方式，如使用该区域Token的TokenAuthenticator或按该区域签名的AkSkAuthenticator
+     */
+    public RegionEndpoint(String region, String url, String projectId, RequestAuthenticator authenticator)
+    {
+        if (null == url || null == projectId || null == authenticator) {
+            throw new IllegalArgumentException("url, projectId and authenticator must not be null");
+        }
+        this.region = region;
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.projectId = projectId;
+        this.authenticator = authenticator;
+    }
+
+    public String getRegion()
+    {
+        return region;
+    }
+
+    /**
+     * @return 终端节点地址，不以/结尾
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public String getProjectId()
+    {
+        return projectId;
+    }
+
+    public RequestAuthenticator getAuthenticator()
+    {
+        return authenticator;
+    }
+
+    /**
+     * 把请求地址改为发往本节点：替换终端节点，并把/v1/后的项目ID替换为本区域的项目ID
+     * @param url 请求地址，形如{endpoint}/v1/{projectId}/...
+     */
+    String resolve(String url)
+    {
+        int scheme = url.indexOf("://");
+        int pathStart = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        String path = pathStart < 0 ? "" : url.substring(pathStart);
+        if (!path.startsWith("/v1/")) {
+            return this.url + path;
+        }
+        int end = 4;
+        while (end < path.length() && '/' != path.charAt(end) && '?' != path.charAt(end)) {
+            end++;
+        }
+        return this.url + "/v1/" + projectId + path.substring(end);
+    }
+
+    /**
+     * @return 耗时的移动平均(毫秒)，尚无样本时为0
+     */
+    public double getLatencyMillis()
+    {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    /**
+     * @return 错误率的移动平均，取值0~1
+     */
+    public double getErrorRate()
+    {
+        return Double.longBitsToDouble(errorBits.get());
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    public long getFailureCount()
+    {
+        return failureCount.get();
+    }
+
+    /**
+     * @return 未被摘除，或摘除已到期可以探测时为true
+     */
+    public boolean isHealthy()
+    {
+        return isHealthy(System.nanoTime());
+    }
+
+    boolean isHealthy(long now)
+    {
+        return !ejected || ejectedUntilNanos.get() - now <= 0;
+    }
+
+    /**
+     * 摘除到期后争取探测名额：成功者把摘除期再延长ejectNanos，探测返回前其他请求仍视本节点为摘除
+     * @return 获得探测名额时为true
+     */
+    boolean tryProbe(long now, long ejectNanos)
+    {
+        long until = ejectedUntilNanos.get();
+        return ejected && until - now <= 0 && ejectedUntilNanos.compareAndSet(until, now + ejectNanos);
+    }
+
+    boolean isEjected()
+    {
+        return ejected;
+    }
+
+    long getEjectedUntilNanos()
+    {
+        return ejectedUntilNanos.get();
+    }
+
+    /**
+     * @return 已记录过结果(成功或失败)时为true
+     */
+    boolean isSampled()
+    {
+        return sampled;
+    }
+
+    /**
+     * @param errorPenalty 错误率的惩罚系数
+     * @return 用于选择的得分，越小越好；只有失败、没有耗时样本时为正无穷
+     */
+    double score(double errorPenalty)
+    {
+        if (!latencySampled) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return getLatencyMillis() * (1 + errorPenalty * getErrorRate());
+    }
+
+    void record(long latencyNanos, boolean success, double alpha, int failureThreshold, long ejectNanos)
+    {
+        requestCount.incrementAndGet();
+        if (latencyNanos >= 0) {
+            double millis = latencyNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            update(latencyBits, millis, latencySampled ? alpha : 1);
+            latencySampled = true;
+        }
+        update(errorBits, success ? 0 : 1, alpha);
+        sampled = true;
+        if (success) {
+            consecutiveFailures.set(0);
+            ejected = false;
+            return;
+        }
+        failureCount.incrementAndGet();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            ejectedUntilNanos.set(System.nanoTime() + ejectNanos);
+            ejected = true;
+        }
+    }
+
+    private static void update(AtomicLong bits, double sample, double alpha)
+    {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            double value = Double.longBitsToDouble(current);
+            next = Double.doubleToLongBits(value + alpha * (sample - value));
+        } while (!bits.compareAndSet(current, next));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RegionEndpoint[" + region + ", url=" + url + ", latencyMillis=" + String.format("%.1f", getLatencyMillis())
+                + ", errorRate=" + String.format("%.3f", getErrorRate()) + ", healthy=" + isHealthy()
+                + ", requests=" + requestCount + ", failures=" + failureCount + "]";
+    }
+}
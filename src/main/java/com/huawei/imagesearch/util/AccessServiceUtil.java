@@ -1,25 +1,14 @@
 package com.huawei.imagesearch.util;
 
-import com.cloud.sdk.DefaultRequest;
-import com.cloud.sdk.auth.credentials.BasicCredentials;
 import com.cloud.sdk.auth.signer.Signer;
-import com.cloud.sdk.auth.signer.SignerFactory;
 import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.imagesearch.metrics.Metrics;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.*;
-import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.util.EntityUtils;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
 
 /**
  * 使用AK/SK方式鉴权的包装类
@@ -30,16 +19,25 @@ public class AccessServiceUtil extends  HttpClientBase
     private String ak;
     private String sk;
     private String region;
-    private Signer signer;
+    private AkSkSigner akSkSigner;
+    private volatile CloseableHttpClient httpClient;
     public AccessServiceUtil(String ak, String sk, String serviceName, String region){
+        this(ak, sk, serviceName, region, null);
+    }
+
+    /**
+     * @param httpClient 发送请求使用的httpclient，由调用方负责复用和关闭；为null时每次调用都使用进程内共享的httpclient
+     */
+    public AccessServiceUtil(String ak, String sk, String serviceName, String region, CloseableHttpClient httpClient){
         this.ak = ak;
         this.sk = sk;
         this.region = region;
-        this.signer = SignerFactory.getSigner(serviceName, region);
+        this.akSkSigner = new AkSkSigner(ak, sk, serviceName, region);
+        this.httpClient = httpClient;
     }
 
     /**
-     * 通过AkSk进行鉴权，发送请求
+     * 通过AkSk进行鉴权，发送请求；注意返回的response持有连接池中的连接，调用方必须关闭或消费完entity
      * @param httpMethod 调用方法如POST/DELETE等
      * @param url 调用url
      * @param headers 调用Header
@@ -48,130 +46,48 @@ public class AccessServiceUtil extends  HttpClientBase
      */
     public HttpResponse executeWithAkSk(HttpMethodName httpMethod ,
             String url, Header[] headers, HttpEntity entity){
-        DefaultRequest request = new DefaultRequest();
-        long contentLength = 0;
-        if(null != entity){
-            contentLength = entity.getContentLength();
-        }
         try
         {
-            request.setEndpoint(new URI(url));
-            request.setHttpMethod(httpMethod);
-            request.setHeaders(translate2MapHeader(headers));
-            if(null != entity)
-            {
-                request.setContent(entity.getContent());
-            }
-            String parameters = null;
-            if (url.contains("?")) {
-                parameters = url.substring(url.indexOf("?") + 1);
-                Map parametersMap = new HashMap<String, String>();
-
-                if (null != parameters && !"".equals(parameters)) {
-                    String[] parameterArray = parameters.split("&");
-
-                    for (String p : parameterArray) {
-                        String key = p.split("=")[0];
-                        String value = p.split("=")[1];
-                        parametersMap.put(key, value);
-                    }
-                    request.setParameters(parametersMap);
-                }
-            }
-            signer.sign(request, new BasicCredentials(ak, sk));
-            HttpRequestBase httpRequestBase = createRequest(new URL(url), null,
-                    request.getContent(), contentLength, httpMethod);
-            Map<String, String> requestHeaders = request.getHeaders();
-            // Put the header of the signed request to the new request.
-            for (String key : requestHeaders.keySet()) {
-                if (key.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
-                    continue;
-                }
-                httpRequestBase.addHeader(key, requestHeaders.get(key));
-            }
-            HttpClient client = acceptsUntrustedCertsHttpClient();
-            return  client.execute(httpRequestBase);
+            return  getHttpClient().execute(createSignedRequest(httpMethod, url, headers, entity));
         }catch (Exception e){
             e.printStackTrace();
             return null;
         }
     }
 
-
     /**
-     * Make a request that can be sent by the HTTP client.
-     *
-     * @param url
-     *            specifies the API access path.
-     * @param header
-     *            specifies the header information to be added.
-     * @param content
-     *            specifies the body content to be sent in the API call.
-     * @param contentLength
-     *            specifies the length of the content. This parameter is optional.
-     * @param httpMethod
-     *            specifies the HTTP method to be used.
-     * @return specifies the request that can be sent by an HTTP client.
+     * 通过AkSk进行鉴权，发送请求并交由handler处理返回，处理完成后entity被消费、连接归还连接池
+     * @param httpMethod 调用方法如POST/DELETE等
+     * @param url 调用url
+     * @param headers 调用Header
+     * @param entity 请求body
+     * @param handler 返回处理器
+     * @return handler的处理结果
+     * @throws Exception 签名、网络或handler处理异常
      */
-    private static HttpRequestBase createRequest(URL url, Header header,
-            InputStream content, Long contentLength, HttpMethodName httpMethod) {
-
-        HttpRequestBase httpRequest;
-        if (httpMethod == HttpMethodName.POST) {
-            HttpPost postMethod = new HttpPost(url.toString());
-
-            if (content != null) {
-                InputStreamEntity entity = new InputStreamEntity(content,
-                        contentLength);
-                postMethod.setEntity(entity);
-            }
-            httpRequest = postMethod;
-        } else if (httpMethod == HttpMethodName.PUT) {
-            HttpPut putMethod = new HttpPut(url.toString());
-            httpRequest = putMethod;
-
-            if (content != null) {
-                InputStreamEntity entity = new InputStreamEntity(content,
-                        contentLength);
-                putMethod.setEntity(entity);
-            }
-        } else if (httpMethod == HttpMethodName.PATCH) {
-            HttpPatch patchMethod = new HttpPatch(url.toString());
-            httpRequest = patchMethod;
-
-            if (content != null) {
-                InputStreamEntity entity = new InputStreamEntity(content,
-                        contentLength);
-                patchMethod.setEntity(entity);
-            }
-        } else if (httpMethod == HttpMethodName.GET) {
-            httpRequest = new HttpGet(url.toString());
-        } else if (httpMethod == HttpMethodName.DELETE) {
-            HttpDeleteWithBody httpDelete = new HttpDeleteWithBody(url.toString());
-            if(null != content){
-                InputStreamEntity entity = new InputStreamEntity(content,
-                        contentLength);
-                httpDelete.setEntity(entity);
-            }
-            httpRequest = httpDelete;
-        } else if (httpMethod == HttpMethodName.HEAD) {
-            httpRequest = new HttpHead(url.toString());
-        } else {
-            throw new RuntimeException("Unknown HTTP method name: "
-                    + httpMethod);
-        }
-
-        httpRequest.addHeader(header);
-        return httpRequest;
+    public <T> T executeWithAkSk(HttpMethodName httpMethod, String url, Header[] headers, HttpEntity entity,
+            ResponseHandler<? extends T> handler) throws Exception {
+        return getHttpClient().execute(createSignedRequest(httpMethod, url, headers, entity), handler);
     }
 
-
-    private static Map<String, String> translate2MapHeader(Header[] headers){
-        HashMap<String, String> newHeaders = new HashMap<>();
-        for(Header header : headers){
-            newHeaders.put(header.getName(), header.getValue());
+    /**
+     * 构造经AK/SK签名的请求
+     * @param httpMethod 调用方法如POST/DELETE等
+     * @param url 调用url
+     * @param headers 调用Header
+     * @param entity 请求body
+     * @return 可直接发送的已签名请求
+     * @throws Exception 签名异常
+     */
+    public HttpRequestBase createSignedRequest(HttpMethodName httpMethod,
+            String url, Header[] headers, HttpEntity entity) throws Exception {
+        if (!Metrics.isEnabled()) {
+            return akSkSigner.sign(httpMethod, url, headers, entity);
         }
-        return newHeaders;
+        long start = System.nanoTime();
+        HttpRequestBase request = akSkSigner.sign(httpMethod, url, headers, entity);
+        Metrics.getListener().onSign(System.nanoTime() - start);
+        return request;
     }
 
     /**
@@ -184,17 +100,12 @@ public class AccessServiceUtil extends  HttpClientBase
      */
     public String executeWithAkSkResultString(HttpMethodName httpMethod ,
             String url, Header[] headers, HttpEntity entity){
-        HttpResponse response = executeWithAkSk(httpMethod, url, headers, entity);
-        if(null == response){
+        try
+        {
+            return executeWithAkSk(httpMethod, url, headers, entity, HttpClientUtils.BODY_AS_STRING);
+        }catch (Exception e){
+            e.printStackTrace();
             return null;
-        }else{
-            try
-            {
-                return EntityUtils.toString(response.getEntity());
-            }catch (IOException e){
-                e.printStackTrace();
-                return null;
-            }
         }
     }
 
@@ -215,6 +126,25 @@ public class AccessServiceUtil extends  HttpClientBase
 
     public Signer getSigner()
     {
-        return signer;
+        return akSkSigner.getSigner();
+    }
+
+    public AkSkSigner getAkSkSigner()
+    {
+        return akSkSigner;
+    }
+
+    public CloseableHttpClient getHttpClient()
+    {
+        CloseableHttpClient client = httpClient;
+        return null != client ? client : getSharedHttpClient();
+    }
+
+    /**
+     * @param httpClient 发送请求使用的httpclient，传null改用进程内共享的httpclient
+     */
+    public void setHttpClient(CloseableHttpClient httpClient)
+    {
+        this.httpClient = httpClient;
     }
 }
@@ -0,0 +1,203 @@
+package com.huawei.imagesearch.util;
+
+import com.cloud.sdk.DefaultRequest;
+import com.cloud.sdk.auth.credentials.BasicCredentials;
+import com.cloud.sdk.auth.signer.Signer;
+import com.cloud.sdk.auth.signer.SignerFactory;
+import com.cloud.sdk.http.HttpMethodName;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可复用的AK/SK签名器：Signer与凭证只创建一次，请求地址解析结果按url缓存；
+ * 内存中的body(ByteArraysEntity、ByteArrayEntity、StringEntity)签名时直接对其字节数组计算摘要，
+ * 通过x-sdk-content-sha256交给签名算法，不再经流读取，发送时复用原entity
+ */
+public class AkSkSigner
+{
+    private static final int MAX_CACHED_URLS = 1024;
+    private static final String CONTENT_SHA256 = "x-sdk-content-sha256";
+
+    private final Signer signer;
+    private final BasicCredentials credentials;
+    private final ConcurrentHashMap<String, SignableUrl> urlCache = new ConcurrentHashMap<String, SignableUrl>();
+
+    public AkSkSigner(String ak, String sk, String serviceName, String region)
+    {
+        this.signer = SignerFactory.getSigner(serviceName, region);
+        this.credentials = new BasicCredentials(ak, sk);
+    }
+
+    /**
+     * 对请求签名
+     * @param httpMethod 调用方法如POST/DELETE等
+     * @param url 调用url
+     * @param headers 调用Header
+     * @param entity 请求body
+     * @return 可直接发送的已签名请求
+     * @throws URISyntaxException url格式错误时，抛出此异常
+     * @throws IOException 读取body异常时，抛出此异常
+     */
+    public HttpRequestBase sign(HttpMethodName httpMethod, String url, Header[] headers, HttpEntity entity)
+            throws URISyntaxException, IOException
+    {
+        return sign(httpMethod, parse(url), headers, entity);
+    }
+
+    /**
+     * 对请求签名，使用预先解析好的地址
+     * @param httpMethod 调用方法如POST/DELETE等
+     * @param url 预先解析好的调用地址
+     * @param headers 调用Header
+     * @param entity 请求body
+     * @return 可直接发送的已签名请求
+     * @throws IOException 读取body异常时，抛出此异常
+     */
+    public HttpRequestBase sign(HttpMethodName httpMethod, SignableUrl url, Header[] headers, HttpEntity entity)
+            throws IOException
+    {
+        DefaultRequest<Object> request = new DefaultRequest<Object>();
+        request.setEndpoint(url.getUri());
+        request.setHttpMethod(httpMethod);
+        Map<String, String> requestHeaders = new HashMap<String, String>(8);
+        if (null != headers) {
+            for (Header header : headers) {
+                requestHeaders.put(header.getName(), header.getValue());
+            }
+        }
+        request.setHeaders(requestHeaders);
+        if (!url.getParameters().isEmpty()) {
+            request.setParameters(url.getParameters());
+        }
+        InputStream content = null;
+        try {
+            if (isInMemory(entity)) {
+                request.addHeader(CONTENT_SHA256, sha256Hex(entity));
+            } else if (null != entity) {
+                content = entity.getContent();
+                request.setContent(content);
+            }
+            signer.sign(request, credentials);
+
+            HttpRequestBase httpRequest = createRequest(url.getUrl(), httpMethod);
+            if (null != entity && httpRequest instanceof HttpEntityEnclosingRequestBase) {
+                if (entity.isRepeatable()) {
+                    ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(entity);
+                } else {
+                    // 不可重复读取的body发送签名时读取后已reset的流，流由发送的请求负责关闭
+                    ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(
+                            new InputStreamEntity(request.getContent(), entity.getContentLength()));
+                    content = null;
+                }
+            }
+            // Put the header of the signed request to the new request.
+            Map<String, String> signedHeaders = request.getHeaders();
+            for (Map.Entry<String, String> header : signedHeaders.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                    continue;
+                }
+                httpRequest.addHeader(header.getKey(), header.getValue());
+            }
+            return httpRequest;
+        } finally {
+            if (null != content) {
+                content.close();
+            }
+        }
+    }
+
+    private static boolean isInMemory(HttpEntity entity)
+    {
+        return entity instanceof ByteArraysEntity || entity instanceof ByteArrayEntity
+                || entity instanceof StringEntity;
+    }
+
+    /**
+     * 计算body的SHA-256；这几种entity的writeTo直接写出其字节数组，不经过getContent复制
+     */
+    private static String sha256Hex(HttpEntity entity) throws IOException
+    {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        entity.writeTo(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+                digest.update(b, off, len);
+            }
+        });
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * 解析url，解析结果会被缓存，相同url的后续请求直接复用
+     * @param url 请求地址
+     * @return 解析结果
+     * @throws URISyntaxException url格式错误时，抛出此异常
+     */
+    public SignableUrl parse(String url) throws URISyntaxException
+    {
+        SignableUrl parsed = urlCache.get(url);
+        if (null == parsed) {
+            parsed = SignableUrl.parse(url);
+            if (urlCache.size() >= MAX_CACHED_URLS) {
+                urlCache.clear();
+            }
+            urlCache.put(url, parsed);
+        }
+        return parsed;
+    }
+
+    public Signer getSigner()
+    {
+        return signer;
+    }
+
+    private static HttpRequestBase createRequest(String url, HttpMethodName httpMethod)
+    {
+        switch (httpMethod) {
+            case POST:
+                return new HttpPost(url);
+            case PUT:
+                return new HttpPut(url);
+            case PATCH:
+                return new HttpPatch(url);
+            case GET:
+                return new HttpGet(url);
+            case DELETE:
+                return new HttpDeleteWithBody(url);
+            case HEAD:
+                return new HttpHead(url);
+            default:
+                throw new RuntimeException("Unknown HTTP method name: " + httpMethod);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.huawei.imagesearch.util;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+
+/**
+ * 以流的方式输出包含Base64图像字段的JSON请求体：JSON的其余字段先序列化，
+ * 图像文件在发送时才从FileChannel读取并边读边编码写出，不在内存中保存整个文件或编码结果；
+ * entity可重复读取，{@link #getContent()}返回的流支持mark/reset，可用于AK/SK签名时计算body摘要
+ */
+public class Base64FileEntity extends AbstractHttpEntity
+{
+    private static final int BUFFER_SIZE = 3 * 16 * 1024;
+
+    private final File file;
+    private final byte[] head;
+    private final byte[] tail;
+    private final long contentLength;
+
+    /**
+     * @param fields JSON中除图像外的其他字段
+     * @param fileField 图像字段名
+     * @param file 本地图像文件
+     */
+    public Base64FileEntity(JSONObject fields, String fileField, File file) throws IOException
+    {
+        if (!file.isFile()) {
+            throw new IOException("File '" + file + "' does not exist or is not a file");
+        }
+        String json = fields.toJSONString();
+        String prefix = json.substring(0, json.length() - 1) + (fields.isEmpty() ? "" : ",")
+                + JSONObject.toJSONString(fileField) + ":\"";
+        this.file = file;
+        this.head = prefix.getBytes(StandardCharsets.UTF_8);
+        this.tail = "\"}".getBytes(StandardCharsets.UTF_8);
+        this.contentLength = head.length + base64Length(file.length()) + tail.length;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    private static long base64Length(long length)
+    {
+        return (length + 2) / 3 * 4;
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        return contentLength;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        return new ResettableContentStream();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException
+    {
+        outStream.write(head);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                InputStream in = Channels.newInputStream(channel);
+                OutputStream encoder = Base64.getEncoder().wrap(new CloseShieldOutputStream(outStream))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                encoder.write(buffer, 0, n);
+            }
+        }
+        outStream.write(tail);
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+
+    private InputStream openStream() throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        InputStream encoded = new Base64InputStream(Channels.newInputStream(channel), true, 0, null);
+        return new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(head), encoded),
+                new ByteArrayInputStream(tail));
+    }
+
+    /**
+     * 支持mark/reset的body流，reset时重新打开文件并跳到mark位置
+     */
+    private class ResettableContentStream extends InputStream
+    {
+        private InputStream delegate;
+        private long position;
+        private long markPosition;
+
+        ResettableContentStream() throws IOException
+        {
+            this.delegate = openStream();
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = delegate.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit)
+        {
+            markPosition = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException
+        {
+            delegate.close();
+            delegate = openStream();
+            position = 0;
+            byte[] skip = new byte[BUFFER_SIZE];
+            while (position < markPosition) {
+                int n = read(skip, 0, (int) Math.min(skip.length, markPosition - position));
+                if (n < 0) {
+                    throw new IOException("File '" + file + "' changed while being read");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            delegate.close();
+        }
+    }
+}
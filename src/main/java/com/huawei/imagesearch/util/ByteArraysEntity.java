@@ -0,0 +1,155 @@
+package com.huawei.imagesearch.util;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 由多段字节数组依次拼接而成的请求体，发送时逐段写出，不复制各段内容；
+ * 适用于请求体中大部分内容(如Base64图像)在多次请求间复用、只有少量字段变化的场景
+ */
+public class ByteArraysEntity extends AbstractHttpEntity
+{
+    private final byte[][] parts;
+    private final long contentLength;
+
+    public ByteArraysEntity(ContentType contentType, byte[]... parts)
+    {
+        long length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        this.parts = parts;
+        this.contentLength = length;
+        setContentType(contentType.toString());
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        return contentLength;
+    }
+
+    /**
+     * 返回依次读取各段的流，不复制各段内容；异步客户端发送时和AK/SK签名计算body摘要时都通过此流读取，流支持mark/reset
+     */
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        return new PartsInputStream();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException
+    {
+        for (byte[] part : parts) {
+            outStream.write(part);
+        }
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * 在各段字节数组上直接读取的流，位置由段下标和段内偏移表示
+     */
+    private class PartsInputStream extends InputStream
+    {
+        private int part;
+        private int offset;
+        private int markPart;
+        private int markOffset;
+
+        @Override
+        public int read()
+        {
+            while (part < parts.length) {
+                if (offset < parts[part].length) {
+                    return parts[part][offset++] & 0xff;
+                }
+                part++;
+                offset = 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (0 == len) {
+                return 0;
+            }
+            int total = 0;
+            while (total < len && part < parts.length) {
+                int n = Math.min(len - total, parts[part].length - offset);
+                System.arraycopy(parts[part], offset, b, off + total, n);
+                total += n;
+                offset += n;
+                if (offset == parts[part].length) {
+                    part++;
+                    offset = 0;
+                }
+            }
+            return 0 == total ? -1 : total;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            long skipped = 0;
+            while (skipped < n && part < parts.length) {
+                int step = (int) Math.min(n - skipped, parts[part].length - offset);
+                skipped += step;
+                offset += step;
+                if (offset == parts[part].length) {
+                    part++;
+                    offset = 0;
+                }
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            long remaining = 0;
+            for (int i = part; i < parts.length; i++) {
+                remaining += parts[i].length;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, remaining - offset);
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit)
+        {
+            markPart = part;
+            markOffset = offset;
+        }
+
+        @Override
+        public void reset()
+        {
+            part = markPart;
+            offset = markOffset;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.huawei.imagesearch.util;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连接泄漏检测器，统计从连接池租出与归还的连接数；
+ * 请求全部结束后租出数仍大于归还数，说明存在未关闭的response或未消费的entity
+ */
+public class ConnectionLeakDetector
+{
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private volatile ConnPoolControl<HttpRoute> pool;
+
+    void onLeased()
+    {
+        leased.incrementAndGet();
+    }
+
+    void onReleased()
+    {
+        released.incrementAndGet();
+    }
+
+    void attach(ConnPoolControl<HttpRoute> pool)
+    {
+        this.pool = pool;
+    }
+
+    synchronized void attachIfAbsent(ConnPoolControl<HttpRoute> pool)
+    {
+        if (null == this.pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * @return 累计租出的连接数
+     */
+    public long getLeasedCount()
+    {
+        return leased.get();
+    }
+
+    /**
+     * @return 累计归还的连接数
+     */
+    public long getReleasedCount()
+    {
+        return released.get();
+    }
+
+    /**
+     * @return 当前仍未归还的连接数
+     */
+    public long getOutstandingCount()
+    {
+        return leased.get() - released.get();
+    }
+
+    /**
+     * @return 连接池当前状态(租出/空闲/等待数)，尚未关联连接池时返回null
+     */
+    public PoolStats getPoolStats()
+    {
+        ConnPoolControl<HttpRoute> p = pool;
+        return null == p ? null : p.getTotalStats();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConnectionLeakDetector[leased=" + getLeasedCount() + ", released=" + getReleasedCount()
+                + ", outstanding=" + getOutstandingCount() + ", pool=" + getPoolStats() + "]";
+    }
+}
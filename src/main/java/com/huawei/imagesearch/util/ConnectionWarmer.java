@@ -0,0 +1,159 @@
+package com.huawei.imagesearch.util;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接预热：解析终端节点的域名，并发发送不带鉴权的GET请求，使连接池中保留已完成TCP和TLS握手的长连接。
+ * 使用GET而不是HEAD：没有body的返回在交给返回处理器之前就已归还连接，无法让各请求同时占用不同的连接
+ * 所有客户端共用{@link HttpClientBase}中的SSLContext，握手得到的TLS会话进入其会话缓存，之后新建连接时可恢复会话，省去完整握手
+ */
+public class ConnectionWarmer
+{
+    /**
+     * 解析地址中的域名，结果进入JVM的DNS缓存
+     * @param url 终端节点地址
+     * @return 解析成功时返回true
+     */
+    public static boolean resolve(String url)
+    {
+        try {
+            InetAddress.getAllByName(URI.create(url).getHost());
+            return true;
+        } catch (UnknownHostException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 向终端节点并发发送connections个GET请求，返回的错误信息被丢弃；每个请求收到返回后等其他请求也收到返回才归还连接，
+     * 使各请求分别占用一个连接，结束后这些连接留在连接池中
+     * @param httpClient 需要预热的httpclient，connections不应超过其连接池每个路由的最大连接数
+     * @param url 终端节点地址
+     * @param connections 建立的连接数
+     * @param timeoutMillis 收到返回后等待其他请求的最长时间(毫秒)
+     * @return 成功收到返回的请求数，即连接池中可用的连接数
+     */
+    public static int warmUp(final CloseableHttpClient httpClient, final String url, int connections,
+            final long timeoutMillis)
+    {
+        if (connections <= 0) {
+            return 0;
+        }
+        final CountDownLatch arrived = new CountDownLatch(connections);
+        final ResponseHandler<Boolean> handler = response -> {
+            arrived.countDown();
+            try {
+                arrived.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while warming up connections");
+            }
+            return true;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(connections, r -> {
+            Thread t = new Thread(r, "image-search-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(connections);
+        for (int i = 0; i < connections; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    return httpClient.execute(new HttpGet(url), handler);
+                } catch (IOException e) {
+                    // 连接失败的请求不再让其他请求等待
+                    arrived.countDown();
+                    throw e;
+                }
+            }));
+        }
+        int opened = 0;
+        try {
+            for (Future<Boolean> future : futures) {
+                try {
+                    if (future.get()) {
+                        opened++;
+                    }
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return opened;
+    }
+
+    /**
+     * {@link #warmUp}的异步版本：同时发出connections个GET请求，异步客户端为等待中的请求各建立一个连接
+     * @return 成功收到返回的请求数，不会以异常方式完成
+     */
+    public static CompletableFuture<Integer> warmUpAsync(CloseableHttpAsyncClient httpClient, String url,
+            int connections)
+    {
+        final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+        if (connections <= 0) {
+            result.complete(0);
+            return result;
+        }
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger(connections);
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>()
+        {
+            @Override
+            public void completed(HttpResponse response)
+            {
+                opened.incrementAndGet();
+                done();
+            }
+
+            @Override
+            public void failed(Exception e)
+            {
+                e.printStackTrace();
+                done();
+            }
+
+            @Override
+            public void cancelled()
+            {
+                done();
+            }
+
+            private void done()
+            {
+                if (0 == remaining.decrementAndGet()) {
+                    result.complete(opened.get());
+                }
+            }
+        };
+        for (int i = 0; i < connections; i++) {
+            httpClient.execute(new HttpGet(url), callback);
+        }
+        return result;
+    }
+}
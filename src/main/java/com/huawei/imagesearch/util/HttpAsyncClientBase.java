@@ -0,0 +1,154 @@
+package com.huawei.imagesearch.util;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class HttpAsyncClientBase
+{
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "image-search-async-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static volatile CloseableHttpAsyncClient sharedHttpAsyncClient;
+
+    /**
+     * 获取进程内共享的异步httpclient，首次调用时按共享httpclient的配置创建并启动
+     * @return 共享的异步httpclient
+     */
+    public static CloseableHttpAsyncClient getSharedHttpAsyncClient()
+    {
+        CloseableHttpAsyncClient client = sharedHttpAsyncClient;
+        if (null == client) {
+            synchronized (HttpAsyncClientBase.class) {
+                client = sharedHttpAsyncClient;
+                if (null == client) {
+                    client = createHttpAsyncClient(HttpClientBase.getSharedHttpClientConfig());
+                    sharedHttpAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 关闭进程内共享的异步httpclient，之后再次获取时会重新创建
+     */
+    public static void shutdownSharedHttpAsyncClient()
+    {
+        CloseableHttpAsyncClient old;
+        synchronized (HttpAsyncClientBase.class) {
+            old = sharedHttpAsyncClient;
+            sharedHttpAsyncClient = null;
+        }
+        closeQuietly(old);
+    }
+
+    /**
+     * 按指定配置创建并启动基于NIO的异步httpclient，调用方负责复用并在不再使用时关闭；
+     * 连接存活时间、空闲回收和泄漏检测与{@link HttpClientBase#createHttpClient}一致
+     * @param config 连接池配置
+     * @return 已启动的异步httpclient
+     */
+    public static CloseableHttpAsyncClient createHttpAsyncClient(HttpClientConfig config)
+    {
+        ConnectingIOReactor ioReactor;
+        try {
+            ioReactor = new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                    .setIoThreadCount(config.getIoThreadCount())
+                    .setConnectTimeout(config.getConnectTimeoutMillis())
+                    .setSoTimeout(config.getSocketTimeoutMillis())
+                    .build());
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("init io reactor failed", e);
+        }
+        Registry<SchemeIOSessionStrategy> strategyRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(HttpClientBase.getSslContext(),
+                        NoopHostnameVerifier.INSTANCE))
+                .build();
+        TrackingNConnectionManager connMgr = new TrackingNConnectionManager(ioReactor, strategyRegistry,
+                config.getConnectionTimeToLiveSeconds(), TimeUnit.SECONDS, config.getConnectionLeakDetector());
+        connMgr.setMaxTotal(config.getMaxTotal());
+        connMgr.setDefaultMaxPerRoute(config.getDefaultMaxPerRoute());
+
+        CloseableHttpAsyncClient client = HttpAsyncClientBuilder.create()
+                .setConnectionManager(connMgr)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(config.getConnectTimeoutMillis())
+                        .setSocketTimeout(config.getSocketTimeoutMillis())
+                        .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+                        .build())
+                .build();
+        client.start();
+        if (config.getIdleConnectionTimeoutSeconds() > 0) {
+            new IdleConnectionEvictor(client, connMgr, config.getIdleConnectionTimeoutSeconds()).start();
+        }
+        return client;
+    }
+
+    static void closeQuietly(CloseableHttpAsyncClient client)
+    {
+        if (null == client) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 异步客户端没有内置的空闲连接回收，由共享的后台线程定期清理过期和空闲的连接，客户端关闭后停止
+     */
+    private static final class IdleConnectionEvictor implements Runnable
+    {
+        private final CloseableHttpAsyncClient client;
+        private final TrackingNConnectionManager connMgr;
+        private final long idleSeconds;
+        private volatile ScheduledFuture<?> future;
+
+        IdleConnectionEvictor(CloseableHttpAsyncClient client, TrackingNConnectionManager connMgr, long idleSeconds)
+        {
+            this.client = client;
+            this.connMgr = connMgr;
+            this.idleSeconds = idleSeconds;
+        }
+
+        void start()
+        {
+            long period = Math.max(1, Math.min(idleSeconds, 10));
+            future = EVICTOR.scheduleWithFixedDelay(this, period, period, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            if (!client.isRunning()) {
+                future.cancel(false);
+                return;
+            }
+            connMgr.closeExpiredConnections();
+            connMgr.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.metrics.Metrics;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+public class HttpAsyncClientUtils extends HttpAsyncClientBase
+{
+    /**
+     * 以非阻塞方式发送请求，返回到达后在IO线程上交由handler处理，并消费掉返回的entity；
+     * 取消返回的future会同时取消底层请求
+     * @param httpClient 使用的异步httpclient
+     * @param request 请求
+     * @param handler 返回处理器，应只做轻量的解析工作
+     * @return 请求结果，网络异常或handler异常时以异常方式完成
+     */
+    public static <T> CompletableFuture<T> execute(CloseableHttpAsyncClient httpClient, HttpUriRequest request,
+            ResponseHandler<? extends T> responseHandler)
+    {
+        final MeteredResponseHandler<T> metered = Metrics.isEnabled()
+                ? new MeteredResponseHandler<T>(request, responseHandler) : null;
+        final ResponseHandler<? extends T> handler = null == metered ? responseHandler : metered;
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final Future<HttpResponse> future = httpClient.execute(request, new FutureCallback<HttpResponse>()
+        {
+            @Override
+            public void completed(HttpResponse response)
+            {
+                try {
+                    result.complete(handler.handleResponse(response));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+            }
+
+            @Override
+            public void failed(Exception e)
+            {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled()
+            {
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (null != metered) {
+                metered.report();
+            }
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.huawei.imagesearch.util;
 
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
@@ -14,6 +15,7 @@ import org.apache.http.ssl.TrustStrategy;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -23,27 +25,80 @@ import java.util.concurrent.TimeUnit;
 
 public class HttpClientBase
 {
+    private static volatile SSLContext sslContext;
+
+    private static volatile CloseableHttpClient sharedHttpClient;
+
+    private static volatile HttpClientConfig sharedHttpClientConfig = new HttpClientConfig();
 
     /**
-     * 创建httpclient
-     * @return
-     * @throws KeyStoreException
-     * @throws NoSuchAlgorithmException
-     * @throws KeyManagementException
+     * 获取进程内共享的httpclient，首次调用时按默认配置创建，之后所有线程复用同一个连接池
+     * @return 共享的httpclient
      */
-    public static CloseableHttpClient acceptsUntrustedCertsHttpClient()
-            throws KeyStoreException, NoSuchAlgorithmException, KeyManagementException
+    public static CloseableHttpClient getSharedHttpClient()
+    {
+        CloseableHttpClient client = sharedHttpClient;
+        if (null == client) {
+            synchronized (HttpClientBase.class) {
+                client = sharedHttpClient;
+                if (null == client) {
+                    client = createHttpClient(sharedHttpClientConfig);
+                    sharedHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 按指定配置重建进程内共享的httpclient，原有的共享客户端会被关闭，应在发起请求前调用；
+     * 使用共享客户端的服务对象每次调用时重新获取，之后的调用自动使用新客户端，关闭时仍在进行的请求会失败
+     * @param config 连接池配置
+     */
+    public static void configureSharedHttpClient(HttpClientConfig config)
+    {
+        CloseableHttpClient old;
+        synchronized (HttpClientBase.class) {
+            old = sharedHttpClient;
+            sharedHttpClient = createHttpClient(config);
+            sharedHttpClientConfig = config;
+        }
+        closeQuietly(old);
+    }
+
+    /**
+     * @return 进程内共享httpclient所使用的配置，可通过其中的泄漏检测器观察连接归还情况
+     */
+    public static HttpClientConfig getSharedHttpClientConfig()
+    {
+        return sharedHttpClientConfig;
+    }
+
+    /**
+     * 关闭进程内共享的httpclient并释放连接池，之后再次获取时会重新创建，已有的服务对象下次调用时使用新建的客户端
+     */
+    public static void shutdownSharedHttpClient()
+    {
+        CloseableHttpClient old;
+        synchronized (HttpClientBase.class) {
+            old = sharedHttpClient;
+            sharedHttpClient = null;
+        }
+        closeQuietly(old);
+    }
+
+    /**
+     * 按指定配置创建httpclient，调用方负责复用并在不再使用时关闭
+     * @param config 连接池配置
+     * @return 新建的httpclient
+     */
+    public static CloseableHttpClient createHttpClient(HttpClientConfig config)
     {
         HttpClientBuilder b = HttpClientBuilder.create();
 
-        SSLContext sslContext = new SSLContextBuilder().useProtocol("TLSv1.2").loadTrustMaterial(null, new TrustStrategy() {
-            public boolean isTrusted(X509Certificate[] arg0, String arg1) throws CertificateException
-            {
-                return true;
-            }
-        }).build();
+        SSLContext sslContext = getSslContext();
         b.setSSLContext(sslContext);
-        b.setConnectionTimeToLive(180, TimeUnit.SECONDS);
+        b.setConnectionTimeToLive(config.getConnectionTimeToLiveSeconds(), TimeUnit.SECONDS);
 
         HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
 
@@ -52,12 +107,74 @@ public class HttpClientBase
                 .register("http", PlainConnectionSocketFactory.getSocketFactory()).register("https", sslSocketFactory)
                 .build();
 
-        PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-        connMgr.setMaxTotal(200);
-        connMgr.setDefaultMaxPerRoute(100);
+        PoolingHttpClientConnectionManager connMgr = new TrackingConnectionManager(socketFactoryRegistry,
+                config.getConnectionTimeToLiveSeconds(), TimeUnit.SECONDS, config.getConnectionLeakDetector());
+        connMgr.setMaxTotal(config.getMaxTotal());
+        connMgr.setDefaultMaxPerRoute(config.getDefaultMaxPerRoute());
+        connMgr.setValidateAfterInactivity(config.getValidateAfterInactivityMillis());
 
         b.setConnectionManager(connMgr);
-        CloseableHttpClient client = b.build();
-        return client;
+        b.setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setSocketTimeout(config.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+                .build());
+        if (config.getIdleConnectionTimeoutSeconds() > 0) {
+            b.evictExpiredConnections();
+            b.evictIdleConnections(config.getIdleConnectionTimeoutSeconds(), TimeUnit.SECONDS);
+        }
+        return b.build();
+    }
+
+    /**
+     * 创建httpclient，每次调用都会新建连接池，推荐使用{@link #getSharedHttpClient()}
+     * @return
+     * @throws KeyStoreException
+     * @throws NoSuchAlgorithmException
+     * @throws KeyManagementException
+     */
+    public static CloseableHttpClient acceptsUntrustedCertsHttpClient()
+            throws KeyStoreException, NoSuchAlgorithmException, KeyManagementException
+    {
+        return createHttpClient(new HttpClientConfig());
+    }
+
+    /**
+     * 获取信任所有证书的SSLContext，进程内只创建一次，以便复用TLS会话缓存
+     */
+    static SSLContext getSslContext()
+    {
+        SSLContext context = sslContext;
+        if (null == context) {
+            synchronized (HttpClientBase.class) {
+                context = sslContext;
+                if (null == context) {
+                    try {
+                        context = new SSLContextBuilder().useProtocol("TLSv1.2").loadTrustMaterial(null, new TrustStrategy() {
+                            public boolean isTrusted(X509Certificate[] arg0, String arg1) throws CertificateException
+                            {
+                                return true;
+                            }
+                        }).build();
+                    } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
+                        throw new IllegalStateException("init ssl context failed", e);
+                    }
+                    sslContext = context;
+                }
+            }
+        }
+        return context;
+    }
+
+    static void closeQuietly(CloseableHttpClient client)
+    {
+        if (null == client) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,148 @@
+package com.huawei.imagesearch.util;
+
+/**
+ * HTTP客户端的连接池及超时配置，由{@link HttpClientBase}根据此配置构建可复用的客户端
+ */
+public class HttpClientConfig
+{
+    private int maxTotal = 200;
+    private int defaultMaxPerRoute = 100;
+    private long connectionTimeToLiveSeconds = 180;
+    private long idleConnectionTimeoutSeconds = 60;
+    private int validateAfterInactivityMillis = 2000;
+    private int connectTimeoutMillis = 10000;
+    private int socketTimeoutMillis = 60000;
+    private int connectionRequestTimeoutMillis = 10000;
+    private ConnectionLeakDetector connectionLeakDetector = new ConnectionLeakDetector();
+    private int ioThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 连接池最大连接数，默认200
+     */
+    public int getMaxTotal()
+    {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal)
+    {
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * 每个路由(host)最大连接数，默认100
+     */
+    public int getDefaultMaxPerRoute()
+    {
+        return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute)
+    {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    /**
+     * 连接最长存活时间(秒)，默认180
+     */
+    public long getConnectionTimeToLiveSeconds()
+    {
+        return connectionTimeToLiveSeconds;
+    }
+
+    public void setConnectionTimeToLiveSeconds(long connectionTimeToLiveSeconds)
+    {
+        this.connectionTimeToLiveSeconds = connectionTimeToLiveSeconds;
+    }
+
+    /**
+     * 空闲连接被后台回收前的最长空闲时间(秒)，默认60，小于等于0时不回收
+     */
+    public long getIdleConnectionTimeoutSeconds()
+    {
+        return idleConnectionTimeoutSeconds;
+    }
+
+    public void setIdleConnectionTimeoutSeconds(long idleConnectionTimeoutSeconds)
+    {
+        this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds;
+    }
+
+    /**
+     * 连接空闲超过此时间(毫秒)后，复用前先做可用性校验，默认2000
+     */
+    public int getValidateAfterInactivityMillis()
+    {
+        return validateAfterInactivityMillis;
+    }
+
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis)
+    {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    /**
+     * 建立连接超时时间(毫秒)，默认10000
+     */
+    public int getConnectTimeoutMillis()
+    {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis)
+    {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * 读取响应超时时间(毫秒)，默认60000
+     */
+    public int getSocketTimeoutMillis()
+    {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis)
+    {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    /**
+     * 从连接池获取连接的超时时间(毫秒)，默认10000
+     */
+    public int getConnectionRequestTimeoutMillis()
+    {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis)
+    {
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+    }
+
+    /**
+     * 连接泄漏检测器，用此配置创建的所有客户端都向它报告连接的租出与归还
+     */
+    public ConnectionLeakDetector getConnectionLeakDetector()
+    {
+        return connectionLeakDetector;
+    }
+
+    public void setConnectionLeakDetector(ConnectionLeakDetector connectionLeakDetector)
+    {
+        this.connectionLeakDetector = connectionLeakDetector;
+    }
+
+    /**
+     * 异步客户端的IO线程数，默认为CPU核数
+     */
+    public int getIoThreadCount()
+    {
+        return ioThreadCount;
+    }
+
+    public void setIoThreadCount(int ioThreadCount)
+    {
+        this.ioThreadCount = ioThreadCount;
+    }
+}
@@ -1,93 +1,130 @@
 package com.huawei.imagesearch.util;
 
+import com.huawei.imagesearch.metrics.Metrics;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.*;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
+
 public class HttpClientUtils extends  HttpClientBase{
 
-    public static HttpResponse post(String url, Header[] headers, HttpEntity entity) {
-        CloseableHttpResponse response = null;
-        CloseableHttpClient httpClient = null;
-        try {
-            httpClient = acceptsUntrustedCertsHttpClient();
-            HttpPost post = new HttpPost(url);
-            if (null != headers) {
-                post.setHeaders(headers);
-            }
-            if (null != entity) {
-                post.setEntity(entity);
-            }
-            response = httpClient.execute(post);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException(e.getMessage());
+    /**
+     * 将返回body读取为字符串的处理器，不区分状态码，与之前的返回行为保持一致
+     */
+    public static final ResponseHandler<String> BODY_AS_STRING = new ResponseHandler<String>() {
+        @Override
+        public String handleResponse(HttpResponse response) throws IOException {
+            HttpEntity entity = response.getEntity();
+            return null == entity ? null : EntityUtils.toString(entity, "utf-8");
         }
-        return response;
+    };
+
+    /**
+     * 注意：返回的response持有连接池中的连接，调用方必须关闭response或消费完entity，
+     * 推荐使用带{@link ResponseHandler}的{@link #execute(CloseableHttpClient, HttpUriRequest, ResponseHandler)}
+     */
+    public static HttpResponse post(String url, Header[] headers, HttpEntity entity) {
+        return post(getSharedHttpClient(), url, headers, entity);
+    }
+
+    public static HttpResponse post(CloseableHttpClient httpClient, String url, Header[] headers, HttpEntity entity) {
+        return executeRaw(httpClient, createPost(url, headers, entity));
     }
 
     public static HttpResponse put(String url, Header[] headers, HttpEntity entity) {
-        CloseableHttpResponse response = null;
-        CloseableHttpClient httpClient = null;
+        return put(getSharedHttpClient(), url, headers, entity);
+    }
+
+    public static HttpResponse put(CloseableHttpClient httpClient, String url, Header[] headers, HttpEntity entity) {
+        return executeRaw(httpClient, createPut(url, headers, entity));
+    }
+
+    public static HttpResponse deleteWithBody(String url, Header[] headers, HttpEntity entity) {
+        return deleteWithBody(getSharedHttpClient(), url, headers, entity);
+    }
+
+    public static HttpResponse deleteWithBody(CloseableHttpClient httpClient, String url, Header[] headers, HttpEntity entity) {
+        return executeRaw(httpClient, createDelete(url, headers, entity));
+    }
+
+
+    public static HttpResponse get(String url, Header[] headers){
+        return get(getSharedHttpClient(), url, headers);
+    }
+
+    public static HttpResponse get(CloseableHttpClient httpClient, String url, Header[] headers){
+        return executeRaw(httpClient, createGet(url, headers));
+    }
+
+    /**
+     * 发送请求并交由handler处理返回，无论处理成功与否，entity都会被消费、连接归还连接池
+     * @param httpClient 使用的httpclient
+     * @param request 请求
+     * @param handler 返回处理器
+     * @return handler的处理结果
+     * @throws IOException 网络异常或handler处理异常
+     */
+    public static <T> T execute(CloseableHttpClient httpClient, HttpUriRequest request,
+            ResponseHandler<? extends T> handler) throws IOException {
+        if (!Metrics.isEnabled()) {
+            return httpClient.execute(request, handler);
+        }
+        MeteredResponseHandler<T> metered = new MeteredResponseHandler<T>(request, handler);
         try {
-            httpClient = acceptsUntrustedCertsHttpClient();
-            HttpPut put = new HttpPut(url);
-            if (null != headers) {
-                put.setHeaders(headers);
-            }
-            if (null != entity) {
-                put.setEntity(entity);
-            }
-            response = httpClient.execute(put);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException(e.getMessage());
+            return httpClient.execute(request, metered);
+        } finally {
+            metered.report();
         }
-        return response;
     }
 
-    public static HttpResponse deleteWithBody(String url, Header[] headers, HttpEntity entity) {
-        CloseableHttpResponse response = null;
-        CloseableHttpClient httpClient = null;
+    private static HttpResponse executeRaw(CloseableHttpClient httpClient, HttpUriRequest request) {
         try {
-            httpClient = acceptsUntrustedCertsHttpClient();
-            HttpDeleteWithBody delete = new HttpDeleteWithBody(url);
-
-            if (null != headers) {
-                delete.setHeaders(headers);
-            }
-            if (null != entity) {
-                delete.setEntity(entity);
-            }
-            response = httpClient.execute(delete);
+            return httpClient.execute(request);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException(e.getMessage());
         }
-        return response;
     }
 
+    public static HttpPost createPost(String url, Header[] headers, HttpEntity entity) {
+        HttpPost post = new HttpPost(url);
+        fill(post, headers, entity);
+        return post;
+    }
 
-    public static HttpResponse get(String url, Header[] headers){
-        CloseableHttpResponse response = null;
-        CloseableHttpClient httpClient = null;
-        try {
+    public static HttpPut createPut(String url, Header[] headers, HttpEntity entity) {
+        HttpPut put = new HttpPut(url);
+        fill(put, headers, entity);
+        return put;
+    }
 
-            httpClient = acceptsUntrustedCertsHttpClient();
-            HttpGet get = new HttpGet(url);
-            if (null != headers) {
-                get.setHeaders(headers);
-            }
-            response = httpClient.execute(get);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException(e.getMessage());
+    public static HttpDeleteWithBody createDelete(String url, Header[] headers, HttpEntity entity) {
+        HttpDeleteWithBody delete = new HttpDeleteWithBody(url);
+        fill(delete, headers, entity);
+        return delete;
+    }
+
+    public static HttpGet createGet(String url, Header[] headers) {
+        HttpGet get = new HttpGet(url);
+        if (null != headers) {
+            get.setHeaders(headers);
+        }
+        return get;
+    }
+
+    private static void fill(HttpEntityEnclosingRequestBase request, Header[] headers, HttpEntity entity) {
+        if (null != headers) {
+            request.setHeaders(headers);
+        }
+        if (null != entity) {
+            request.setEntity(entity);
         }
-        return response;
     }
 
     /**
@@ -98,14 +135,11 @@ public class HttpClientUtils extends  HttpClientBase{
      * @return 调用结果
      */
     public static String getHttpPostResult(String url, Header[] headers, StringEntity stringEntity){
-        try
-        {
-            HttpResponse response = HttpClientUtils.post(url, headers, stringEntity);
-            return EntityUtils.toString(response.getEntity());
-        }catch (Exception e){
-            e.printStackTrace();
-        }
-        return null;
+        return getHttpPostResult(getSharedHttpClient(), url, headers, stringEntity);
+    }
+
+    public static String getHttpPostResult(CloseableHttpClient httpClient, String url, Header[] headers, StringEntity stringEntity){
+        return getResult(httpClient, createPost(url, headers, stringEntity));
     }
 
     /**
@@ -116,13 +150,11 @@ public class HttpClientUtils extends  HttpClientBase{
      * @return 调用结果
      */
     public static String getHttpDeleteResult(String url, Header[] headers, StringEntity stringEntity){
-        try {
-            HttpResponse response = HttpClientUtils.deleteWithBody(url, headers, stringEntity);
-            return EntityUtils.toString(response.getEntity());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getHttpDeleteResult(getSharedHttpClient(), url, headers, stringEntity);
+    }
+
+    public static String getHttpDeleteResult(CloseableHttpClient httpClient, String url, Header[] headers, StringEntity stringEntity){
+        return getResult(httpClient, createDelete(url, headers, stringEntity));
     }
 
     /**
@@ -132,13 +164,11 @@ public class HttpClientUtils extends  HttpClientBase{
      * @return 调用结果
      */
     public static String getHttpGetResult(String url, Header[] headers){
-        try {
-            HttpResponse response = HttpClientUtils.get(url, headers);
-            return EntityUtils.toString(response.getEntity());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getHttpGetResult(getSharedHttpClient(), url, headers);
+    }
+
+    public static String getHttpGetResult(CloseableHttpClient httpClient, String url, Header[] headers){
+        return getResult(httpClient, createGet(url, headers));
     }
 
     /**
@@ -149,9 +179,16 @@ public class HttpClientUtils extends  HttpClientBase{
      * @return 调用结果
      */
     public static String getHttpPutResult(String url, Header[] headers, StringEntity stringEntity){
+        return getHttpPutResult(getSharedHttpClient(), url, headers, stringEntity);
+    }
+
+    public static String getHttpPutResult(CloseableHttpClient httpClient, String url, Header[] headers, StringEntity stringEntity){
+        return getResult(httpClient, createPut(url, headers, stringEntity));
+    }
+
+    private static String getResult(CloseableHttpClient httpClient, HttpUriRequest request){
         try {
-            HttpResponse response = HttpClientUtils.put(url, headers, stringEntity);
-            return EntityUtils.toString(response.getEntity());
+            return execute(httpClient, request, BODY_AS_STRING);
         } catch (Exception e) {
             e.printStackTrace();
         }
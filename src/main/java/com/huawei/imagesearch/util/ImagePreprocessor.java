@@ -0,0 +1,215 @@
+package com.huawei.imagesearch.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上传前的图像预处理：用javax.imageio按接近maxDimension的尺寸采样解码，等比缩小到不超过maxDimension，丢弃EXIF等元数据，按指定质量重新编码为JPEG。
+ * 无法解码、处理结果不比原图小或处理过程中出现任何异常时，该图像使用原始字节，不影响调用。
+ * 注意：丢弃元数据后EXIF中的方向信息也随之丢弃，线程安全
+ */
+public class ImagePreprocessor
+{
+    private int maxDimension = 1024;
+    private float jpegQuality = 0.85f;
+    private long minBytes = 100 * 1024;
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * 处理图像
+     * @param image 原始图像内容
+     * @return 处理后的JPEG内容，无需处理或处理失败时返回原始内容
+     */
+    public byte[] process(byte[] image)
+    {
+        bytesIn.addAndGet(image.length);
+        byte[] result = image;
+        if (image.length >= minBytes) {
+            try {
+                byte[] processed = reencode(image);
+                if (null != processed && processed.length < image.length) {
+                    result = processed;
+                }
+            } catch (Exception e) {
+                // 使用原始字节
+            }
+        }
+        (result == image ? fallbackCount : processedCount).incrementAndGet();
+        bytesOut.addAndGet(result.length);
+        return result;
+    }
+
+    private byte[] reencode(byte[] image) throws IOException
+    {
+        BufferedImage source = decode(image);
+        if (null == source) {
+            return null;
+        }
+        BufferedImage rgb = scale(source);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(1024, image.length / 4));
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            // 不传入元数据，EXIF/ICC等信息不会写出
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码时按整数倍隔行隔列采样，解码结果的最长边不小于maxDimension且接近它，大图不会以原始尺寸整张解码到内存
+     * @return 没有可用的解码器时返回null
+     */
+    private BufferedImage decode(byte[] image) throws IOException
+    {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = null == input ? null : ImageIO.getImageReaders(input);
+            if (null == readers || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / Math.max(1, maxDimension));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩小到不超过maxDimension，并转为不含透明通道的RGB；每次最多缩小一半，兼顾速度和质量
+     */
+    private BufferedImage scale(BufferedImage source)
+    {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, maxDimension / (double) Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            if (current != source && current.getWidth() == width && current.getHeight() == height) {
+                break;
+            }
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * 图像宽、高的最大像素数，默认1024
+     */
+    public int getMaxDimension()
+    {
+        return maxDimension;
+    }
+
+    public void setMaxDimension(int maxDimension)
+    {
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * JPEG编码质量，取值0到1，默认0.85
+     */
+    public float getJpegQuality()
+    {
+        return jpegQuality;
+    }
+
+    public void setJpegQuality(float jpegQuality)
+    {
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * 小于此字节数的图像直接使用原图，默认100KB
+     */
+    public long getMinBytes()
+    {
+        return minBytes;
+    }
+
+    public void setMinBytes(long minBytes)
+    {
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * @return 使用处理结果的图像数
+     */
+    public long getProcessedCount()
+    {
+        return processedCount.get();
+    }
+
+    /**
+     * @return 使用原始字节的图像数
+     */
+    public long getFallbackCount()
+    {
+        return fallbackCount.get();
+    }
+
+    /**
+     * @return 处理前的累计字节数
+     */
+    public long getBytesIn()
+    {
+        return bytesIn.get();
+    }
+
+    /**
+     * @return 处理后实际上传的累计字节数
+     */
+    public long getBytesOut()
+    {
+        return bytesOut.get();
+    }
+}
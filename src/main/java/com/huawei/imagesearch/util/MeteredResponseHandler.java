@@ -0,0 +1,84 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.metrics.Metrics;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 记录状态码和返回字节数的handler包装，请求结束时通过{@link #report}上报给{@link Metrics}
+ */
+class MeteredResponseHandler<T> implements ResponseHandler<T>
+{
+    private final ResponseHandler<? extends T> handler;
+    private final HttpUriRequest request;
+    private final long startNanos = System.nanoTime();
+    private volatile int statusCode = -1;
+    private volatile CountingEntity entity;
+
+    MeteredResponseHandler(HttpUriRequest request, ResponseHandler<? extends T> handler)
+    {
+        this.request = request;
+        this.handler = handler;
+    }
+
+    @Override
+    public T handleResponse(HttpResponse response) throws IOException
+    {
+        statusCode = response.getStatusLine().getStatusCode();
+        HttpEntity original = response.getEntity();
+        if (null != original) {
+            entity = new CountingEntity(original);
+            response.setEntity(entity);
+        }
+        return handler.handleResponse(response);
+    }
+
+    void report()
+    {
+        long requestBytes = -1;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity requestEntity = ((HttpEntityEnclosingRequest) request).getEntity();
+            requestBytes = null == requestEntity ? 0 : requestEntity.getContentLength();
+        }
+        CountingEntity counted = entity;
+        long responseBytes = null == counted ? (statusCode < 0 ? -1 : 0) : counted.getBytes();
+        Metrics.getListener().onHttpRequest(request.getMethod(), statusCode, System.nanoTime() - startNanos,
+                requestBytes, responseBytes);
+    }
+
+    private static class CountingEntity extends HttpEntityWrapper
+    {
+        private volatile CountingInputStream content;
+
+        CountingEntity(HttpEntity wrapped)
+        {
+            super(wrapped);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            CountingInputStream in = new CountingInputStream(super.getContent());
+            content = in;
+            return in;
+        }
+
+        long getBytes()
+        {
+            long length = getContentLength();
+            if (length >= 0) {
+                return length;
+            }
+            CountingInputStream in = content;
+            return null == in ? -1 : in.getByteCount();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.model.ResponseParsers;
+import com.huawei.imagesearch.model.ServiceResponse;
+
+import java.io.IOException;
+
+/**
+ * 服务返回body的通用判断，与类型化接口的{@link ServiceResponse#isSuccess()}使用同一规则
+ */
+public class ResponseUtils
+{
+    /**
+     * 判断接口调用是否成功：返回body为空或为JSON对象，且不包含error_code和error_msg。
+     * 返回String的接口拿不到HTTP状态码，只判断body；服务的4xx/5xx返回body中都带有error_code
+     * @param response 接口返回的body，调用异常时为null
+     * @return 调用成功返回true
+     */
+    public static boolean isSuccess(String response)
+    {
+        return isSuccess(0, response);
+    }
+
+    /**
+     * 判断接口调用是否成功，规则同{@link ServiceResponse#isSuccess()}
+     * @param statusCode HTTP状态码，未知时传0
+     * @param response 接口返回的body，调用异常时为null
+     * @return 调用成功返回true
+     */
+    public static boolean isSuccess(int statusCode, String response)
+    {
+        if (null == response || statusCode >= 400) {
+            return false;
+        }
+        try {
+            return ResponseParsers.parseServiceResponse(response).isSuccess();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.huawei.imagesearch.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 预先解析好的请求地址，签名时直接使用其中的URI和查询参数，不再重复解析url字符串
+ */
+public class SignableUrl
+{
+    private final String url;
+    private final URI uri;
+    private final Map<String, String> parameters;
+
+    private SignableUrl(String url, URI uri, Map<String, String> parameters)
+    {
+        this.url = url;
+        this.uri = uri;
+        this.parameters = parameters;
+    }
+
+    /**
+     * 解析url及其中的查询参数
+     * @param url 请求地址
+     * @return 解析结果
+     * @throws URISyntaxException url格式错误时，抛出此异常
+     */
+    public static SignableUrl parse(String url) throws URISyntaxException
+    {
+        URI uri = new URI(url);
+        Map<String, String> parameters = Collections.emptyMap();
+        int queryStart = url.indexOf('?');
+        if (queryStart >= 0 && queryStart < url.length() - 1) {
+            parameters = new HashMap<String, String>();
+            int start = queryStart + 1;
+            while (start <= url.length()) {
+                int end = url.indexOf('&', start);
+                if (end < 0) {
+                    end = url.length();
+                }
+                if (end > start) {
+                    int eq = url.indexOf('=', start);
+                    if (eq < 0 || eq > end) {
+                        parameters.put(url.substring(start, end), "");
+                    } else {
+                        parameters.put(url.substring(start, eq), url.substring(eq + 1, end));
+                    }
+                }
+                start = end + 1;
+            }
+            parameters = Collections.unmodifiableMap(parameters);
+        }
+        return new SignableUrl(url, uri, parameters);
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public URI getUri()
+    {
+        return uri;
+    }
+
+    /**
+     * @return 查询参数，不可修改
+     */
+    public Map<String, String> getParameters()
+    {
+        return parameters;
+    }
+
+    @Override
+    public String toString()
+    {
+        return url;
+    }
+}
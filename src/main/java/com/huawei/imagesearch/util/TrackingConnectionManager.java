@@ -0,0 +1,76 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.metrics.Metrics;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 向{@link ConnectionLeakDetector}报告连接租出与归还的连接池
+ */
+class TrackingConnectionManager extends PoolingHttpClientConnectionManager
+{
+    private final ConnectionLeakDetector detector;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    TrackingConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, long timeToLive,
+            TimeUnit tunit, ConnectionLeakDetector detector)
+    {
+        super(socketFactoryRegistry, null, null, null, timeToLive, tunit);
+        this.detector = detector;
+        detector.attach(this);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state)
+    {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest()
+        {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+            {
+                if (!Metrics.isEnabled()) {
+                    HttpClientConnection conn = request.get(timeout, tunit);
+                    detector.onLeased();
+                    return conn;
+                }
+                int waiting = pending.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    HttpClientConnection conn = request.get(timeout, tunit);
+                    detector.onLeased();
+                    Metrics.getListener().onConnectionLeased(System.nanoTime() - start, waiting);
+                    return conn;
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+
+            @Override
+            public boolean cancel()
+            {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit)
+    {
+        try {
+            super.releaseConnection(managedConn, state, keepalive, tunit);
+        } finally {
+            detector.onReleased();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.huawei.imagesearch.util;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向{@link ConnectionLeakDetector}报告连接租出与归还的异步连接池，与{@link TrackingConnectionManager}对应；
+ * 同一配置的同步客户端已关联检测器时，检测器的连接池状态仍为同步客户端的
+ */
+class TrackingNConnectionManager extends PoolingNHttpClientConnectionManager
+{
+    private final ConnectionLeakDetector detector;
+
+    TrackingNConnectionManager(ConnectingIOReactor ioReactor, Registry<SchemeIOSessionStrategy> strategyRegistry,
+            long timeToLive, TimeUnit tunit, ConnectionLeakDetector detector)
+    {
+        super(ioReactor, null, strategyRegistry, null, null, timeToLive, tunit);
+        this.detector = detector;
+        detector.attachIfAbsent(this);
+    }
+
+    @Override
+    public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout,
+            long leaseTimeout, TimeUnit tunit, final FutureCallback<NHttpClientConnection> callback)
+    {
+        return super.requestConnection(route, state, connectTimeout, leaseTimeout, tunit,
+                new FutureCallback<NHttpClientConnection>()
+                {
+                    @Override
+                    public void completed(NHttpClientConnection result)
+                    {
+                        detector.onLeased();
+                        if (null != callback) {
+                            callback.completed(result);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e)
+                    {
+                        if (null != callback) {
+                            callback.failed(e);
+                        }
+                    }
+
+                    @Override
+                    public void cancelled()
+                    {
+                        if (null != callback) {
+                            callback.cancelled();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public void releaseConnection(NHttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit)
+    {
+        try {
+            super.releaseConnection(managedConn, state, keepalive, tunit);
+        } finally {
+            detector.onReleased();
+        }
+    }
+}
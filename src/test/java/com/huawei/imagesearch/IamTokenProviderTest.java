@@ -0,0 +1,80 @@
+package com.huawei.imagesearch;
+
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class IamTokenProviderTest
+{
+    private LocalImageSearchServer server;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        server.setLatencyMillis(50, 50);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+    }
+
+    @Test
+    public void concurrentCallersShareOneTokenRequest() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (final IamTokenProvider provider = new IamTokenProvider("user", "pwd", "domain", "region",
+                server.getIamUrl(), 0)) {
+            List<Future<String>> tokens = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                tokens.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call() throws IOException
+                    {
+                        return provider.getToken();
+                    }
+                }));
+            }
+            String token = tokens.get(0).get();
+            for (Future<String> other : tokens) {
+                assertEquals(token, other.get());
+            }
+            assertEquals(1, server.getRequestCount());
+            assertEquals(token, provider.getToken());
+            assertEquals(1, server.getRequestCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void refreshesTokenInsideRefreshAheadWindow() throws Exception
+    {
+        server.setTokenValidityMillis(60L * 60 * 1000);
+        try (IamTokenProvider provider = new IamTokenProvider("user", "pwd", "domain", "region",
+                server.getIamUrl(), 2L * 60 * 60 * 1000)) {
+            String first = provider.getToken();
+
+            assertEquals(first, provider.getToken());
+            String second = provider.refresh().get().getToken();
+            assertNotEquals(first, second);
+            assertEquals(second, provider.getToken());
+        }
+    }
+}
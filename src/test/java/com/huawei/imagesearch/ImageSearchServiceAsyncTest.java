@@ -0,0 +1,86 @@
+package com.huawei.imagesearch;
+
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ImageSearchServiceAsyncTest
+{
+    private LocalImageSearchServer server;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        server.setAutoCreateInstances(true);
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, String> tags = new HashMap<String, String>();
+            tags.put("color", 0 == i ? "red" : "blue");
+            server.addImage("p", "i", "img-" + i + ".jpg", tags);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+    }
+
+    @Test
+    public void tokenAuthenticatedAsyncCallsMatchSyncCalls() throws Exception
+    {
+        try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint())) {
+            assertParity(service);
+        }
+    }
+
+    @Test
+    public void signedAsyncCallsMatchSyncCalls() throws Exception
+    {
+        try (ImageSearchService service = new ImageSearchService("imagesearch", "region", "ak", "sk",
+                server.getEndpoint())) {
+            assertParity(service);
+        }
+    }
+
+    private void assertParity(ImageSearchService service) throws Exception
+    {
+        HashMap<String, String> red = new HashMap<String, String>();
+        red.put("color", "red");
+        ArrayList<String> paths = new ArrayList<String>(Arrays.asList("img-0.jpg", "img-1.jpg"));
+
+        assertSameBody(service.requestImageCheck("p", "i", "img-0.jpg"),
+                service.requestImageCheckAsync("p", "i", "img-0.jpg").get());
+        assertSameBody(service.requestSearchSimUrl("p", "i", "img-1.jpg", 10, 0, null),
+                service.requestSearchSimUrlAsync("p", "i", "img-1.jpg", 10, 0, null).get());
+        assertSameBody(service.requestSearchSimTags("p", "i", 10, 0, red),
+                service.requestSearchSimTagsAsync("p", "i", 10, 0, red).get());
+        assertSameBody(service.requestCrossSearch("p", 10, 0, paths, "i", "i"),
+                service.requestCrossSearchAsync("p", 10, 0, paths, "i", "i").get());
+        assertSameBody(service.requestGetServiceInfo("p", "i"), service.requestGetServiceInfoAsync("p", "i").get());
+        assertSameBody(service.requestUpdateTags("p", "i", "img-2.jpg", red),
+                service.requestUpdateTagsAsync("p", "i", "img-2.jpg", red).get());
+        assertSameBody(service.requestCreateIndexUrl("p", "i", "new-0.jpg", red),
+                service.requestCreateIndexUrlAsync("p", "i", "new-1.jpg", red).get());
+        assertSameBody(service.requestDeleteIndex("p", "i", "new-0.jpg"),
+                service.requestDeleteIndexAsync("p", "i", "new-1.jpg").get());
+        assertSameBody(service.requestDeleteIndex("p", "i", "missing.jpg"),
+                service.requestDeleteIndexAsync("p", "i", "missing.jpg").get());
+    }
+
+    private static void assertSameBody(String sync, String async)
+    {
+        assertNotNull(sync);
+        assertEquals(sync, async);
+    }
+}
@@ -0,0 +1,146 @@
+package com.huawei.imagesearch.bulk;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.util.ResponseUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexedDigestStoreTest
+{
+    /**
+     * 文件头和每条记录的长度，与IndexedDigestStore的文件格式一致
+     */
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_LENGTH = 49;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        server.setAutoCreateInstances(true);
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void skipsUnchangedImagesAfterReopen() throws Exception
+    {
+        File images = folder.newFolder("images");
+        File file = folder.newFile("digests.db");
+        for (int i = 0; i < 3; i++) {
+            write(new File(images, "img-" + i + ".jpg"), "image-" + i);
+        }
+        try (IndexedDigestStore store = new IndexedDigestStore(file)) {
+            BulkIndexReport report = indexer(store).indexDirectory(images);
+            assertEquals(3, report.getSucceeded());
+            assertEquals(3, store.size());
+        }
+        write(new File(images, "img-0.jpg"), "changed");
+        long requests = server.getRequestCount();
+
+        try (IndexedDigestStore store = new IndexedDigestStore(file)) {
+            assertEquals(3, store.size());
+            BulkIndexReport report = indexer(store).indexDirectory(images);
+            assertEquals(3, report.getSucceeded());
+            assertEquals(2, report.getSkipped());
+            assertEquals(requests + 1, server.getRequestCount());
+
+            String deleted = new File(images, "img-1.jpg").getPath();
+            assertTrue(ResponseUtils.isSuccess(service.requestDeleteIndex("p", "i", deleted)));
+            assertFalse(store.contains(digest("image-1"), "p", "i", deleted));
+            assertEquals(2, indexer(store).indexDirectory(images).getSkipped());
+        }
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException
+    {
+        File file = folder.newFile("digests.db");
+        try (IndexedDigestStore store = new IndexedDigestStore(file)) {
+            for (int i = 0; i < 3; i++) {
+                store.add(digest("image-" + i), "p", "i", "img-" + i);
+            }
+        }
+        long length = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] {1, 2, 3, 4, 5});
+        }
+
+        try (IndexedDigestStore store = new IndexedDigestStore(file)) {
+            assertEquals(length, file.length());
+            assertEquals(3, store.size());
+            assertTrue(store.contains(digest("image-2"), "p", "i", "img-2"));
+        }
+    }
+
+    @Test
+    public void refusesToOpenStoreWithCorruptRecordInTheMiddle() throws IOException
+    {
+        File file = folder.newFile("digests.db");
+        try (IndexedDigestStore store = new IndexedDigestStore(file)) {
+            for (int i = 0; i < 3; i++) {
+                store.add(digest("image-" + i), "p", "i", "img-" + i);
+            }
+        }
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(HEADER_LENGTH + RECORD_LENGTH);
+            raf.write(9);
+        }
+
+        try {
+            new IndexedDigestStore(file).close();
+            fail("corrupt record must not be truncated away");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+        assertEquals(length, file.length());
+    }
+
+    private BulkIndexer indexer(IndexedDigestStore store)
+    {
+        BulkIndexer indexer = new BulkIndexer(service, "p", "i");
+        indexer.setDigestStore(store);
+        return indexer;
+    }
+
+    private static void write(File file, String content) throws IOException
+    {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] digest(String content)
+    {
+        return DigestUtils.sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+package com.huawei.imagesearch.bulk;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagUpdateQueueTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        for (int i = 0; i < 3; i++) {
+            server.addImage("p", "i", "img-" + i + ".jpg", null);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void sendsOnePutPerPathWithLastTags() throws Exception
+    {
+        List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+        try (TagUpdateQueue queue = new TagUpdateQueue(service, 60000)) {
+            for (int v = 0; v < 10; v++) {
+                for (int i = 0; i < 3; i++) {
+                    futures.add(queue.update("p", "i", "img-" + i + ".jpg", tags(v)));
+                }
+            }
+            assertEquals(3, queue.getPendingCount());
+            queue.flush().get(10, TimeUnit.SECONDS);
+
+            assertEquals(30, queue.getSubmittedCount());
+            assertEquals(27, queue.getCoalescedCount());
+            assertEquals(3, queue.getSentCount());
+            assertEquals(0, queue.getFailedCount());
+        }
+        assertEquals(3, server.getRequestCount());
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals("9", service.imageCheck("p", "i", "img-" + i + ".jpg").getTags().get("v"));
+        }
+    }
+
+    @Test
+    public void sendsWhenMaxPendingPathsAreWaiting() throws Exception
+    {
+        try (TagUpdateQueue queue = new TagUpdateQueue(service, 60000)) {
+            queue.setMaxPending(3);
+            queue.update("p", "i", "img-0.jpg", tags(0));
+            queue.update("p", "i", "img-1.jpg", tags(0));
+            CompletableFuture<String> last = queue.update("p", "i", "img-2.jpg", tags(0));
+
+            last.get(10, TimeUnit.SECONDS);
+            assertTrue(queue.awaitFlush(10, TimeUnit.SECONDS));
+            assertEquals(3, queue.getSentCount());
+        }
+    }
+
+    @Test
+    public void countsUpdatesAnsweredWithError() throws Exception
+    {
+        server.setErrorRate(1);
+        try (TagUpdateQueue queue = new TagUpdateQueue(service, 60000)) {
+            CompletableFuture<String> future = queue.update("p", "i", "img-0.jpg", tags(0));
+            queue.update("p", "i", "img-0.jpg", tags(1));
+            queue.flush();
+
+            assertTrue(queue.awaitFlush(10, TimeUnit.SECONDS));
+            assertTrue(future.get().contains("error_code"));
+            assertEquals(1, queue.getFailedCount());
+            assertEquals(1, queue.getCoalescedCount());
+        }
+    }
+
+    private static HashMap<String, String> tags(int version)
+    {
+        HashMap<String, String> tags = new HashMap<String, String>();
+        tags.put("v", String.valueOf(version));
+        return tags;
+    }
+}
@@ -0,0 +1,148 @@
+package com.huawei.imagesearch.cache;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.model.ImageCheckResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImageExistenceCacheTest
+{
+    private static final String EXISTS_BODY = "{\"result\":{\"exist\":true,\"path\":\"a.jpg\"}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private ImageExistenceCache cache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        cache = new ImageExistenceCache(100, 60000, 60000);
+        service.setExistenceCache(cache);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void recordsAddedImageWithoutCheckRequest()
+    {
+        HashMap<String, String> tags = new HashMap<String, String>();
+        tags.put("color", "red");
+        assertTrue(service.createIndexUrl("p", "i", "a.jpg", tags).isSuccess());
+        long requests = server.getRequestCount();
+
+        ImageCheckResult result = service.imageCheck("p", "i", "a.jpg");
+
+        assertTrue(result.isExist());
+        assertEquals("red", result.getTags().get("color"));
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void recordsDeletedImageAsAbsent() throws Exception
+    {
+        service.createIndexUrl("p", "i", "a.jpg", null);
+        service.deleteIndexAsync("p", "i", "a.jpg").get();
+        long requests = server.getRequestCount();
+
+        assertFalse(service.imageCheck("p", "i", "a.jpg").isExist());
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void cachesCheckResponse()
+    {
+        server.addImage("p", "i", "a.jpg", null);
+
+        assertTrue(service.imageCheck("p", "i", "a.jpg").isExist());
+        assertTrue(service.imageCheck("p", "i", "a.jpg").isExist());
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void dropsInstanceEntriesWhenInstanceDeleted()
+    {
+        server.addImage("p", "i", "a.jpg", null);
+        service.imageCheck("p", "i", "a.jpg");
+        service.requestDeleteService("p", "i");
+        server.addImage("p", "i", "a.jpg", null);
+        long requests = server.getRequestCount();
+
+        assertTrue(service.imageCheck("p", "i", "a.jpg").isExist());
+        assertEquals(requests + 1, server.getRequestCount());
+    }
+
+    @Test
+    public void rejectsCheckStartedBeforeInstanceInvalidated()
+    {
+        long version = cache.version();
+        cache.invalidate("p", "i");
+
+        cache.put("p", "i", "a.jpg", EXISTS_BODY, version);
+        assertNull(cache.get("p", "i", "a.jpg"));
+
+        cache.put("p", "other", "a.jpg", EXISTS_BODY, version);
+        cache.put("p", "i", "a.jpg", EXISTS_BODY, cache.version());
+        assertEquals(EXISTS_BODY, cache.get("p", "other", "a.jpg"));
+        assertEquals(EXISTS_BODY, cache.get("p", "i", "a.jpg"));
+    }
+
+    @Test
+    public void rejectsCheckStartedBeforeInvalidateAll()
+    {
+        long version = cache.version();
+        cache.invalidate("p", "i");
+        cache.invalidateAll();
+
+        cache.put("p", "other", "a.jpg", EXISTS_BODY, version);
+        assertNull(cache.get("p", "other", "a.jpg"));
+
+        cache.put("p", "i", "a.jpg", EXISTS_BODY, cache.version());
+        assertEquals(EXISTS_BODY, cache.get("p", "i", "a.jpg"));
+    }
+
+    @Test
+    public void answersAbsentPathsFromSnapshotFile() throws IOException
+    {
+        server.addImage("p", "i", "a.jpg", null);
+        server.addImage("p", "i", "b.jpg", null);
+        File snapshot = folder.newFile("snapshot.txt");
+        Files.write(snapshot.toPath(), Arrays.asList("a.jpg", "", "b.jpg"), StandardCharsets.UTF_8);
+        cache.loadSnapshot("p", "i", snapshot, 0.001);
+
+        assertFalse(service.imageCheck("p", "i", "missing.jpg").isExist());
+        assertEquals(0, server.getRequestCount());
+        assertEquals(1, cache.getFilterHitCount());
+
+        assertTrue(service.imageCheck("p", "i", "b.jpg").isExist());
+        assertEquals(1, server.getRequestCount());
+    }
+}
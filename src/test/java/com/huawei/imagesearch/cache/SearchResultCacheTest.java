@@ -0,0 +1,87 @@
+package com.huawei.imagesearch.cache;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SearchResultCacheTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private SearchResultCache cache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        server.addImage("p", "i", "a.jpg", null);
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        cache = new SearchResultCache(100, 60000);
+        service.setSearchCache(cache);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void servesRepeatedSearchFromCache()
+    {
+        String first = service.requestSearchSimUrl("p", "i", "a.jpg", 10, 0, null);
+        String second = service.requestSearchSimUrl("p", "i", "a.jpg", 10, 0, null);
+
+        assertNotNull(first);
+        assertEquals(first, second);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void invalidatesInstanceAfterMutation()
+    {
+        service.requestSearchSimUrl("p", "i", "a.jpg", 10, 0, null);
+        service.requestCreateIndexUrl("p", "i", "b.jpg", null);
+        service.requestSearchSimUrl("p", "i", "a.jpg", 10, 0, null);
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(0, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void keepsOtherInstancesCached()
+    {
+        server.addImage("p", "j", "a.jpg", null);
+        service.requestSearchSimUrl("p", "j", "a.jpg", 10, 0, null);
+        service.requestCreateIndexUrl("p", "i", "b.jpg", null);
+        service.requestSearchSimUrl("p", "j", "a.jpg", 10, 0, null);
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void rejectsSearchStartedBeforeInvalidateAll()
+    {
+        SearchCacheKey key = SearchCacheKey.forPath("p", "i", "a.jpg", 10, 0, null);
+        long generation = cache.generation("p", "i");
+        cache.invalidateAll();
+
+        cache.put(key, "stale", generation);
+        assertNull(cache.get(key));
+
+        cache.put(key, "fresh", cache.generation("p", "i"));
+        assertEquals("fresh", cache.get(key));
+    }
+}
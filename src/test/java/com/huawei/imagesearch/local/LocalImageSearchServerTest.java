@@ -0,0 +1,109 @@
+package com.huawei.imagesearch.local;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.util.ResponseUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalImageSearchServerTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void keepsIndexInMemory()
+    {
+        server.addImage("p", "i", "a.jpg", null);
+
+        assertTrue(service.imageCheck("p", "i", "a.jpg").isExist());
+        assertTrue(ResponseUtils.isSuccess(service.requestDeleteIndex("p", "i", "a.jpg")));
+        assertEquals(0, server.getIndexSize("p", "i"));
+        assertEquals(2, server.getRequestCount());
+
+        server.reset();
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void rejectsRequestWithoutCredentials() throws IOException
+    {
+        HttpURLConnection connection = open(server.getEndpoint() + "/v1/p/service/i");
+        try {
+            assertEquals(401, connection.getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void injectsErrorsAndThrottling() throws IOException
+    {
+        server.addImage("p", "i", "a.jpg", null);
+        server.setErrorRate(1);
+        server.setErrorStatusCode(500);
+
+        String error = service.requestDeleteIndex("p", "i", "a.jpg");
+        assertFalse(ResponseUtils.isSuccess(error));
+        assertTrue(error.contains("LOCAL.0500"));
+        assertEquals(1, server.getInjectedErrorCount());
+        assertEquals(1, server.getIndexSize("p", "i"));
+
+        server.setErrorRate(0);
+        server.setThrottleRate(1);
+        server.setRetryAfterSeconds(7);
+        HttpURLConnection connection = open(server.getEndpoint() + "/v1/p/service/i");
+        connection.setRequestProperty("X-Auth-Token", "token");
+        try {
+            assertEquals(429, connection.getResponseCode());
+            assertEquals("7", connection.getHeaderField("Retry-After"));
+        } finally {
+            connection.disconnect();
+        }
+        assertEquals(1, server.getThrottledCount());
+    }
+
+    @Test
+    public void issuesTokens() throws IOException
+    {
+        HttpURLConnection connection = open(server.getIamUrl());
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("{}".getBytes("UTF-8"));
+        try {
+            assertEquals(201, connection.getResponseCode());
+            assertNotNull(connection.getHeaderField("X-Subject-Token"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException
+    {
+        return (HttpURLConnection) new URL(url).openConnection();
+    }
+}
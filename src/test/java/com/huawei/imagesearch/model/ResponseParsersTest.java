@@ -0,0 +1,94 @@
+package com.huawei.imagesearch.model;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.util.ResponseUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseParsersTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void stopsParsingSearchResultAtMaxHits()
+    {
+        for (int i = 0; i < 5; i++) {
+            server.addImage("p", "i", "img-" + i + ".jpg", null);
+        }
+
+        SearchResult all = service.searchSimUrl("p", "i", "img-0.jpg", 10, 0, null, 0);
+        SearchResult first = service.searchSimUrl("p", "i", "img-0.jpg", 10, 0, null, 2);
+
+        assertTrue(all.isSuccess());
+        assertEquals(5, all.getHits().size());
+        assertFalse(all.isTruncated());
+        assertEquals(2, first.getHits().size());
+        assertTrue(first.isTruncated());
+        assertEquals(all.getHits().get(1).getPath(), first.getHits().get(1).getPath());
+    }
+
+    @Test
+    public void parsesImageCheckWithTags()
+    {
+        HashMap<String, String> tags = new HashMap<String, String>();
+        tags.put("color", "red");
+        server.addImage("p", "i", "a.jpg", tags);
+
+        ImageCheckResult result = service.imageCheck("p", "i", "a.jpg");
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.isExist());
+        assertEquals("red", result.getTags().get("color"));
+    }
+
+    @Test
+    public void parsesErrorAndStatusCode()
+    {
+        server.setAutoCreateInstances(false);
+        ServiceResponse response = service.getServiceInfo("p", "missing");
+
+        assertFalse(response.isSuccess());
+        assertEquals(404, response.getStatusCode());
+        assertNotNull(response.getError().getCode());
+    }
+
+    @Test
+    public void responseUtilsUsesServiceResponseRule() throws IOException
+    {
+        String[] bodies = {"{\"result\":\"success\"}", "{\"error_code\":\"IS.0001\"}", "{\"error_msg\":\"failed\"}", ""};
+        for (String body : bodies) {
+            assertEquals(body, ResponseParsers.parseServiceResponse(body).isSuccess(), ResponseUtils.isSuccess(body));
+        }
+        assertFalse(ResponseUtils.isSuccess("not json"));
+        assertFalse(ResponseUtils.isSuccess(null));
+        assertFalse(ResponseUtils.isSuccess(503, "{\"result\":\"success\"}"));
+        assertNull(ResponseParsers.parseServiceResponse("{\"result\":{\"nested\":[1,2]}}").getError());
+    }
+}
@@ -0,0 +1,128 @@
+package com.huawei.imagesearch.outbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MutationJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void truncatesTornTail() throws Exception
+    {
+        File file = folder.newFile("journal.log");
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(Mutation.Type.CREATE_INDEX_URL, "p", "i", "img-" + i, null).get();
+            }
+        }
+        long length = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            // 长度为100的记录只写了一部分
+            out.write(new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 5, 6, 7});
+        }
+
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            assertEquals(length, file.length());
+            assertEquals(3, journal.getRecovered().size());
+            journal.append(Mutation.Type.DELETE_INDEX, "p", "i", "img-0", null).get();
+        }
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            List<Mutation> recovered = journal.getRecovered();
+            assertEquals(4, recovered.size());
+            assertEquals(Mutation.Type.DELETE_INDEX, recovered.get(3).getType());
+            assertEquals(4, recovered.get(3).getSequence());
+        }
+    }
+
+    @Test
+    public void replaysUnacknowledgedEntries() throws Exception
+    {
+        File file = folder.newFile("journal.log");
+        HashMap<String, String> tags = new HashMap<String, String>();
+        tags.put("color", "red");
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            List<Mutation> appended = new ArrayList<Mutation>();
+            for (int i = 0; i < 5; i++) {
+                appended.add(journal.append(Mutation.Type.CREATE_INDEX_URL, "p", "i", "img-" + i, tags).get());
+            }
+            journal.acknowledge(appended.get(0));
+            journal.acknowledge(appended.get(3));
+        }
+
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            List<Mutation> recovered = journal.getRecovered();
+            assertEquals(3, recovered.size());
+            assertEquals("img-1", recovered.get(0).getPath());
+            assertEquals("img-2", recovered.get(1).getPath());
+            assertEquals("img-4", recovered.get(2).getPath());
+            assertEquals("red", recovered.get(2).getTags().get("color"));
+            assertEquals(6, journal.append(Mutation.Type.UPDATE_TAGS, "p", "i", "img-1", tags).get().getSequence());
+        }
+    }
+
+    @Test
+    public void compactsAcknowledgedRecords() throws Exception
+    {
+        File file = folder.newFile("journal.log");
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            journal.setCompactThreshold(8);
+            List<Mutation> appended = new ArrayList<Mutation>();
+            for (int i = 0; i < 5; i++) {
+                appended.add(journal.append(Mutation.Type.CREATE_INDEX_URL, "p", "i", "img-" + i, null).get());
+            }
+            long length = file.length();
+            for (int i = 0; i < 4; i++) {
+                journal.acknowledge(appended.get(i));
+            }
+            // 确认记录由写线程异步写入，可能分多批；4条确认共计8条已失效记录，全部写入后才压缩
+            long deadline = System.currentTimeMillis() + 10000;
+            while (0 == journal.getCompactionCount() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(1, journal.getCompactionCount());
+            assertTrue(file.length() < length);
+            assertEquals(1, journal.getLiveCount());
+            journal.append(Mutation.Type.DELETE_INDEX, "p", "i", "img-4", null).get();
+        }
+
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            List<Mutation> recovered = journal.getRecovered();
+            assertEquals(2, recovered.size());
+            assertEquals(5, recovered.get(0).getSequence());
+            assertEquals(6, recovered.get(1).getSequence());
+        }
+    }
+
+    @Test
+    public void countsCallbackFailuresAndKeepsMutation() throws Exception
+    {
+        File file = folder.newFile("journal.log");
+        IllegalStateException failure = new IllegalStateException("enqueue failed");
+        try (MutationJournal journal = new MutationJournal(file, m -> {
+            throw failure;
+        })) {
+            journal.append(Mutation.Type.CREATE_INDEX_URL, "p", "i", "img-0", null).get();
+
+            assertEquals(1, journal.getErrorCount());
+            assertSame(failure, journal.getLastError());
+            assertEquals(1, journal.getLiveCount());
+        }
+        try (MutationJournal journal = new MutationJournal(file, m -> { })) {
+            assertEquals(1, journal.getRecovered().size());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.huawei.imagesearch.outbox;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MutationOutboxTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deliversJournaledMutations() throws Exception
+    {
+        File journal = folder.newFile("outbox.log");
+        try (LocalImageSearchServer server = new LocalImageSearchServer()) {
+            server.start();
+            server.setErrorRate(0.3);
+            try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+                    MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                outbox.setRetryDelay(10, 50);
+                HashMap<String, String> tags = new HashMap<String, String>();
+                tags.put("v", "1");
+                for (int i = 0; i < 20; i++) {
+                    outbox.createIndexUrl("p", "i", "img-" + i, tags).get();
+                }
+                outbox.deleteIndex("p", "i", "img-0").get();
+
+                assertTrue(outbox.awaitDrained(30, TimeUnit.SECONDS));
+                assertEquals(19, server.getIndexSize("p", "i"));
+                assertEquals(0, outbox.getPendingCount());
+            }
+        }
+    }
+
+    @Test
+    public void replaysUnacknowledgedMutationsAfterRestart() throws Exception
+    {
+        File journal = folder.newFile("outbox.log");
+        String unreachable;
+        try (LocalImageSearchServer server = new LocalImageSearchServer()) {
+            server.start();
+            unreachable = server.getEndpoint();
+        }
+        try (ImageSearchService service = new ImageSearchService(() -> "token", "region", unreachable);
+                MutationOutbox outbox = new MutationOutbox(service, journal)) {
+            outbox.setRetryDelay(10, 50);
+            for (int i = 0; i < 10; i++) {
+                outbox.createIndexUrl("p", "i", "img-" + i, null).get();
+            }
+            outbox.deleteIndex("p", "i", "img-0").get();
+        }
+
+        try (LocalImageSearchServer server = new LocalImageSearchServer()) {
+            server.start();
+            try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint())) {
+                try (MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                    assertEquals(11, outbox.getReplayedCount());
+                    assertTrue(outbox.awaitDrained(30, TimeUnit.SECONDS));
+                    assertEquals(9, server.getIndexSize("p", "i"));
+                }
+                try (MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                    assertEquals(0, outbox.getReplayedCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception
+    {
+        File journal = folder.newFile("outbox.log");
+        List<Mutation> deadLetters = new CopyOnWriteArrayList<Mutation>();
+        try (LocalImageSearchServer server = new LocalImageSearchServer()) {
+            server.start();
+            server.setErrorRate(1);
+            try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint())) {
+                try (MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                    outbox.setRetryDelay(10, 20);
+                    outbox.setMaxAttempts(3);
+                    outbox.setDeadLetterListener((mutation, response, error) -> deadLetters.add(mutation));
+                    outbox.createIndexUrl("p", "i", "a.jpg", null).get();
+                    outbox.deleteIndex("p", "i", "a.jpg").get();
+
+                    assertTrue(outbox.awaitDrained(30, TimeUnit.SECONDS));
+                    assertEquals(2, outbox.getDeadLetterCount());
+                    assertEquals(4, outbox.getRetryCount());
+                    assertEquals(6, server.getRequestCount());
+                    assertEquals(Mutation.Type.CREATE_INDEX_URL, deadLetters.get(0).getType());
+                    assertEquals(Mutation.Type.DELETE_INDEX, deadLetters.get(1).getType());
+                }
+                try (MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                    assertEquals(0, outbox.getReplayedCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsErrorBodyWithSuccessStatus() throws Exception
+    {
+        File journal = folder.newFile("outbox.log");
+        try (LocalImageSearchServer server = new LocalImageSearchServer()) {
+            server.start();
+            server.setErrorRate(1);
+            server.setErrorStatusCode(200);
+            try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+                    MutationOutbox outbox = new MutationOutbox(service, journal)) {
+                outbox.setRetryDelay(10, 20);
+                outbox.createIndexUrl("p", "i", "a.jpg", null).get();
+                outbox.createIndexUrl("p", "i", "b.jpg", null).get();
+
+                assertTrue(outbox.awaitDrained(30, TimeUnit.SECONDS));
+                assertEquals(2, outbox.getRejectedCount());
+                assertEquals(0, outbox.getRetryCount());
+                assertEquals(2, server.getRequestCount());
+                assertEquals(0, outbox.getJournalErrorCount());
+                assertNull(outbox.getJournalError());
+            }
+        }
+    }
+}
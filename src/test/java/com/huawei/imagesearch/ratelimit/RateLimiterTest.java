@@ -0,0 +1,87 @@
+package com.huawei.imagesearch.ratelimit;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.OperationType;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.model.SearchResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private RateLimiter rateLimiter;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        rateLimiter = new RateLimiter();
+        rateLimiter.setRate(OperationType.SEARCH, 10, 1);
+        service.setRateLimiter(rateLimiter);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void keepsSearchesWithinServerCapacity()
+    {
+        server.setCapacity(20, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(service.searchSimTags("p", "i", 10, 0, null, 0).isSuccess());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(0, server.getThrottledCount());
+        assertTrue(rateLimiter.getThrottledCount(OperationType.SEARCH) > 0);
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 450);
+    }
+
+    @Test
+    public void delaysAsyncSearchesWithoutBlockingCaller() throws Exception
+    {
+        long start = System.nanoTime();
+        List<CompletableFuture<SearchResult>> futures = new ArrayList<CompletableFuture<SearchResult>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(service.searchSimTagsAsync("p", "i", 10, 0, null, 0));
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        for (CompletableFuture<SearchResult> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS).isSuccess());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("submitted in " + submitMillis + "ms", submitMillis < 300);
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 350);
+    }
+
+    @Test
+    public void limitsOnlyConfiguredOperations()
+    {
+        assertTrue(rateLimiter.tryAcquire(OperationType.SEARCH));
+        assertTrue(!rateLimiter.tryAcquire(OperationType.SEARCH));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(rateLimiter.tryAcquire(OperationType.CHECK));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.huawei.imagesearch.retry;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.model.SearchResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryExecutorTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private RetryExecutor retryExecutor;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBaseDelayMillis(10);
+        retryExecutor = new RetryExecutor(policy);
+        service.setRetryExecutor(retryExecutor);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void retriesThrottledRequestAfterRetryAfter()
+    {
+        server.setCapacity(1, 1);
+        assertTrue(service.searchSimTags("p", "i", 10, 0, null, 0).isSuccess());
+
+        long start = System.nanoTime();
+        SearchResult result = service.searchSimTags("p", "i", 10, 0, null, 0);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, server.getThrottledCount());
+        assertEquals(1, retryExecutor.getRetryCount());
+        assertTrue("waited " + elapsedMillis + "ms", elapsedMillis >= 900);
+    }
+
+    @Test
+    public void retriesNonIdempotentRequestOn429()
+    {
+        server.setThrottleRate(1);
+        server.setRetryAfterSeconds(0);
+
+        String response = service.requestCreateIndexUrl("p", "i", "a.jpg", null);
+
+        assertTrue(response.contains("APIGW.0308"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryNonIdempotentRequestOn503()
+    {
+        server.setErrorRate(1);
+
+        String response = service.requestCreateIndexUrl("p", "i", "a.jpg", null);
+
+        assertTrue(response.contains("LOCAL.0500"));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void retriesIdempotentRequestOn503UntilMaxAttempts() throws Exception
+    {
+        server.setErrorRate(1);
+
+        SearchResult result = service.searchSimTagsAsync("p", "i", 10, 0, null, 0).get(10, TimeUnit.SECONDS);
+
+        assertEquals(503, result.getStatusCode());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, retryExecutor.getRetryCount());
+    }
+}
@@ -0,0 +1,147 @@
+package com.huawei.imagesearch.routing;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import com.huawei.imagesearch.pipeline.RequestAuthenticator;
+import com.huawei.imagesearch.pipeline.TokenAuthenticator;
+import com.huawei.imagesearch.retry.CircuitBreaker;
+import com.huawei.imagesearch.retry.RetryExecutor;
+import com.huawei.imagesearch.retry.RetryPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointRouterTest
+{
+    private LocalImageSearchServer home;
+    private LocalImageSearchServer remote;
+    private ImageSearchService service;
+    private final AtomicInteger remoteAuthentications = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        home = new LocalImageSearchServer();
+        home.start();
+        remote = new LocalImageSearchServer();
+        remote.start();
+        service = new ImageSearchService(() -> "home-token", "home", home.getEndpoint());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        home.close();
+        remote.close();
+    }
+
+    @Test
+    public void sendsReadRequestWithRegionProjectAndAuthenticator()
+    {
+        remote.addImage("remote-project", "i", "a.jpg", null);
+        service.setEndpointRouter(new EndpointRouter(Arrays.asList(remoteEndpoint())));
+
+        assertTrue(service.imageCheck("home-project", "i", "a.jpg").isExist());
+
+        assertEquals(1, remoteAuthentications.get());
+        assertEquals(0, home.getRequestCount());
+    }
+
+    @Test
+    public void keysCircuitBreakerOnChosenEndpoint() throws IOException
+    {
+        LocalImageSearchServer dead = new LocalImageSearchServer();
+        dead.start();
+        String deadEndpoint = dead.getEndpoint();
+        dead.close();
+        remote.addImage("remote-project", "i", "a.jpg", null);
+        RegionEndpoint down = new RegionEndpoint("down", deadEndpoint, "down-project",
+                new TokenAuthenticator(() -> "down-token"));
+        EndpointRouter router = new EndpointRouter(Arrays.asList(down, remoteEndpoint()));
+        router.setFailureThreshold(1);
+        service.setEndpointRouter(router);
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBaseDelayMillis(10);
+        policy.setCircuitBreakerFailureThreshold(1);
+        RetryExecutor retryExecutor = new RetryExecutor(policy);
+        service.setRetryExecutor(retryExecutor);
+
+        assertTrue(service.imageCheck("home-project", "i", "a.jpg").isExist());
+
+        assertEquals(1, retryExecutor.getRetryCount());
+        assertFalse(down.isHealthy());
+        assertEquals(CircuitBreaker.State.OPEN, retryExecutor.getCircuitBreaker(deadEndpoint).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, retryExecutor.getCircuitBreaker(home.getEndpoint()).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, retryExecutor.getCircuitBreaker(remote.getEndpoint()).getState());
+    }
+
+    @Test
+    public void newEndpointIsHealthyWhenNanoTimeIsNegative()
+    {
+        RegionEndpoint endpoint = remoteEndpoint();
+
+        assertTrue(endpoint.isHealthy(Long.MIN_VALUE + 1));
+        endpoint.record(-1, false, 0.2, 1, 1000);
+        endpoint.record(1000000, true, 0.2, 1, 1000);
+        assertTrue(endpoint.isHealthy(-System.nanoTime()));
+    }
+
+    @Test
+    public void prefersEndpointWithLatencyOverOneThatOnlyFailed()
+    {
+        RegionEndpoint failing = remoteEndpoint();
+        RegionEndpoint working = remoteEndpoint();
+        EndpointRouter router = new EndpointRouter(Arrays.asList(failing, working));
+        router.setExploreRatio(0);
+
+        router.record(failing, -1, false);
+        assertSame(working, router.select());
+        router.record(working, 1000000, true);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(working, router.select());
+        }
+    }
+
+    @Test
+    public void letsOneProbeThroughAfterEjectionExpires() throws InterruptedException
+    {
+        RegionEndpoint down = remoteEndpoint();
+        RegionEndpoint up = remoteEndpoint();
+        EndpointRouter router = new EndpointRouter(Arrays.asList(down, up));
+        router.setExploreRatio(0);
+        router.setFailureThreshold(1);
+        router.setEjectMillis(20);
+        router.record(up, 1000000, true);
+        router.record(down, -1, false);
+        assertSame(up, router.select());
+        Thread.sleep(40);
+
+        assertSame(down, router.select());
+        assertSame(up, router.select());
+        assertSame(up, router.select());
+
+        router.record(down, 500000, true);
+        assertFalse(down.isEjected());
+        assertTrue(down.isHealthy());
+    }
+
+    private RegionEndpoint remoteEndpoint()
+    {
+        final RequestAuthenticator token = new TokenAuthenticator(() -> "remote-token");
+        return new RegionEndpoint("remote", remote.getEndpoint(), "remote-project", (request, url) -> {
+            remoteAuthentications.incrementAndGet();
+            return token.authenticate(request, url);
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.huawei.imagesearch.util;
+
+import com.cloud.sdk.http.HttpMethodName;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AkSkSignerTest
+{
+    private final AkSkSigner signer = new AkSkSigner("ak", "sk", "imagesearch", "cn-north-4");
+
+    @Test
+    public void hashesByteArrayBodyWithoutReadingContent() throws Exception
+    {
+        byte[] body = "{\"path\":\"a.jpg\"}".getBytes(StandardCharsets.UTF_8);
+        HttpEntity entity = new ByteArrayEntity(body, ContentType.APPLICATION_JSON)
+        {
+            @Override
+            public InputStream getContent()
+            {
+                throw new AssertionError("body must not be re-streamed for signing");
+            }
+        };
+
+        HttpRequestBase request = signer.sign(HttpMethodName.POST, "https://host/v1/p/service/i/image", null, entity);
+
+        assertEquals(DigestUtils.sha256Hex(body), header(request, "x-sdk-content-sha256"));
+        assertNotNull(header(request, "Authorization"));
+        assertSame(entity, ((HttpEntityEnclosingRequestBase) request).getEntity());
+    }
+
+    @Test
+    public void hashesByteArraysBodyFromItsParts() throws Exception
+    {
+        byte[] head = "{\"image\":\"".getBytes(StandardCharsets.UTF_8);
+        byte[] image = "aGVsbG8=".getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "\"}".getBytes(StandardCharsets.UTF_8);
+        ByteArraysEntity entity = new ByteArraysEntity(ContentType.APPLICATION_JSON, head, image, tail);
+
+        HttpRequestBase request = signer.sign(HttpMethodName.POST, "https://host/v1/p/service/i/image", null, entity);
+
+        assertEquals(DigestUtils.sha256Hex("{\"image\":\"aGVsbG8=\"}"), header(request, "x-sdk-content-sha256"));
+    }
+
+    @Test
+    public void sendsStreamingBodyItWasSignedWith() throws Exception
+    {
+        TrackingStream stream = new TrackingStream("{}".getBytes(StandardCharsets.UTF_8));
+
+        HttpRequestBase request = signer.sign(HttpMethodName.POST, "https://host/v1/p/service/i/image", null,
+                new InputStreamEntity(stream, 2));
+
+        assertFalse(stream.closed);
+        assertEquals(null, header(request, "x-sdk-content-sha256"));
+        assertTrue(((HttpEntityEnclosingRequestBase) request).getEntity() instanceof InputStreamEntity);
+    }
+
+    @Test
+    public void closesContentOfRequestWithoutBody() throws Exception
+    {
+        TrackingStream stream = new TrackingStream(new byte[0]);
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(stream);
+
+        signer.sign(HttpMethodName.GET, "https://host/v1/p/service/i", null, entity);
+
+        assertTrue(stream.closed);
+    }
+
+    private static String header(HttpRequestBase request, String name)
+    {
+        Header header = request.getFirstHeader(name);
+        return null == header ? null : header.getValue();
+    }
+
+    private static class TrackingStream extends ByteArrayInputStream
+    {
+        volatile boolean closed;
+
+        TrackingStream(byte[] bytes)
+        {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            closed = true;
+            super.close();
+        }
+    }
+}
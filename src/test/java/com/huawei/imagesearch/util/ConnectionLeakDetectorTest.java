@@ -0,0 +1,80 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionLeakDetectorTest
+{
+    private LocalImageSearchServer server;
+    private HttpClientConfig config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        config = new HttpClientConfig();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+    }
+
+    @Test
+    public void releasesConnectionsOfSuccessAndErrorResponses() throws IOException
+    {
+        server.addImage("p", "i", "a.jpg", null);
+        try (ImageSearchService service = new ImageSearchService(() -> "token", "region", server.getEndpoint())) {
+            service.setHttpClientConfig(config);
+            ConnectionLeakDetector detector = service.getConnectionLeakDetector();
+
+            assertNotNull(service.requestImageCheck("p", "i", "a.jpg"));
+            assertNotNull(service.requestDeleteIndex("p", "i", "missing.jpg"));
+            assertNotNull(service.requestGetServiceInfo("p", "missing"));
+            server.setErrorRate(1);
+            assertNotNull(service.requestImageCheck("p", "i", "a.jpg"));
+            assertNotNull(service.imageCheck("p", "i", "a.jpg"));
+
+            assertEquals(5, detector.getLeasedCount());
+            assertEquals(0, detector.getOutstandingCount());
+            assertEquals(0, detector.getPoolStats().getLeased());
+        }
+    }
+
+    @Test
+    public void reportsResponseThatWasNotConsumed() throws IOException
+    {
+        ConnectionLeakDetector detector = config.getConnectionLeakDetector();
+        assertNull(detector.getPoolStats());
+        try (CloseableHttpClient client = HttpClientBase.createHttpClient(config)) {
+            String url = server.getEndpoint() + "/v1/p/service/i";
+            HttpResponse response = HttpClientUtils.get(client, url, new Header[0]);
+
+            assertEquals(1, detector.getOutstandingCount());
+            assertEquals(1, detector.getPoolStats().getLeased());
+
+            EntityUtils.consume(response.getEntity());
+            assertEquals(0, detector.getOutstandingCount());
+
+            assertTrue(HttpClientUtils.getHttpGetResult(client, url, new Header[0]).contains("error_code"));
+            assertEquals(2, detector.getLeasedCount());
+            assertEquals(0, detector.getOutstandingCount());
+        }
+    }
+}
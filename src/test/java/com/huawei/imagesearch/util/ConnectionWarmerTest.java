@@ -0,0 +1,68 @@
+package com.huawei.imagesearch.util;
+
+import com.huawei.imagesearch.ImageSearchService;
+import com.huawei.imagesearch.local.LocalImageSearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionWarmerTest
+{
+    private LocalImageSearchServer server;
+    private ImageSearchService service;
+    private HttpClientConfig config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new LocalImageSearchServer();
+        server.start();
+        config = new HttpClientConfig();
+        config.setDefaultMaxPerRoute(8);
+        service = new ImageSearchService(() -> "token", "region", server.getEndpoint());
+        service.setHttpClientConfig(config);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void opensDistinctKeepAliveConnections()
+    {
+        ConnectionLeakDetector detector = config.getConnectionLeakDetector();
+
+        assertEquals(4, service.warmUp(4));
+
+        assertEquals(4, detector.getLeasedCount());
+        assertEquals(0, detector.getOutstandingCount());
+        assertEquals(4, detector.getPoolStats().getAvailable());
+
+        server.addImage("p", "i", "a.jpg", null);
+        assertTrue(service.imageCheck("p", "i", "a.jpg").isExist());
+        assertEquals(4, detector.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void capsConnectionsAtMaxPerRoute()
+    {
+        assertEquals(8, service.warmUp(20));
+        assertEquals(8, config.getConnectionLeakDetector().getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void warmsAsyncClient() throws Exception
+    {
+        assertEquals(3, service.warmUpAsync(3).get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(3, server.getRequestCount());
+    }
+}